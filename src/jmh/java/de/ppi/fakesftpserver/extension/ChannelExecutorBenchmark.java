@@ -0,0 +1,113 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many SFTP channels per second concurrent clients can open, use and close, and the latency of a single
+ * channel, for every {@link ChannelExecutor}. Every client thread keeps its own session.
+ * <p>Virtual threads require Java 21. They are measured with {@code -p executor=virtualThreads}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class ChannelExecutorBenchmark {
+
+    private static final int POOL_SIZE = 4;
+
+    @Param({"perChannel", "sharedPool"})
+    private String executor;
+
+    private FakeSftpServerExtension extension;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        this.extension = new FakeSftpServerExtension().setChannelExecutor(this.createChannelExecutor());
+        this.extension.beforeEach(null);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        this.extension.afterEach(null);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Object channelsPerSecond(final Client client) throws JSchException, SftpException {
+        return openChannel(client);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object channelLatency(final Client client) throws JSchException, SftpException {
+        return openChannel(client);
+    }
+
+    private static Object openChannel(final Client client) throws JSchException, SftpException {
+        final ChannelSftp channel = (ChannelSftp) client.session.openChannel("sftp");
+        channel.connect();
+        try {
+            return channel.stat("/");
+        } finally {
+            channel.disconnect();
+        }
+    }
+
+    private ChannelExecutor createChannelExecutor() {
+        switch (this.executor) {
+            case "perChannel":
+                return ChannelExecutor.perChannel();
+            case "sharedPool":
+                return ChannelExecutor.sharedPool(POOL_SIZE);
+            case "virtualThreads":
+                return ChannelExecutor.virtualThreads();
+            default:
+                throw new IllegalArgumentException("Unknown executor " + this.executor + ".");
+        }
+    }
+
+    /**
+     * The session of a client thread.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private Session session;
+
+        @Setup(Level.Trial)
+        public void connect(final ChannelExecutorBenchmark benchmark) throws JSchException {
+            this.session = new JSch().getSession("user", "127.0.0.1", benchmark.extension.getPort());
+            this.session.setConfig("StrictHostKeyChecking", "no");
+            this.session.setPassword("password");
+            this.session.connect();
+        }
+
+        @TearDown(Level.Trial)
+        public void disconnect() {
+            this.session.disconnect();
+        }
+    }
+}
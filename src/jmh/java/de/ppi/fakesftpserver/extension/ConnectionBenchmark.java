@@ -0,0 +1,73 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time until a client has established a session and opened an SFTP channel, both for a single client and
+ * for clients that connect concurrently.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConnectionBenchmark {
+
+    private FakeSftpServerExtension extension;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        this.extension = new FakeSftpServerExtension();
+        this.extension.beforeEach(null);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        this.extension.afterEach(null);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void connect() throws JSchException {
+        this.connectAndDisconnect();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void connectConcurrently() throws JSchException {
+        this.connectAndDisconnect();
+    }
+
+    private void connectAndDisconnect() throws JSchException {
+        final Session session = new JSch().getSession("user", "127.0.0.1", this.extension.getPort());
+        session.setConfig("StrictHostKeyChecking", "no");
+        session.setPassword("password");
+        session.connect();
+        try {
+            final ChannelSftp channel = (ChannelSftp) session.openChannel("sftp");
+            channel.connect();
+            channel.disconnect();
+        } finally {
+            session.disconnect();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package de.ppi.fakesftpserver.extension;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the methods that tests use to prepare and to verify the files of the server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FixtureBenchmark {
+
+    private static final int WIDE_TREE_FILES = 1000;
+    private static final int DEEP_TREE_DEPTH = 100;
+    private static final int DEEP_TREE_FILES_PER_DIRECTORY = 10;
+
+    @Benchmark
+    public void putFile(final FileState state) throws IOException {
+        state.extension.putFile("/directory/file.bin", state.content);
+    }
+
+    @Benchmark
+    public byte[] getFileContent(final FileState state) throws IOException {
+        return state.extension.getFileContent("/fixture.bin");
+    }
+
+    @Benchmark
+    public void deleteAllFilesAndDirectories(final TreeState state) throws IOException {
+        state.extension.deleteAllFilesAndDirectories();
+    }
+
+    /**
+     * An extension with a file of the given size.
+     */
+    @State(Scope.Benchmark)
+    public static class FileState {
+
+        @Param({"1024", "8388608"})
+        private int size;
+
+        private byte[] content;
+        private FakeSftpServerExtension extension;
+
+        @Setup(Level.Trial)
+        public void startExtension() throws Exception {
+            this.content = new byte[this.size];
+            new Random(0).nextBytes(this.content);
+            this.extension = new FakeSftpServerExtension();
+            this.extension.beforeEach(null);
+            this.extension.putFile("/fixture.bin", this.content);
+        }
+
+        @TearDown(Level.Trial)
+        public void stopExtension() throws Exception {
+            this.extension.afterEach(null);
+        }
+    }
+
+    /**
+     * An extension with a tree of 1000 files that is either wide (all files in one directory) or deep (100 nested
+     * directories with 10 files each).
+     */
+    @State(Scope.Benchmark)
+    public static class TreeState {
+
+        @Param({"wide", "deep"})
+        private String shape;
+
+        private FakeSftpServerExtension extension;
+
+        @Setup(Level.Trial)
+        public void startExtension() throws Exception {
+            this.extension = new FakeSftpServerExtension();
+            this.extension.beforeEach(null);
+        }
+
+        @Setup(Level.Invocation)
+        public void createTree() throws IOException {
+            if ("wide".equals(this.shape)) {
+                for (int i = 0; i < WIDE_TREE_FILES; i++) {
+                    this.extension.putFile("/wide/file" + i + ".txt", new byte[]{1});
+                }
+                return;
+            }
+
+            final StringBuilder directory = new StringBuilder();
+            for (int depth = 0; depth < DEEP_TREE_DEPTH; depth++) {
+                directory.append("/d").append(depth);
+            }
+            this.extension.createDirectory(directory.toString());
+            for (String path = directory.toString(); !path.isEmpty(); path = path.substring(0, path.lastIndexOf('/'))) {
+                for (int i = 0; i < DEEP_TREE_FILES_PER_DIRECTORY; i++) {
+                    this.extension.putFile(path + "/file" + i + ".txt", new byte[]{1});
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void stopExtension() throws Exception {
+            this.extension.afterEach(null);
+        }
+    }
+}
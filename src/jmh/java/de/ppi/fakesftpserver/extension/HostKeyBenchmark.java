@@ -0,0 +1,90 @@
+package de.ppi.fakesftpserver.extension;
+
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.keyverifier.AcceptAllServerKeyVerifier;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.common.keyprovider.KeyPairProvider;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to start an SFTP server and to establish the first connection to it.
+ * <p>{@code generated-per-server} is the behaviour before the host keys were cached: every server generates a new
+ * RSA key during the first key exchange.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HostKeyBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Param({"generated-per-server", "rsa", "ec", "ed25519"})
+    private String hostKey;
+
+    private SshClient client;
+
+    @Setup(Level.Trial)
+    public void startClient() {
+        this.client = SshClient.setUpDefaultClient();
+        this.client.setServerKeyVerifier(AcceptAllServerKeyVerifier.INSTANCE);
+        this.client.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopClient() throws IOException {
+        this.client.stop();
+    }
+
+    @Benchmark
+    public void startServerAndConnect() throws IOException {
+        final SshServer server = SshServer.setUpDefaultServer();
+        server.setKeyPairProvider(this.createKeyPairProvider());
+        server.setPasswordAuthenticator(new InMemoryAuthenticator());
+        server.start();
+
+        try (ClientSession session = this.client.connect("user", "127.0.0.1", server.getPort())
+            .verify(TIMEOUT)
+            .getSession()) {
+            session.addPasswordIdentity("password");
+            session.auth().verify(TIMEOUT);
+        } finally {
+            server.stop(true);
+        }
+    }
+
+    private KeyPairProvider createKeyPairProvider() {
+        switch (this.hostKey) {
+            case "generated-per-server":
+                return new SimpleGeneratorHostKeyProvider();
+            case "rsa":
+                return HostKey.rsa().getKeyPairProvider();
+            case "ec":
+                return HostKey.ec().getKeyPairProvider();
+            case "ed25519":
+                return HostKey.ed25519().getKeyPairProvider();
+            default:
+                throw new IllegalArgumentException("Unknown host key: " + this.hostKey);
+        }
+    }
+}
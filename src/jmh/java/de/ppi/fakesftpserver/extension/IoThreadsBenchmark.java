@@ -0,0 +1,123 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many connections per second clients can establish to many servers, with IO threads of every server and
+ * with IO threads that are shared by all servers. The number of live threads is reported as the secondary result
+ * {@code liveThreads}, so the throughput can be compared with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class IoThreadsBenchmark {
+
+    private static final int SERVERS = 16;
+
+    @Param({"perServer", "shared"})
+    private String ioThreads;
+
+    private FakeSftpServerExtension[] extensions;
+
+    @Setup(Level.Trial)
+    public void startServers() throws Exception {
+        this.extensions = new FakeSftpServerExtension[SERVERS];
+        for (int i = 0; i < SERVERS; i++) {
+            this.extensions[i] = new FakeSftpServerExtension().setIoThreads(this.createIoThreads());
+            this.extensions[i].beforeEach(null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServers() throws Exception {
+        for (final FakeSftpServerExtension extension : this.extensions) {
+            extension.afterEach(null);
+        }
+    }
+
+    @Benchmark
+    public void connectionsPerSecond(final LiveThreads liveThreads) throws JSchException {
+        final FakeSftpServerExtension extension = this.extensions[ThreadLocalRandom.current().nextInt(SERVERS)];
+        final Session session = new JSch().getSession("user", "127.0.0.1", extension.getPort());
+        session.setConfig("StrictHostKeyChecking", "no");
+        session.setPassword("password");
+        session.connect();
+        try {
+            final ChannelSftp channel = (ChannelSftp) session.openChannel("sftp");
+            channel.connect();
+            liveThreads.count();
+            channel.disconnect();
+        } finally {
+            session.disconnect();
+        }
+    }
+
+    private IoThreads createIoThreads() {
+        switch (this.ioThreads) {
+            case "perServer":
+                return IoThreads.perServer();
+            case "shared":
+                return IoThreads.shared();
+            default:
+                throw new IllegalArgumentException("Unknown IO threads " + this.ioThreads + ".");
+        }
+    }
+
+    /**
+     * Records the highest number of live threads while clients are connected. The counters of all benchmark threads are
+     * summed up, so only the first benchmark thread counts.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class LiveThreads {
+
+        private boolean counting;
+        private int threads;
+
+        @Setup(Level.Trial)
+        public void selectCountingThread(final ThreadParams threadParams) {
+            this.counting = threadParams.getThreadIndex() == 0;
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.threads = 0;
+        }
+
+        public int liveThreads() {
+            return this.threads;
+        }
+
+        void count() {
+            if (this.counting) {
+                this.threads = Math.max(this.threads, Thread.activeCount());
+            }
+        }
+    }
+}
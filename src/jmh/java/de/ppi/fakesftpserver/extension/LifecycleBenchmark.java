@@ -0,0 +1,73 @@
+package de.ppi.fakesftpserver.extension;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of the extension for a single test, i.e. the time of {@code beforeEach} and {@code afterEach}.
+ * With a lazy start the server is never started, because the benchmark does not connect to it, so the difference
+ * shows what a test saves that only uses the filesystem. With a standby pool the server is started in the background,
+ * so the time shows how much of the start is hidden when the pool keeps up with the tests. An asynchronous teardown
+ * moves stopping the server and closing the filesystem out of {@code afterEach}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LifecycleBenchmark {
+
+    @Param({"PER_TEST", "PER_CLASS", "SHARED"})
+    private ServerLifecycle lifecycle;
+
+    @Param({"false", "true"})
+    private boolean lazyStart;
+
+    @Param({"0", "2"})
+    private int standbyPoolSize;
+
+    @Param({"false", "true"})
+    private boolean asyncTeardown;
+
+    private StandbyPool standbyPool;
+    private FakeSftpServerExtension extension;
+
+    @Setup(Level.Trial)
+    public void createExtension() throws Exception {
+        this.standbyPool = this.standbyPoolSize > 0 ? StandbyPool.ofSize(this.standbyPoolSize) : null;
+        this.extension = new FakeSftpServerExtension()
+            .setLifecycle(this.lifecycle)
+            .setLazyStart(this.lazyStart)
+            .setStandbyPool(this.standbyPool)
+            .setAsyncTeardown(this.asyncTeardown);
+        this.extension.beforeAll(null);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeExtension() throws Exception {
+        this.extension.close();
+        if (this.standbyPool != null) {
+            this.standbyPool.close();
+        }
+    }
+
+    @Benchmark
+    public void beforeEachAndAfterEach() throws Exception {
+        this.extension.beforeEach(null);
+        this.extension.afterEach(null);
+    }
+}
@@ -0,0 +1,53 @@
+package de.ppi.fakesftpserver.extension;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a test waits for {@link FakeSftpServerExtension#setManualPort(int)} when the server is running.
+ * The benchmark alternates between two ports.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PortChangeBenchmark {
+
+    private static final int FIRST_PORT = 46360;
+    private static final int SECOND_PORT = 46361;
+
+    private FakeSftpServerExtension extension;
+    private boolean onFirstPort;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        this.extension = new FakeSftpServerExtension().setManualPort(FIRST_PORT);
+        this.extension.beforeEach(null);
+        this.onFirstPort = true;
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        this.extension.afterEach(null);
+    }
+
+    @Benchmark
+    public void changePort() {
+        this.extension.setManualPort(this.onFirstPort ? SECOND_PORT : FIRST_PORT);
+        this.onFirstPort = !this.onFirstPort;
+    }
+}
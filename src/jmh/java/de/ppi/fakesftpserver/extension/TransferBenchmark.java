@@ -0,0 +1,105 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures uploads and downloads by a real SFTP client. Besides the operations per second, the throughput is reported
+ * in megabytes per second by the secondary result {@code megabytes}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransferBenchmark {
+
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    @Param({"65536", "8388608"})
+    private int size;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    private Storage storage;
+
+    private byte[] content;
+    private FakeSftpServerExtension extension;
+    private Session session;
+    private ChannelSftp channel;
+
+    @Setup(Level.Trial)
+    public void connect() throws Exception {
+        this.content = new byte[this.size];
+        new Random(0).nextBytes(this.content);
+        this.extension = new FakeSftpServerExtension().setStorage(this.storage);
+        this.extension.beforeEach(null);
+        this.extension.putFile("/download.bin", this.content);
+
+        this.session = new JSch().getSession("user", "127.0.0.1", this.extension.getPort());
+        this.session.setConfig("StrictHostKeyChecking", "no");
+        this.session.setPassword("password");
+        this.session.connect();
+        this.channel = (ChannelSftp) this.session.openChannel("sftp");
+        this.channel.connect();
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() throws Exception {
+        this.channel.disconnect();
+        this.session.disconnect();
+        this.extension.afterEach(null);
+    }
+
+    @Benchmark
+    public void upload(final TransferredBytes transferredBytes) throws SftpException {
+        this.channel.put(new ByteArrayInputStream(this.content), "/upload.bin");
+        transferredBytes.bytes += this.size;
+    }
+
+    @Benchmark
+    public void download(final TransferredBytes transferredBytes) throws SftpException {
+        this.channel.get("/download.bin", NullOutputStream.NULL_OUTPUT_STREAM);
+        transferredBytes.bytes += this.size;
+    }
+
+    /**
+     * Counts the bytes that have been transferred during an iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class TransferredBytes {
+
+        private long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.bytes = 0;
+        }
+
+        public double megabytes() {
+            return this.bytes / BYTES_PER_MEGABYTE;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package de.ppi.fakesftpserver.extension;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of the authentication of a user by password or public key.
+ */
+@Name("de.ppi.fakesftpserver.Authentication")
+@Label("Authentication")
+@Description("The authentication of a user by password or public key")
+@Category("Fake SFTP Server")
+class AuthenticationEvent extends Event {
+
+    @Label("User")
+    String user;
+
+    @Label("Method")
+    String method;
+
+    @Label("Successful")
+    boolean successful;
+}
@@ -0,0 +1,89 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder.newLinux;
+
+/**
+ * A read-only set of files that is shared by the filesystems of many tests.
+ * <p>Loading a large fixture for every test is expensive. Therefore, every base layer is loaded only once per JVM and
+ * shared by all extensions that use a base layer with the same name, even if they run in parallel. The base layer is
+ * never modified afterwards: files that are uploaded, deleted or renamed by a test are stored in a writable layer of
+ * that test, which is dropped after the test.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class BaseLayer {
+
+    private static final Map<String, BaseLayer> BASE_LAYERS = new ConcurrentHashMap<>();
+
+    @Getter
+    @ToString.Include
+    private final String name;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final FileSystem fileSystem;
+
+    /**
+     * Returns the base layer with the given name. The loader is only called if the base layer has not been loaded by
+     * this JVM yet.
+     *
+     * @param name   the name of the base layer.
+     * @param loader writes the files of the base layer.
+     * @return the base layer.
+     * @throws IllegalStateException if the base layer cannot be loaded.
+     */
+    public static BaseLayer of(@NonNull final String name, @NonNull final Loader loader) {
+        return BASE_LAYERS.computeIfAbsent(name, key -> load(key, loader));
+    }
+
+    private static BaseLayer load(final String name, final Loader loader) {
+        FileSystem fileSystem = null;
+        try {
+            fileSystem = newLinux().build("fakeSftpBaseLayer@" + name);
+            loader.load(fileSystem);
+            return new BaseLayer(name, fileSystem);
+        } catch (final IOException e) {
+            closeQuietly(fileSystem);
+            throw new IllegalStateException("The base layer " + name + " cannot be loaded.", e);
+        } catch (final RuntimeException e) {
+            closeQuietly(fileSystem);
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(final FileSystem fileSystem) {
+        // the filesystem has to be closed, so that the base layer can be loaded again with the same name
+        if (fileSystem != null) {
+            try {
+                fileSystem.close();
+            } catch (final IOException e) {
+                // the exception of the loader is more important
+            }
+        }
+    }
+
+    /**
+     * Writes the files of a base layer.
+     */
+    @FunctionalInterface
+    public interface Loader {
+
+        /**
+         * Writes the files of the base layer. The filesystem must not be used after this method has returned.
+         *
+         * @param fileSystem the empty filesystem of the base layer.
+         * @throws IOException if the files cannot be written.
+         */
+        void load(FileSystem fileSystem) throws IOException;
+    }
+}
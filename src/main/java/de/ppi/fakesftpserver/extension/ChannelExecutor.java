@@ -0,0 +1,104 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.apache.sshd.common.util.threads.CloseableExecutorService;
+import org.apache.sshd.common.util.threads.NoCloseExecutor;
+import org.apache.sshd.common.util.threads.ThreadUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * The threads that process the requests of SFTP channels.
+ * <p>Every SFTP channel occupies a thread of its executor from the moment it is opened until it is closed. Pools are
+ * created only once per JVM and shared by all servers that use an equal {@code ChannelExecutor}.
+ */
+@EqualsAndHashCode
+@ToString
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ChannelExecutor {
+
+    private static final Map<ChannelExecutor, CloseableExecutorService> EXECUTORS = new ConcurrentHashMap<>();
+
+    private final Kind kind;
+    private final int threads;
+
+    /**
+     * A new platform thread for every SFTP channel. This is the default.
+     *
+     * @return the executor.
+     */
+    public static ChannelExecutor perChannel() {
+        return new ChannelExecutor(Kind.PER_CHANNEL, 0);
+    }
+
+    /**
+     * A pool with a fixed number of threads, which is shared by all sessions and servers. If all threads are busy
+     * then the requests of a new SFTP channel wait until another channel is closed.
+     *
+     * @param threads the number of threads.
+     * @return the executor.
+     * @throws IllegalArgumentException if the number of threads is not positive.
+     */
+    public static ChannelExecutor sharedPool(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive.");
+        }
+        return new ChannelExecutor(Kind.SHARED_POOL, threads);
+    }
+
+    /**
+     * A new virtual thread for every SFTP channel. Virtual threads are cheap, so a large number of concurrent channels
+     * does not cause a large number of platform threads.
+     * <p>Virtual threads require Java 21 or later. Starting a server with this executor fails on older versions.
+     *
+     * @return the executor.
+     */
+    public static ChannelExecutor virtualThreads() {
+        return new ChannelExecutor(Kind.VIRTUAL_THREADS, 0);
+    }
+
+    /**
+     * Returns the provider of the executor services of new SFTP channels. The executor service of a shared executor is
+     * not shut down when a channel is closed.
+     *
+     * @return the provider or {@code null} if the SFTP subsystem creates a thread for every channel.
+     * @throws IllegalStateException if virtual threads are not supported by this JVM.
+     */
+    Supplier<CloseableExecutorService> getExecutorServiceProvider() {
+        if (this.kind == Kind.PER_CHANNEL) {
+            return null;
+        }
+        final CloseableExecutorService executorService =
+            EXECUTORS.computeIfAbsent(this, ChannelExecutor::createExecutorService);
+        return () -> ThreadUtils.noClose(executorService);
+    }
+
+    private CloseableExecutorService createExecutorService() {
+        if (this.kind == Kind.SHARED_POOL) {
+            return ThreadUtils.newFixedThreadPool("fake-sftp-channel", this.threads);
+        }
+        return new NoCloseExecutor(newVirtualThreadPerTaskExecutor());
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        // the build targets Java 11, therefore the method of Java 21 is called by reflection
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later.", e);
+        }
+    }
+
+    private enum Kind {
+        PER_CHANNEL,
+        SHARED_POOL,
+        VIRTUAL_THREADS
+    }
+}
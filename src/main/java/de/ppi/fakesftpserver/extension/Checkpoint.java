@@ -0,0 +1,30 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A state of the filesystem of a {@link FakeSftpServerExtension}. The filesystem can be rolled back to this state by
+ * {@link FakeSftpServerExtension#rollback(Checkpoint)}.
+ * <p>Creating a checkpoint does not copy anything. A file or directory is copied when it is modified for the first
+ * time after the checkpoint has been created.
+ */
+public final class Checkpoint {
+
+    private final Map<Path, PathState> savedStates = new LinkedHashMap<>();
+
+    Checkpoint() {
+        // created by the CheckpointFileSystemProvider
+    }
+
+    /**
+     * Returns the states of all paths that have been modified since the checkpoint was created. The keys are paths of
+     * the underlying filesystem.
+     *
+     * @return the saved states.
+     */
+    Map<Path, PathState> getSavedStates() {
+        return this.savedStates;
+    }
+}
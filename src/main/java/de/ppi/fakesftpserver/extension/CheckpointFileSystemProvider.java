@@ -0,0 +1,272 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static de.ppi.fakesftpserver.extension.ForwardingPath.unwrap;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+
+/**
+ * Provider of a filesystem that supports checkpoints.
+ * <p>Before a path is modified for the first time after the latest checkpoint, its state is saved in that checkpoint.
+ * A rollback restores the saved states, so it only touches paths that have been modified.
+ */
+class CheckpointFileSystemProvider extends ForwardingFileSystemProvider {
+
+    private final Deque<Checkpoint> checkpoints = new ArrayDeque<>();
+    private final ContentFileSystemProvider contentProvider;
+
+    // avoids synchronization as long as there is no checkpoint
+    private volatile boolean recording;
+
+    /**
+     * Creates the provider.
+     *
+     * @param delegate        the filesystem that is modified.
+     * @param contentProvider the provider that stores the content of files of that filesystem or {@code null} if the
+     *                        filesystem stores all files itself.
+     */
+    CheckpointFileSystemProvider(final FileSystem delegate, final ContentFileSystemProvider contentProvider) {
+        super(delegate);
+        this.contentProvider = contentProvider;
+    }
+
+    /**
+     * Creates a new checkpoint.
+     *
+     * @return the checkpoint.
+     */
+    synchronized Checkpoint createCheckpoint() {
+        final Checkpoint checkpoint = new Checkpoint();
+        this.checkpoints.push(checkpoint);
+        this.recording = true;
+        return checkpoint;
+    }
+
+    /**
+     * Returns the checkpoint that has been created first and is still valid.
+     *
+     * @return the checkpoint or {@code null} if there is none.
+     */
+    synchronized Checkpoint getFirstCheckpoint() {
+        return this.checkpoints.peekLast();
+    }
+
+    /**
+     * Rolls back the filesystem to a checkpoint. All checkpoints that have been created after this checkpoint are
+     * discarded. The checkpoint itself stays valid.
+     *
+     * @param checkpoint the checkpoint.
+     * @throws IOException              if the filesystem cannot be restored.
+     * @throws IllegalArgumentException if the checkpoint is not valid.
+     */
+    synchronized void rollback(final Checkpoint checkpoint) throws IOException {
+        if (!this.checkpoints.contains(checkpoint)) {
+            throw new IllegalArgumentException(
+                "The checkpoint does not belong to this filesystem or has been discarded by a rollback.");
+        }
+
+        while (this.checkpoints.peek() != checkpoint) {
+            this.restore(this.checkpoints.pop().getSavedStates());
+        }
+        this.restore(checkpoint.getSavedStates());
+        checkpoint.getSavedStates().clear();
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(final Path path,
+                                              final Set<? extends OpenOption> options,
+                                              final FileAttribute<?>... attrs) throws IOException {
+        if (isWriting(options)) {
+            this.save(path);
+        }
+        return super.newByteChannel(path, options, attrs);
+    }
+
+    @Override
+    public FileChannel newFileChannel(final Path path,
+                                      final Set<? extends OpenOption> options,
+                                      final FileAttribute<?>... attrs) throws IOException {
+        if (isWriting(options)) {
+            this.save(path);
+        }
+        return super.newFileChannel(path, options, attrs);
+    }
+
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(final Path path,
+                                                              final Set<? extends OpenOption> options,
+                                                              final ExecutorService executor,
+                                                              final FileAttribute<?>... attrs) throws IOException {
+        if (isWriting(options)) {
+            this.save(path);
+        }
+        return super.newAsynchronousFileChannel(path, options, executor, attrs);
+    }
+
+    @Override
+    public OutputStream newOutputStream(final Path path, final OpenOption... options) throws IOException {
+        this.save(path);
+        return super.newOutputStream(path, options);
+    }
+
+    @Override
+    public void createDirectory(final Path dir, final FileAttribute<?>... attrs) throws IOException {
+        this.save(dir);
+        super.createDirectory(dir, attrs);
+    }
+
+    @Override
+    public void createSymbolicLink(final Path link, final Path target, final FileAttribute<?>... attrs)
+    throws IOException {
+        this.save(link);
+        super.createSymbolicLink(link, target, attrs);
+    }
+
+    @Override
+    public void createLink(final Path link, final Path existing) throws IOException {
+        this.save(link);
+        super.createLink(link, existing);
+    }
+
+    @Override
+    public void delete(final Path path) throws IOException {
+        this.save(path);
+        super.delete(path);
+    }
+
+    @Override
+    public boolean deleteIfExists(final Path path) throws IOException {
+        this.save(path);
+        return super.deleteIfExists(path);
+    }
+
+    @Override
+    public void copy(final Path source, final Path target, final CopyOption... options) throws IOException {
+        this.save(target);
+        super.copy(source, target, options);
+    }
+
+    @Override
+    public void move(final Path source, final Path target, final CopyOption... options) throws IOException {
+        this.saveTree(source);
+        this.saveTree(target);
+        super.move(source, target, options);
+    }
+
+    @Override
+    public void setAttribute(final Path path,
+                             final String attribute,
+                             final Object value,
+                             final LinkOption... options) throws IOException {
+        this.save(path);
+        super.setAttribute(path, attribute, value, options);
+    }
+
+    @Override
+    public <V extends FileAttributeView> V getFileAttributeView(final Path path,
+                                                                final Class<V> type,
+                                                                final LinkOption... options) {
+        final V view = super.getFileAttributeView(path, type, options);
+        if (view == null || !type.isInterface()) {
+            return view;
+        }
+
+        // the view is used for reading and for writing, so the path is saved when a modifying method is called
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+            (proxy, method, args) -> {
+                if (isModifying(method.getName())) {
+                    this.save(path);
+                }
+                try {
+                    return method.invoke(view, args);
+                } catch (final InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }));
+    }
+
+    private void save(final Path path) throws IOException {
+        if (!this.recording) {
+            return;
+        }
+
+        synchronized (this) {
+            final Checkpoint checkpoint = this.checkpoints.peek();
+            final Path delegatePath = unwrap(path).toAbsolutePath().normalize();
+            if (checkpoint != null && !checkpoint.getSavedStates().containsKey(delegatePath)) {
+                checkpoint.getSavedStates().put(delegatePath, this.readStateAtCheckpoint(checkpoint, delegatePath));
+            }
+        }
+    }
+
+    private PathState readStateAtCheckpoint(final Checkpoint checkpoint, final Path path) throws IOException {
+        // a path below a directory that did not exist at the time of the checkpoint has been created or moved there
+        // afterwards
+        for (Path parent = path.getParent(); parent != null; parent = parent.getParent()) {
+            final PathState parentState = checkpoint.getSavedStates().get(parent);
+            if (parentState != null && !parentState.isDirectory()) {
+                return PathState.absent();
+            }
+        }
+        return PathState.read(path, this.contentProvider);
+    }
+
+    private void saveTree(final Path path) throws IOException {
+        this.save(path);
+        if (this.recording && Files.isDirectory(unwrap(path), NOFOLLOW_LINKS)) {
+            try (Stream<Path> children = Files.list(path)) {
+                for (final Path child : children.collect(Collectors.toList())) {
+                    this.saveTree(child);
+                }
+            }
+        }
+    }
+
+    private void restore(final Map<Path, PathState> savedStates) throws IOException {
+        final List<Map.Entry<Path, PathState>> entries = new ArrayList<>(savedStates.entrySet());
+
+        // deepest paths first: remove everything that did not exist at the time of the checkpoint
+        entries.sort(Comparator.comparing((Map.Entry<Path, PathState> entry) -> entry.getKey().getNameCount())
+            .reversed());
+        for (final Map.Entry<Path, PathState> entry : entries) {
+            if (entry.getValue().isReplacedBy(entry.getKey())) {
+                Files.walkFileTree(entry.getKey(), new DeleteAllFilesVisitor());
+            }
+        }
+
+        // parents first: recreate the saved content
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            entries.get(i).getValue().restoreContent(entries.get(i).getKey(), this.contentProvider);
+        }
+
+        // children first: restoring the content of a child changes the modification time of the parent
+        for (final Map.Entry<Path, PathState> entry : entries) {
+            entry.getValue().restoreAttributes(entry.getKey());
+        }
+    }
+
+}
@@ -0,0 +1,256 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.OpenOption;
+import java.util.Set;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A channel of a {@link FileContent}.
+ */
+final class ContentChannel extends FileChannel {
+
+    private static final int TRANSFER_CHUNK_SIZE = 64 * 1024;
+
+    private final FileContent content;
+    private final boolean readable;
+    private final boolean writable;
+    private final boolean append;
+    private final Runnable onModifiedClose;
+    private long position;
+    private boolean modified;
+
+    /**
+     * Creates a channel.
+     *
+     * @param content         the content.
+     * @param options         the options that the file has been opened with.
+     * @param onModifiedClose is run when the channel is closed after the content has been modified, or {@code null}.
+     */
+    ContentChannel(final FileContent content, final Set<? extends OpenOption> options, final Runnable onModifiedClose) {
+        this.content = content;
+        this.append = options.contains(APPEND);
+        this.writable = this.append || options.contains(WRITE);
+        this.readable = options.contains(READ) || !this.writable;
+        this.onModifiedClose = onModifiedClose;
+    }
+
+    @Override
+    public synchronized int read(final ByteBuffer dst) throws IOException {
+        this.ensureReadable();
+        final int length = this.content.read(dst, this.position);
+        if (length > 0) {
+            this.position += length;
+        }
+        return length;
+    }
+
+    @Override
+    public synchronized long read(final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            final int read = this.read(dsts[i]);
+            if (read < 0) {
+                return total == 0 ? -1 : total;
+            }
+            total += read;
+            if (dsts[i].hasRemaining()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized int write(final ByteBuffer src) throws IOException {
+        this.ensureWritable();
+        if (this.append) {
+            this.position = this.content.size();
+        }
+        final int length = this.content.write(src, this.position);
+        this.position += length;
+        this.modified = true;
+        return length;
+    }
+
+    @Override
+    public synchronized long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            total += this.write(srcs[i]);
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        this.ensureOpen();
+        return this.position;
+    }
+
+    @Override
+    public synchronized FileChannel position(final long newPosition) throws IOException {
+        this.ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("The position cannot be negative.");
+        }
+        this.position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        this.ensureOpen();
+        return this.content.size();
+    }
+
+    @Override
+    public synchronized FileChannel truncate(final long size) throws IOException {
+        this.ensureWritable();
+        if (size < 0) {
+            throw new IllegalArgumentException("The size cannot be negative.");
+        }
+        if (size < this.content.size()) {
+            this.content.truncate(size);
+            this.modified = true;
+        }
+        this.position = Math.min(this.position, size);
+        return this;
+    }
+
+    @Override
+    public void force(final boolean metaData) throws IOException {
+        this.ensureOpen();
+    }
+
+    @Override
+    public long transferTo(final long position, final long count, final WritableByteChannel target)
+    throws IOException {
+        this.ensureReadable();
+        final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, TRANSFER_CHUNK_SIZE));
+        long transferred = 0;
+        while (transferred < count) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), count - transferred));
+            final int read = this.content.read(buffer, position + transferred);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            transferred += read;
+        }
+        return transferred;
+    }
+
+    @Override
+    public long transferFrom(final ReadableByteChannel src, final long position, final long count)
+    throws IOException {
+        this.ensureWritable();
+        final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, TRANSFER_CHUNK_SIZE));
+        long transferred = 0;
+        while (transferred < count) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), count - transferred));
+            final int read = src.read(buffer);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            transferred += this.write(buffer, position + transferred);
+        }
+        return transferred;
+    }
+
+    @Override
+    public int read(final ByteBuffer dst, final long position) throws IOException {
+        this.ensureReadable();
+        if (position < 0) {
+            throw new IllegalArgumentException("The position cannot be negative.");
+        }
+        return this.content.read(dst, position);
+    }
+
+    @Override
+    public synchronized int write(final ByteBuffer src, final long position) throws IOException {
+        this.ensureWritable();
+        if (position < 0) {
+            throw new IllegalArgumentException("The position cannot be negative.");
+        }
+        final int length = this.content.write(src, position);
+        this.modified = true;
+        return length;
+    }
+
+    @Override
+    public MappedByteBuffer map(final MapMode mode, final long position, final long size) {
+        throw new UnsupportedOperationException("The file cannot be mapped into memory.");
+    }
+
+    @Override
+    public FileLock lock(final long position, final long size, final boolean shared) throws IOException {
+        return this.tryLock(position, size, shared);
+    }
+
+    @Override
+    public FileLock tryLock(final long position, final long size, final boolean shared) throws IOException {
+        this.ensureOpen();
+        // there is no other process that could access the file
+        return new FileLock(this, position, size, shared) {
+            private volatile boolean released;
+
+            @Override
+            public boolean isValid() {
+                return !this.released && this.channel().isOpen();
+            }
+
+            @Override
+            public void release() {
+                this.released = true;
+            }
+        };
+    }
+
+    @Override
+    protected synchronized void implCloseChannel() throws IOException {
+        if (!this.modified) {
+            return;
+        }
+        this.content.commit();
+        if (this.onModifiedClose != null) {
+            this.onModifiedClose.run();
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!this.isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private void ensureReadable() throws ClosedChannelException {
+        this.ensureOpen();
+        if (!this.readable) {
+            throw new NonReadableChannelException();
+        }
+    }
+
+    private void ensureWritable() throws ClosedChannelException {
+        this.ensureOpen();
+        if (!this.writable) {
+            throw new NonWritableChannelException();
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import static de.ppi.fakesftpserver.extension.ForwardingPath.unwrap;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Provider of a filesystem that stores the content of some files itself instead of the underlying filesystem.
+ * <p>Such a file exists as empty file in the underlying filesystem, which still takes care of directories,
+ * permissions and timestamps. Its content is a {@link FileContent} that is read and written by a
+ * {@link ContentChannel}, and the size in its attributes is the size of that content.
+ * <p>Files that are written are stored by the {@link Storage} of the filesystem. If it is {@link Storage#HEAP} then
+ * the underlying filesystem stores them, and content that cannot be modified is moved to the underlying filesystem
+ * before the file is opened for writing.
+ */
+class ContentFileSystemProvider extends ForwardingFileSystemProvider {
+
+    private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+    private final Map<Path, FileContent> contents = new ConcurrentHashMap<>();
+    private final Storage storage;
+    private final ContentStore store = new ContentStore();
+
+    ContentFileSystemProvider(final FileSystem delegate, final Storage storage) {
+        super(delegate);
+        this.storage = storage;
+    }
+
+    /**
+     * Replaces the content of an existing regular file.
+     *
+     * @param path    the path of the file. It may be a path of a filesystem that wraps this filesystem.
+     * @param content the new content.
+     * @throws IOException if the file does not exist or is not a regular file.
+     */
+    void attach(final Path path, final FileContent content) throws IOException {
+        final Path key = this.key(this.ownPath(path));
+        if (!Files.isRegularFile(key, NOFOLLOW_LINKS)) {
+            throw new NoSuchFileException(path.toString(), null, "The file does not exist or is not a regular file.");
+        }
+        Files.write(key, new byte[0]);
+        release(this.contents.put(key, content));
+    }
+
+    /**
+     * Returns a copy of the content of a file whose content is stored by this provider. Copying is cheap for content
+     * that cannot be modified and for deduplicated content, which is copied when one of the copies is modified.
+     *
+     * @param path the path of the file. It may be a path of a filesystem that wraps this filesystem.
+     * @return the copy or {@code null} if the content is stored by the underlying filesystem.
+     * @throws IOException if the content cannot be copied.
+     */
+    FileContent copyContent(final Path path) throws IOException {
+        final FileContent content = this.contents.get(this.key(this.ownPath(path)));
+        return content != null ? content.copy() : null;
+    }
+
+    /**
+     * Returns how much memory the deduplication of content saves. This is only done by the storage
+     * {@link Storage#DEDUPLICATED}.
+     *
+     * @return the statistics.
+     */
+    DeduplicationStatistics getDeduplicationStatistics() {
+        return this.store.getStatistics();
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(final Path path,
+                                              final Set<? extends OpenOption> options,
+                                              final FileAttribute<?>... attrs) throws IOException {
+        final FileChannel channel = this.openContentChannel(path, options, attrs);
+        return channel != null ? channel : super.newByteChannel(path, options, attrs);
+    }
+
+    @Override
+    public FileChannel newFileChannel(final Path path,
+                                      final Set<? extends OpenOption> options,
+                                      final FileAttribute<?>... attrs) throws IOException {
+        final FileChannel channel = this.openContentChannel(path, options, attrs);
+        return channel != null ? channel : super.newFileChannel(path, options, attrs);
+    }
+
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(final Path path,
+                                                              final Set<? extends OpenOption> options,
+                                                              final ExecutorService executor,
+                                                              final FileAttribute<?>... attrs) throws IOException {
+        if (this.lookup(path) != null) {
+            throw new UnsupportedOperationException("The file cannot be opened as asynchronous channel.");
+        }
+        return super.newAsynchronousFileChannel(path, options, executor, attrs);
+    }
+
+    @Override
+    public InputStream newInputStream(final Path path, final OpenOption... options) throws IOException {
+        final FileChannel channel = this.openContentChannel(path, new HashSet<>(Arrays.asList(options)));
+        return channel != null ? Channels.newInputStream(channel) : super.newInputStream(path, options);
+    }
+
+    @Override
+    public OutputStream newOutputStream(final Path path, final OpenOption... options) throws IOException {
+        final Set<OpenOption> optionSet = options.length == 0
+            ? Set.of(CREATE, TRUNCATE_EXISTING, WRITE)
+            : new HashSet<>(Arrays.asList(options));
+        final FileChannel channel = this.openContentChannel(path, optionSet);
+        return channel != null ? Channels.newOutputStream(channel) : super.newOutputStream(path, options);
+    }
+
+    @Override
+    public void delete(final Path path) throws IOException {
+        super.delete(path);
+        release(this.contents.remove(this.key(path)));
+    }
+
+    @Override
+    public boolean deleteIfExists(final Path path) throws IOException {
+        final boolean deleted = super.deleteIfExists(path);
+        if (deleted) {
+            release(this.contents.remove(this.key(path)));
+        }
+        return deleted;
+    }
+
+    @Override
+    public void copy(final Path source, final Path target, final CopyOption... options) throws IOException {
+        final FileContent content = this.lookup(source);
+        super.copy(source, target, options);
+        final Path targetKey = this.key(target);
+        if (content == null) {
+            release(this.contents.remove(targetKey));
+        } else {
+            release(this.contents.put(targetKey, content.copy()));
+        }
+    }
+
+    @Override
+    public void move(final Path source, final Path target, final CopyOption... options) throws IOException {
+        super.move(source, target, options);
+        if (this.contents.isEmpty()) {
+            return;
+        }
+
+        final Path sourceKey = this.key(source);
+        final Path targetKey = this.key(target);
+        release(this.contents.remove(targetKey));
+        for (final Path key : new ArrayList<>(this.contents.keySet())) {
+            if (key.startsWith(sourceKey)) {
+                final FileContent content = this.contents.remove(key);
+                this.contents.put(targetKey.resolve(sourceKey.relativize(key)), content);
+            }
+        }
+    }
+
+    @Override
+    public <V extends FileAttributeView> V getFileAttributeView(final Path path,
+                                                                final Class<V> type,
+                                                                final LinkOption... options) {
+        final V view = super.getFileAttributeView(path, type, options);
+        if (view == null || !type.isInterface()) {
+            return view;
+        }
+
+        // the attributes that are read by the view have to report the size of the content
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+            (proxy, method, args) -> {
+                final Object result;
+                try {
+                    result = method.invoke(view, args);
+                } catch (final InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (result instanceof BasicFileAttributes && method.getReturnType().isInterface()) {
+                    return this.withContentSize(path, method.getReturnType(), result, options);
+                }
+                return result;
+            }));
+    }
+
+    @Override
+    public <A extends BasicFileAttributes> A readAttributes(final Path path,
+                                                            final Class<A> type,
+                                                            final LinkOption... options) throws IOException {
+        final A attributes = super.readAttributes(path, type, options);
+        return type.isInterface() ? type.cast(this.withContentSize(path, type, attributes, options)) : attributes;
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(final Path path,
+                                              final String attributes,
+                                              final LinkOption... options) throws IOException {
+        final Map<String, Object> values = super.readAttributes(path, attributes, options);
+        if (!values.containsKey("size")) {
+            return values;
+        }
+
+        final FileContent content = this.lookup(path, options);
+        if (content == null) {
+            return values;
+        }
+        final Map<String, Object> valuesWithContentSize = new HashMap<>(values);
+        valuesWithContentSize.put("size", content.size());
+        return valuesWithContentSize;
+    }
+
+    private Object withContentSize(final Path path,
+                                   final Class<?> type,
+                                   final Object attributes,
+                                   final LinkOption... options) {
+        final FileContent content = this.lookup(path, options);
+        if (content == null) {
+            return attributes;
+        }
+
+        final long size = content.size();
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if ("size".equals(method.getName()) && method.getParameterCount() == 0) {
+                return size;
+            }
+            try {
+                return method.invoke(attributes, args);
+            } catch (final InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    private FileChannel openContentChannel(final Path path,
+                                           final Set<? extends OpenOption> options,
+                                           final FileAttribute<?>... attrs) throws IOException {
+        final boolean writing = isWriting(options);
+        FileContent content = this.lookup(path);
+        if (content == null && (!writing || this.storage == Storage.HEAP)) {
+            return null;
+        }
+
+        // the underlying filesystem checks the options, e.g. CREATE_NEW, and creates the file if necessary
+        super.newByteChannel(path, options, attrs).close();
+
+        final Path key = this.key(path.toRealPath());
+        final boolean truncate = writing && options.contains(TRUNCATE_EXISTING);
+        if (content == null) {
+            content = this.moveFromUnderlyingFileSystem(key);
+        } else if (writing && !content.isWritable()) {
+            content = this.replaceByWritableContent(key, content, truncate);
+            if (content == null) {
+                return null;
+            }
+        }
+
+        if (truncate) {
+            content.truncate(0);
+        }
+        return new ContentChannel(content, options, () -> touch(key));
+    }
+
+    private synchronized FileContent moveFromUnderlyingFileSystem(final Path key) throws IOException {
+        final FileContent existingContent = this.contents.get(key);
+        if (existingContent != null) {
+            // another thread has done it already
+            return existingContent;
+        }
+
+        final FileContent content = this.storage.createContent(this.store);
+        if (Files.size(key) > 0) {
+            try (InputStream is = Files.newInputStream(key)) {
+                final byte[] chunk = new byte[COPY_CHUNK_SIZE];
+                long position = 0;
+                int length;
+                while ((length = is.read(chunk)) != -1) {
+                    content.write(ByteBuffer.wrap(chunk, 0, length), position);
+                    position += length;
+                }
+            }
+            Files.write(key, new byte[0]);
+            content.commit();
+        }
+        this.contents.put(key, content);
+        return content;
+    }
+
+    private synchronized FileContent replaceByWritableContent(final Path key,
+                                                              final FileContent content,
+                                                              final boolean truncate) throws IOException {
+        final FileContent currentContent = this.contents.get(key);
+        if (currentContent != content) {
+            // another thread has done it already
+            return currentContent;
+        }
+
+        final FileContent writableContent = this.storage.createContent(this.store);
+        if (writableContent == null) {
+            this.contents.remove(key);
+            try (OutputStream os = Files.newOutputStream(key)) {
+                if (!truncate) {
+                    copy(content, (buffer, length) -> os.write(buffer.array(), 0, length));
+                }
+            }
+        } else {
+            if (!truncate) {
+                final long[] position = {0};
+                copy(content, (buffer, length) -> position[0] += writableContent.write(buffer, position[0]));
+            }
+            this.contents.put(key, writableContent);
+        }
+        content.release();
+        return writableContent;
+    }
+
+    private static void copy(final FileContent content, final ChunkConsumer consumer) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(COPY_CHUNK_SIZE);
+        long position = 0;
+        int length;
+        while ((length = content.read(buffer.clear(), position)) > 0) {
+            consumer.accept(buffer.flip(), length);
+            position += length;
+        }
+    }
+
+    private FileContent lookup(final Path path, final LinkOption... options) {
+        if (this.contents.isEmpty()) {
+            return null;
+        }
+
+        final FileContent content = this.contents.get(this.key(path));
+        if (content != null || Arrays.asList(options).contains(NOFOLLOW_LINKS)) {
+            return content;
+        }
+        try {
+            // the path may be a symbolic link to the file
+            return this.contents.get(this.key(path.toRealPath()));
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    private Path ownPath(final Path path) {
+        Path ownPath = path;
+        while (ownPath.getFileSystem() != this.getFileSystem()) {
+            ownPath = unwrap(ownPath);
+        }
+        return ownPath;
+    }
+
+    private Path key(final Path path) {
+        return unwrap(path).toAbsolutePath().normalize();
+    }
+
+    private static void touch(final Path key) {
+        try {
+            Files.setLastModifiedTime(key, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (final IOException e) {
+            // the file has been deleted while it was open
+        }
+    }
+
+    private static void release(final FileContent content) {
+        if (content != null) {
+            content.release();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkConsumer {
+        void accept(ByteBuffer buffer, int length) throws IOException;
+    }
+}
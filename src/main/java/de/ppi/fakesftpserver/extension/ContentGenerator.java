@@ -0,0 +1,92 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.NonNull;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.util.EnumSet;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Computes the content of a synthetic file (see
+ * {@link FakeSftpServerExtension#putSyntheticFile(String, long, ContentGenerator)}). The content is computed whenever
+ * it is read, so a generator has to return the same bytes for the same positions every time.
+ */
+@FunctionalInterface
+public interface ContentGenerator {
+
+    /**
+     * Writes the content of the file, starting at the given position, into the remaining space of the buffer.
+     *
+     * @param position the position of the first byte in the file.
+     * @param target   the buffer. It has to be filled from its position up to its limit.
+     */
+    void generate(long position, ByteBuffer target);
+
+    /**
+     * Returns the content of a file of the given size as stream, e.g. for comparing it with a downloaded file. The
+     * content is computed while the stream is read.
+     *
+     * @param size the size of the file.
+     * @return the stream.
+     */
+    default InputStream newInputStream(final long size) {
+        return Channels.newInputStream(new ContentChannel(new SyntheticContent(size, this), EnumSet.of(READ), null));
+    }
+
+    /**
+     * A generator of pseudo-random bytes. Files with the same seed have the same content.
+     *
+     * @param seed the seed.
+     * @return the generator.
+     */
+    static ContentGenerator seeded(final long seed) {
+        return (position, target) -> {
+            long current = position;
+            while (target.hasRemaining()) {
+                final long word = mix(seed + (current >>> 3));
+                final int offset = (int) (current & 7);
+                if (offset == 0 && target.remaining() >= Long.BYTES) {
+                    target.putLong(target.order() == ByteOrder.BIG_ENDIAN ? word : Long.reverseBytes(word));
+                    current += Long.BYTES;
+                } else {
+                    target.put((byte) (word >>> (56 - 8 * offset)));
+                    current++;
+                }
+            }
+        };
+    }
+
+    /**
+     * A generator that repeats a pattern.
+     *
+     * @param pattern the pattern. It must not be empty.
+     * @return the generator.
+     * @throws IllegalArgumentException if the pattern is empty.
+     */
+    static ContentGenerator pattern(@NonNull final byte[] pattern) {
+        if (pattern.length == 0) {
+            throw new IllegalArgumentException("The pattern of a synthetic file cannot be empty.");
+        }
+        final byte[] copy = pattern.clone();
+        return (position, target) -> {
+            int offset = (int) (position % copy.length);
+            while (target.hasRemaining()) {
+                final int length = Math.min(copy.length - offset, target.remaining());
+                target.put(copy, offset, length);
+                offset = 0;
+            }
+        };
+    }
+
+    private static long mix(final long value) {
+        // the finalizer of SplitMix64
+        long z = value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,129 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The store of the content of a filesystem with {@link Storage#DEDUPLICATED} storage. Identical content is stored only
+ * once. It is looked up by its SHA-256 hash and counts the files that refer to it, so that it is freed as soon as the
+ * last of these files is deleted or modified.
+ */
+final class ContentStore {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Map<ByteBuffer, Entry> entries = new HashMap<>();
+
+    /**
+     * Adds content to the store. If the store contains identical content already then the given content is released
+     * and the existing content is shared.
+     *
+     * @param content the content. It must not be modified afterwards.
+     * @return the entry of the content, which has one more reference.
+     * @throws IOException if the content cannot be read.
+     */
+    Entry intern(final FileContent content) throws IOException {
+        // two different contents with the same SHA-256 hash are not expected in tests, so the bytes are not compared
+        final ByteBuffer hash = hash(content);
+        final Entry existingEntry;
+        synchronized (this) {
+            existingEntry = this.entries.get(hash);
+            if (existingEntry == null) {
+                final Entry entry = new Entry(hash, content);
+                this.entries.put(hash, entry);
+                return entry;
+            }
+            existingEntry.references++;
+        }
+        content.release();
+        return existingEntry;
+    }
+
+    /**
+     * Adds a reference to the content of an entry, e.g. for a copied file.
+     *
+     * @param entry the entry.
+     */
+    synchronized void retain(final Entry entry) {
+        entry.references++;
+    }
+
+    /**
+     * Removes a reference to the content of an entry. The content is freed when its last reference is removed.
+     *
+     * @param entry the entry.
+     */
+    void release(final Entry entry) {
+        synchronized (this) {
+            if (--entry.references > 0) {
+                return;
+            }
+            this.entries.remove(entry.hash);
+        }
+        entry.content.release();
+    }
+
+    /**
+     * Returns how much memory the store saves.
+     *
+     * @return the statistics.
+     */
+    synchronized DeduplicationStatistics getStatistics() {
+        long fileCount = 0;
+        long logicalBytes = 0;
+        long storedBytes = 0;
+        for (final Entry entry : this.entries.values()) {
+            final long size = entry.content.size();
+            fileCount += entry.references;
+            logicalBytes += size * entry.references;
+            storedBytes += size;
+        }
+        return new DeduplicationStatistics(fileCount, this.entries.size(), logicalBytes, storedBytes);
+    }
+
+    private static ByteBuffer hash(final FileContent content) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("The JVM does not support SHA-256.", e);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        long position = 0;
+        int length;
+        while ((length = content.read(buffer.clear(), position)) > 0) {
+            digest.update(buffer.flip());
+            position += length;
+        }
+        return ByteBuffer.wrap(digest.digest());
+    }
+
+    /**
+     * Content of the store and the number of its references.
+     */
+    static final class Entry {
+
+        private final ByteBuffer hash;
+        private final FileContent content;
+        private int references = 1;
+
+        private Entry(final ByteBuffer hash, final FileContent content) {
+            this.hash = hash;
+            this.content = content;
+        }
+
+        /**
+         * Returns the content, which must not be modified.
+         *
+         * @return the content.
+         */
+        FileContent getContent() {
+            return this.content;
+        }
+    }
+}
@@ -1,23 +1,63 @@
 package de.ppi.fakesftpserver.extension;
 
 
-import lombok.RequiredArgsConstructor;
 import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
 import org.apache.sshd.common.session.SessionContext;
 
+import java.io.IOException;
 import java.nio.file.FileSystem;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
- * VirtualFileSystemFactory with a changeable underlying filesystem.
+ * VirtualFileSystemFactory, which routes every session to a filesystem. The filesystem is selected by the
+ * username of the session. Sessions of unknown users get the default filesystem.
  */
-@RequiredArgsConstructor
 class CustomFileSystemFactory extends VirtualFileSystemFactory {
 
-    private final FileSystem fileSystem;
+    private final FileSystem defaultFileSystem;
+    private final Map<String, FileSystem> fileSystemsByUsername = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a factory, which provides the same filesystem for all sessions.
+     *
+     * @param defaultFileSystem the filesystem for all sessions or {@code null} if only routed users are allowed.
+     */
+    CustomFileSystemFactory(final FileSystem defaultFileSystem) {
+        this.defaultFileSystem = defaultFileSystem;
+    }
 
     @Override
-    public FileSystem createFileSystem(final SessionContext session) {
-        return this.fileSystem;
+    public FileSystem createFileSystem(final SessionContext session) throws IOException {
+        final FileSystem fileSystem = this.fileSystemsByUsername.getOrDefault(session.getUsername(),
+            this.defaultFileSystem);
+        if (fileSystem == null) {
+            throw new IOException("No filesystem is available for user " + session.getUsername() + ".");
+        }
+        return fileSystem;
+    }
+
+    /**
+     * Routes all sessions of a user to a filesystem.
+     *
+     * @param username   the username.
+     * @param fileSystem the filesystem of the user.
+     * @throws IllegalStateException if the user is already routed to another filesystem.
+     */
+    void addRoute(final String username, final FileSystem fileSystem) {
+        final FileSystem existingFileSystem = this.fileSystemsByUsername.putIfAbsent(username, fileSystem);
+        if (existingFileSystem != null && existingFileSystem != fileSystem) {
+            throw new IllegalStateException("The user " + username + " is already used by another test.");
+        }
+    }
+
+    /**
+     * Removes the route of a user.
+     *
+     * @param username the username.
+     */
+    void removeRoute(final String username) {
+        this.fileSystemsByUsername.remove(username);
     }
 }
@@ -0,0 +1,319 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.common.util.buffer.Buffer;
+import org.apache.sshd.common.util.buffer.ByteArrayBuffer;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.sftp.common.SftpConstants;
+import org.apache.sshd.sftp.common.extensions.openssh.PosixRenameExtensionParser;
+import org.apache.sshd.sftp.server.Handle;
+import org.apache.sshd.sftp.server.SftpSubsystem;
+import org.apache.sshd.sftp.server.SftpSubsystemConfigurator;
+
+import java.io.IOException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An SFTP subsystem that records {@link SftpStatistics}, an {@link SftpOperationEvent} and a {@link TraceRecord} for
+ * every request, reports the opened and closed handles to a {@link FileActivity}, and emulates the {@link NetworkProfile} of a {@link NetworkShaper}.
+ * <p>If the network is shaped then a request is processed after it has been transmitted. Its response is not sent
+ * immediately, but scheduled for the time when it has been transmitted plus the latency and the jitter. Therefore, the
+ * requests that a client pipelines are processed one after the other, but wait for the latency at the same time.
+ */
+@Slf4j
+class CustomSftpSubsystem extends SftpSubsystem {
+
+    private final NetworkShaper shaper;
+    private final SftpStatistics statistics;
+    private final long latency;
+    private final long jitter;
+    private final Random random;
+    private final TraceRecording recording;
+    private final FileActivity activity;
+    private final int channelOfTrace;
+    private final Map<String, Integer> handlesOfTrace = new HashMap<>();
+    private int nextHandleOfTrace;
+    private long lastResponseTime = Long.MIN_VALUE;
+
+    // the request that is processed, which is only accessed by the thread of the channel
+    private int typeOfRequest;
+    private long startOfRequest;
+    private boolean requestFinished = true;
+    private long bytesOfRequest;
+    private TraceRecord recordOfRequest;
+
+    /**
+     * Creates a subsystem.
+     *
+     * @param channel      the channel of the subsystem.
+     * @param configurator the configuration of the subsystem.
+     * @param shaper       the shaper of the network or {@code null} if the network is not shaped.
+     * @param statistics   the statistics or {@code null} if no statistics are recorded.
+     * @param recording    the trace recording or {@code null} if the requests are not recorded.
+     * @param activity     the activity that the handles are reported to or {@code null} if they are not reported.
+     */
+    CustomSftpSubsystem(final ChannelSession channel,
+                        final SftpSubsystemConfigurator configurator,
+                        final NetworkShaper shaper,
+                        final SftpStatistics statistics,
+                        final TraceRecording recording,
+                        final FileActivity activity) {
+        super(channel, configurator);
+        this.shaper = shaper;
+        this.statistics = statistics;
+        this.latency = shaper == null ? 0 : shaper.getProfile().getLatency().toNanos();
+        this.jitter = shaper == null ? 0 : shaper.getProfile().getJitter().toNanos();
+        this.random = shaper == null ? null : new Random(shaper.getProfile().getSeed());
+        this.recording = recording;
+        this.activity = activity;
+        this.channelOfTrace = recording == null ? -1 : recording.addChannel(channel.getServerSession());
+    }
+
+    @Override
+    protected void doProcess(final Buffer buffer, final int length, final int type, final int id) throws IOException {
+        if (this.shaper != null) {
+            this.shaper.awaitReceived(this.getServerSession(), length);
+        }
+
+        final SftpOperationEvent event = new SftpOperationEvent();
+        if (event.isEnabled()) {
+            event.operation = SftpOperation.of(type).name();
+            event.path = this.readPath(buffer, type);
+            event.user = this.getServerSession().getUsername();
+        }
+        this.bytesOfRequest = 0;
+        this.typeOfRequest = type;
+        this.startOfRequest = System.nanoTime();
+        this.requestFinished = false;
+        this.recordOfRequest = this.recording == null ? null : this.readTraceRecord(buffer, type, this.startOfRequest);
+        event.begin();
+        try {
+            super.doProcess(buffer, length, type, id);
+        } finally {
+            this.finishRequest();
+            if (event.shouldCommit()) {
+                event.bytes = this.bytesOfRequest;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    protected String doOpen(final int id,
+                            final String path,
+                            final int pflags,
+                            final int access,
+                            final Map<String, Object> attrs) throws IOException {
+        final String handle = super.doOpen(id, path, pflags, access, attrs);
+        if (this.recordOfRequest != null) {
+            this.recordOfRequest.flags = TraceRecord.toVersion3Flags(pflags, access);
+            this.recordOfRequest.handle = this.addHandleOfTrace(handle);
+        }
+        this.reportOpened(handle);
+        return handle;
+    }
+
+    @Override
+    protected String doOpenDir(final int id,
+                               final String path,
+                               final Path dir,
+                               final LinkOption... options) throws IOException {
+        final String handle = super.doOpenDir(id, path, dir, options);
+        if (this.recordOfRequest != null) {
+            this.recordOfRequest.handle = this.addHandleOfTrace(handle);
+        }
+        this.reportOpened(handle);
+        return handle;
+    }
+
+    @Override
+    protected void doClose(final int id, final String handle) throws IOException {
+        final Handle handleObject = this.handles.get(handle);
+        try {
+            super.doClose(id, handle);
+        } finally {
+            this.handlesOfTrace.remove(handle);
+            if (handleObject != null && this.activity != null) {
+                this.activity.closed(pathOf(handleObject));
+            }
+        }
+    }
+
+    @Override
+    protected void closeAllHandles() {
+        // the handles that the client has not closed are closed when the channel is closed
+        final List<Handle> openHandles = new ArrayList<>(this.handles.values());
+        try {
+            super.closeAllHandles();
+        } finally {
+            if (this.activity != null) {
+                openHandles.forEach(handle -> this.activity.closed(pathOf(handle)));
+            }
+        }
+    }
+
+    @Override
+    protected int doRead(final int id,
+                         final String handle,
+                         final long offset,
+                         final int length,
+                         final byte[] data,
+                         final int doff,
+                         final AtomicReference<Boolean> eof) throws IOException {
+        final int read = super.doRead(id, handle, offset, length, data, doff, eof);
+        if (read > 0) {
+            this.bytesOfRequest = read;
+            if (this.statistics != null) {
+                this.statistics.recordRead(read);
+            }
+        }
+        return read;
+    }
+
+    @Override
+    protected void doWrite(final int id,
+                           final String handle,
+                           final long offset,
+                           final int length,
+                           final byte[] data,
+                           final int doff,
+                           final int remaining) throws IOException {
+        super.doWrite(id, handle, offset, length, data, doff, remaining);
+        this.bytesOfRequest = length;
+        if (this.statistics != null) {
+            this.statistics.recordWritten(length);
+        }
+    }
+
+    @Override
+    protected void send(final Buffer buffer) throws IOException {
+        // the request is recorded before its response is sent, so a client sees it in the statistics afterwards
+        this.finishRequest();
+        if (this.shaper == null) {
+            super.send(buffer);
+            return;
+        }
+
+        // the subsystem reuses the buffer of the request for the response
+        final Buffer response = new ByteArrayBuffer(buffer.getCompactData());
+        final long now = System.nanoTime();
+        final long transmitted = this.shaper.transmit(this.getServerSession(), now, response.available());
+        final long jitterOfResponse = this.jitter == 0 ? 0 : (long) (this.random.nextDouble() * this.jitter);
+
+        // the responses keep their order even if the jitter of an earlier response is larger
+        final long responseTime = Math.max(transmitted + this.latency + jitterOfResponse, this.lastResponseTime);
+        this.lastResponseTime = responseTime;
+        NetworkShaper.schedule(responseTime, () -> this.sendNow(response));
+    }
+
+    private String readPath(final Buffer buffer, final int type) {
+        final SftpOperation operation = SftpOperation.of(type);
+        if (!operation.hasPath() && !operation.hasHandle()) {
+            return null;
+        }
+
+        final int position = buffer.rpos();
+        try {
+            final String value = buffer.getString();
+            if (operation.hasPath()) {
+                return value;
+            }
+            final Handle handle = this.handles.get(value);
+            return handle != null ? handle.getFile().toString() : null;
+        } catch (final RuntimeException e) {
+            // the request is malformed, which the subsystem reports to the client
+            return null;
+        } finally {
+            buffer.rpos(position);
+        }
+    }
+
+    private void finishRequest() {
+        if (this.requestFinished) {
+            return;
+        }
+        this.requestFinished = true;
+        final long nanos = System.nanoTime() - this.startOfRequest;
+        if (this.statistics != null) {
+            this.statistics.recordRequest(this.typeOfRequest, nanos);
+        }
+        if (this.recordOfRequest != null) {
+            this.recordOfRequest.nanos = nanos;
+            this.recording.record(this.recordOfRequest);
+            this.recordOfRequest = null;
+        }
+        if (this.activity != null) {
+            this.activity.changed();
+        }
+    }
+
+    private void reportOpened(final String handle) {
+        final Handle handleObject = this.handles.get(handle);
+        if (handleObject != null && this.activity != null) {
+            this.activity.opened(pathOf(handleObject));
+        }
+    }
+
+    private static String pathOf(final Handle handle) {
+        return handle.getFile().toAbsolutePath().normalize().toString();
+    }
+
+    private TraceRecord readTraceRecord(final Buffer buffer, final int type, final long start) {
+        final SftpOperation operation = SftpOperation.of(type);
+        final TraceRecord record = new TraceRecord();
+        record.time = this.recording.timeOf(start);
+        record.channel = this.channelOfTrace;
+        record.type = type;
+
+        final int position = buffer.rpos();
+        try {
+            if (operation.hasPath()) {
+                record.path = buffer.getString();
+                if (operation == SftpOperation.RENAME
+                    || operation == SftpOperation.SYMLINK
+                    || operation == SftpOperation.LINK) {
+                    record.target = buffer.getString();
+                }
+            } else if (operation == SftpOperation.EXTENDED
+                && PosixRenameExtensionParser.NAME.equals(buffer.getString())) {
+                // a rename that replaces an existing file is recorded as rename
+                record.type = SftpConstants.SSH_FXP_RENAME;
+                record.path = buffer.getString();
+                record.target = buffer.getString();
+            } else if (operation.hasHandle()) {
+                record.handle = this.handlesOfTrace.getOrDefault(buffer.getString(), -1);
+                if (operation == SftpOperation.READ || operation == SftpOperation.WRITE) {
+                    // the data of a write request starts with its length
+                    record.offset = buffer.getLong();
+                    record.length = buffer.getInt();
+                }
+            }
+        } catch (final RuntimeException e) {
+            // the request is malformed, which the subsystem reports to the client
+        } finally {
+            buffer.rpos(position);
+        }
+        return record;
+    }
+
+    private int addHandleOfTrace(final String handle) {
+        final int number = this.nextHandleOfTrace++;
+        this.handlesOfTrace.put(handle, number);
+        return number;
+    }
+
+    private void sendNow(final Buffer response) {
+        try {
+            super.send(response);
+        } catch (final IOException | RuntimeException e) {
+            log.debug("The response cannot be sent because the channel has been closed.", e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package de.ppi.fakesftpserver.extension;
+
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.Command;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.apache.sshd.sftp.server.UnsupportedAttributePolicy;
+
+import java.util.function.Function;
+
+/**
+ * Factory of the SFTP subsystems of a server. The network shaper, the statistics, the trace recording and the file
+ * activity of a channel are selected by its session.
+ */
+class CustomSftpSubsystemFactory extends SftpSubsystemFactory {
+
+    private final Function<ServerSession, NetworkShaper> shaperOfSession;
+    private final Function<ServerSession, SftpStatistics> statisticsOfSession;
+    private final Function<ServerSession, TraceRecording> recordingOfSession;
+    private final Function<ServerSession, FileActivity> activityOfSession;
+
+    /**
+     * Creates a factory.
+     *
+     * @param channelExecutor     the executor of the SFTP channels.
+     * @param shaperOfSession     returns the shaper of a session or {@code null} if its network is not shaped.
+     * @param statisticsOfSession returns the statistics of a session or {@code null} if none are recorded.
+     * @param recordingOfSession  returns the trace recording of a session or {@code null} if it is not recorded.
+     * @param activityOfSession   returns the file activity of a session or {@code null} if it is not reported.
+     */
+    CustomSftpSubsystemFactory(final ChannelExecutor channelExecutor,
+                               final Function<ServerSession, NetworkShaper> shaperOfSession,
+                               final Function<ServerSession, SftpStatistics> statisticsOfSession,
+                               final Function<ServerSession, TraceRecording> recordingOfSession,
+                               final Function<ServerSession, FileActivity> activityOfSession) {
+        this.shaperOfSession = shaperOfSession;
+        this.statisticsOfSession = statisticsOfSession;
+        this.recordingOfSession = recordingOfSession;
+        this.activityOfSession = activityOfSession;
+        this.setUnsupportedAttributePolicy(UnsupportedAttributePolicy.Warn);
+        this.setExecutorServiceProvider(channelExecutor.getExecutorServiceProvider());
+    }
+
+    @Override
+    public Command createSubsystem(final ChannelSession channel) {
+        final ServerSession session = channel.getServerSession();
+        final CustomSftpSubsystem subsystem = new CustomSftpSubsystem(channel, this,
+            this.shaperOfSession.apply(session), this.statisticsOfSession.apply(session),
+            this.recordingOfSession.apply(session), this.activityOfSession.apply(session));
+        this.getRegisteredListeners().forEach(subsystem::addSftpEventListener);
+        return subsystem;
+    }
+}
@@ -0,0 +1,117 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Content of a filesystem with {@link Storage#DEDUPLICATED} storage.
+ * <p>Content that is written is stored privately until it is committed, i.e. until the channel that has written it is
+ * closed. Then it is moved to the {@link ContentStore}, which shares it with all files of identical content. Before
+ * shared content is modified, it is copied to private content again.
+ */
+final class DeduplicatedContent extends FileContent {
+
+    private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+    private final ContentStore store;
+    private FileContent privateContent;
+    private ContentStore.Entry sharedEntry;
+
+    /**
+     * Creates empty content.
+     *
+     * @param store the store of the filesystem.
+     */
+    DeduplicatedContent(final ContentStore store) {
+        this.store = store;
+        this.privateContent = new OffHeapContent();
+    }
+
+    private DeduplicatedContent(final ContentStore store, final ContentStore.Entry sharedEntry) {
+        this.store = store;
+        this.sharedEntry = sharedEntry;
+    }
+
+    @Override
+    synchronized long size() {
+        return this.current().size();
+    }
+
+    @Override
+    synchronized int read(final ByteBuffer target, final long position) throws IOException {
+        return this.current().read(target, position);
+    }
+
+    @Override
+    synchronized FileContent copy() throws IOException {
+        this.commit();
+        this.store.retain(this.sharedEntry);
+        return new DeduplicatedContent(this.store, this.sharedEntry);
+    }
+
+    @Override
+    boolean isWritable() {
+        return true;
+    }
+
+    @Override
+    synchronized int write(final ByteBuffer source, final long position) throws IOException {
+        this.makePrivate(Long.MAX_VALUE);
+        return this.privateContent.write(source, position);
+    }
+
+    @Override
+    synchronized void truncate(final long size) throws IOException {
+        if (size >= this.current().size()) {
+            return;
+        }
+        this.makePrivate(size);
+        this.privateContent.truncate(size);
+    }
+
+    @Override
+    synchronized void commit() throws IOException {
+        if (this.privateContent != null) {
+            this.sharedEntry = this.store.intern(this.privateContent);
+            this.privateContent = null;
+        }
+    }
+
+    @Override
+    synchronized void release() {
+        if (this.sharedEntry != null) {
+            this.store.release(this.sharedEntry);
+            this.sharedEntry = null;
+        }
+        if (this.privateContent != null) {
+            this.privateContent.release();
+        }
+        this.privateContent = new OffHeapContent();
+    }
+
+    private FileContent current() {
+        return this.privateContent != null ? this.privateContent : this.sharedEntry.getContent();
+    }
+
+    private void makePrivate(final long length) throws IOException {
+        if (this.privateContent != null) {
+            return;
+        }
+
+        final FileContent sharedContent = this.sharedEntry.getContent();
+        final FileContent copy = new OffHeapContent();
+        final ByteBuffer buffer = ByteBuffer.allocate(COPY_CHUNK_SIZE);
+        long position = 0;
+        while (position < length) {
+            buffer.clear().limit((int) Math.min(COPY_CHUNK_SIZE, length - position));
+            final int read = sharedContent.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            position += copy.write(buffer.flip(), position);
+        }
+        this.store.release(this.sharedEntry);
+        this.sharedEntry = null;
+        this.privateContent = copy;
+    }
+}
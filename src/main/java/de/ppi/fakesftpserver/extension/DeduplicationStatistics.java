@@ -0,0 +1,52 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Locale;
+
+/**
+ * How much memory the storage {@link Storage#DEDUPLICATED} saves. Files whose content is being written are not counted
+ * until the content is complete. Copies of files that the extension keeps for a {@link Checkpoint} share the content of
+ * the file and are counted like other files until a rollback restores them.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class DeduplicationStatistics {
+
+    /**
+     * The number of files with deduplicated content.
+     */
+    private final long fileCount;
+
+    /**
+     * The number of distinct contents of these files.
+     */
+    private final long contentCount;
+
+    /**
+     * The number of bytes that the files would take if every file stored its own content.
+     */
+    private final long logicalBytes;
+
+    /**
+     * The number of bytes that the distinct contents take.
+     */
+    private final long storedBytes;
+
+    /**
+     * Returns the number of bytes that the deduplication saves.
+     *
+     * @return the number of bytes.
+     */
+    public long getSavedBytes() {
+        return this.logicalBytes - this.storedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d files with %d distinct contents: %d bytes stored instead of %d bytes",
+            this.fileCount, this.contentCount, this.storedBytes, this.logicalBytes);
+    }
+}
@@ -4,20 +4,28 @@ import de.ppi.fakesftpserver.utils.SftpServerUtil;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.common.config.keys.AuthorizedKeyEntry;
+import org.apache.sshd.common.config.keys.PublicKeyEntryResolver;
 import org.apache.sshd.server.SshServer;
-import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
-import org.apache.sshd.sftp.server.SftpSubsystemFactory;
-import org.apache.sshd.sftp.server.UnsupportedAttributePolicy;
 import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
 import org.junit.jupiter.api.extension.BeforeEachCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Store.CloseableResource;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder.newLinux;
 import static java.nio.file.Files.*;
@@ -38,9 +46,9 @@ import static java.util.Collections.singletonList;
  * <p>This Extension starts a server before your test and stops it afterwards.
  * <p>By default the SFTP server listens on an auto-allocated port. During the
  * test this port can be obtained by {@link #getPort() sftpServer.getPort()}. It
- * can be changed by calling {@link #setManualPort(int)}. If you do this from within a
- * test then the server gets restarted. The time-consuming restart can be
- * avoided by setting the port immediately after creating the Extension.
+ * can be changed by calling {@link #setManualPort(int)}, also from within a
+ * test. Then the running server moves to the new port and keeps its sessions
+ * and files.
  * <pre>
  * public class TestClass {
  *   &#064;RegisterExtension
@@ -50,6 +58,24 @@ import static java.util.Collections.singletonList;
  *   ...
  * }
  * </pre>
+ * <p>Tests that do not connect to the server can avoid starting it by
+ * {@link #setLazyStart(boolean) setLazyStart(true)}. Then the server is
+ * started on the first call of {@link #getPort()} or when the first client
+ * connects to the manual port.
+ * <p>A {@link StandbyPool} that is shared by many tests starts servers in
+ * the background while the tests run, so a test leases a started server
+ * instead of waiting for it.
+ * <pre>
+ * public class TestClass {
+ *   static final StandbyPool STANDBY_POOL = StandbyPool.ofSize(2);
+ *
+ *   &#064;RegisterExtension
+ *   private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension()
+ *       .{@link #setStandbyPool(StandbyPool) setStandbyPool}(STANDBY_POOL);
+ *
+ *   ...
+ * }
+ * </pre>
  * <p>You can interact with the SFTP server by using the SFTP protocol with
  * password authentication. By default, the server accepts every pair of
  * username and password, but you can restrict it to specific pairs.
@@ -63,6 +89,86 @@ import static java.util.Collections.singletonList;
  * }
  * </pre>
  * <p>It is also possible to do this during the test using the same method.
+ * Clients that authenticate by public key are registered with
+ * {@link #addPublicKey(String, PublicKey)} or
+ * {@link #addAuthorizedKey(String, String)}, which takes a line of an
+ * {@code authorized_keys} file.
+ *
+ * <p>The host key of the server is generated only once per JVM. You can choose a
+ * cheaper algorithm or provide your own key.
+ * <pre>
+ * public class TestClass {
+ *   &#064;RegisterExtension
+ *   private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension()
+ *       .{@link #setHostKey(HostKey) setHostKey}(HostKey.ec());
+ *
+ *   ...
+ * }
+ * </pre>
+ *
+ * <p>Every SFTP channel is processed by its own thread. Tests with many
+ * concurrent clients can limit the number of threads by a pool that is shared
+ * by all servers, or use virtual threads on Java 21 and later.
+ * <pre>
+ * public class TestClass {
+ *   &#064;RegisterExtension
+ *   private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension()
+ *       .{@link #setChannelExecutor(ChannelExecutor) setChannelExecutor}(ChannelExecutor.sharedPool(16));
+ *
+ *   ...
+ * }
+ * </pre>
+ *
+ * <p>The server answers at loopback speed. A network profile emulates a slow
+ * link with latency, jitter and limited bandwidth.
+ * <pre>
+ * public class TestClass {
+ *   &#064;RegisterExtension
+ *   private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension()
+ *       .{@link #setNetworkProfile(NetworkProfile) setNetworkProfile}(NetworkProfile.unlimited()
+ *           .withLatency(Duration.ofMillis(100))
+ *           .withSessionBandwidth(1024 * 1024));
+ *
+ *   ...
+ * }
+ * </pre>
+ *
+ * <p>The extension counts the SFTP requests of the clients and measures
+ * their latency, so a test can verify how chatty a client is.
+ * <pre>
+ * &#064;Test
+ * public void testClientIsNotChatty() {
+ *   //code that uploads a file
+ *   assertTrue({@link #getStatistics() sftpServer.getStatistics()}.getCount(SftpOperation.OPEN) &lt;= 1);
+ * }
+ * </pre>
+ *
+ * <h2>Sharing the server between tests</h2>
+ * <p>Starting an SFTP server for every test is time-consuming. If the extension
+ * is registered in a static field then the server can be kept alive for all
+ * tests of a class ({@link ServerLifecycle#PER_CLASS}) or for the whole test run
+ * ({@link ServerLifecycle#PER_RUN}). Only the content of the filesystem is
+ * deleted between two tests.
+ * <pre>
+ * public class TestClass {
+ *   &#064;RegisterExtension
+ *   static final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension()
+ *       .{@link #setLifecycle(ServerLifecycle) setLifecycle}(ServerLifecycle.PER_CLASS);
+ *
+ *   ...
+ * }
+ * </pre>
+ *
+ * <p>Tests that run in parallel can share a single SFTP server by using the
+ * lifecycle {@link ServerLifecycle#SHARED}. Every test still has its own
+ * filesystem. It is selected by the username of the SFTP session, therefore
+ * clients have to log in with {@link #getLeaseUsername()}.
+ * <pre>
+ * &#064;Test
+ * public void testWithSharedServer() {
+ *   //code that connects to localhost:{@link #getPort() sftpServer.getPort()} as {@link #getLeaseUsername() sftpServer.getLeaseUsername()}
+ * }
+ * </pre>
  *
  * <h2>Testing code that reads files</h2>
  * <p>If you test code that reads files from an SFTP server then you need the
@@ -93,6 +199,15 @@ import static java.util.Collections.singletonList;
  *   //code that downloads the file
  * }
  * </pre>
+ * <p>Large files for testing transfers can be created without storing their
+ * content. The content of a synthetic file is computed whenever it is read.
+ * <pre>
+ * &#064;Test
+ * public void testLargeFile() {
+ *   {@link #putSyntheticFile(String, long, ContentGenerator) sftpServer.putSyntheticFile}("/directory/file.bin", 10_000_000_000L, ContentGenerator.seeded(42));
+ *   //code that downloads the file
+ * }
+ * </pre>
  * <p>If you need an empty directory then you can use the method
  * {@link #createDirectory(String)}.
  * <pre>
@@ -134,6 +249,19 @@ import static java.util.Collections.singletonList;
  * }
  * </pre>
  *
+ * <p>Large files can be verified without loading them into memory.
+ * <pre>
+ * &#064;Test
+ * public void testLargeFile() {
+ *   //code that uploads the file
+ *   assertTrue({@link #contentEquals(String, InputStream) sftpServer.contentEquals}("/directory/file.bin", expectedContent));
+ *   assertEquals(expectedHash, {@link #sha256(String) sftpServer.sha256}("/directory/file.bin"));
+ *   try (InputStream is = {@link #openFile(String) sftpServer.openFile}("/directory/file.bin")) {
+ *     ...
+ *   }
+ * }
+ * </pre>
+ *
  * <h2>Testing existence of files</h2>
  * <p>If you want to check whether a file hast been created or deleted then you
  * can verify that it exists or not.
@@ -147,6 +275,52 @@ import static java.util.Collections.singletonList;
  * </pre>
  * <p>The method returns {@code true} iff the file exists, and it is not a directory.
  *
+ * <h2>Checkpoints</h2>
+ * <p>If many tests need the same large set of files then you can create them
+ * once, create a {@link #checkpoint() checkpoint} and roll back to it before
+ * each test. Creating a checkpoint is cheap and a rollback only restores the
+ * files and directories that have been modified.
+ * <pre>
+ * Checkpoint fixture = sftpServer.{@link #checkpoint() checkpoint}();
+ * //code that modifies files
+ * sftpServer.{@link #rollback(Checkpoint) rollback}(fixture);
+ * </pre>
+ * <p>If the server is shared between tests ({@link ServerLifecycle#PER_CLASS},
+ * {@link ServerLifecycle#PER_RUN}) then the extension rolls back to the first
+ * checkpoint after each test instead of deleting all files.
+ *
+ * <h2>Base layer</h2>
+ * <p>If many tests read the same large set of files then you can load these
+ * files once per JVM into a read-only {@link BaseLayer}. Every test sees the
+ * files of the base layer, but its own uploads, deletions and renames are
+ * stored in a writable layer that is dropped after the test.
+ * <pre>
+ * public class TestClass {
+ *   &#064;RegisterExtension
+ *   private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension()
+ *       .{@link #setBaseLayer(BaseLayer) setBaseLayer}(BaseLayer.of("fixture", fileSystem -&gt; {
+ *           //code that writes the files of the fixture
+ *       }));
+ *
+ *   ...
+ * }
+ * </pre>
+ *
+ * <h2>Storage</h2>
+ * <p>By default the content of files is stored on the Java heap, and a file
+ * cannot be larger than 16 MB. Tests that transfer large files can store the
+ * content outside the heap in direct buffers instead. The storage
+ * {@link Storage#DEDUPLICATED} also stores identical content only once.
+ * <pre>
+ * public class TestClass {
+ *   &#064;RegisterExtension
+ *   private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension()
+ *       .{@link #setStorage(Storage) setStorage}(Storage.OFF_HEAP);
+ *
+ *   ...
+ * }
+ * </pre>
+ *
  * <h2>Delete all files</h2>
  * <p>If you want to reuse the SFTP server then you can delete all files and
  * directories on the SFTP server. (This is rarely necessary because the Extension
@@ -154,43 +328,145 @@ import static java.util.Collections.singletonList;
  * <pre>{@link #deleteAllFilesAndDirectories() sftpServer.deleteAllFilesAndDirectories()};</pre>
  */
 @Slf4j
-public class FakeSftpServerExtension implements AfterEachCallback, BeforeEachCallback, AutoCloseable {
+public class FakeSftpServerExtension
+    implements AfterEachCallback, BeforeAllCallback, BeforeEachCallback, AutoCloseable {
 
     private static final int HIGHEST_PORT = 65535;
     private static final int LOWEST_PORT = 1;
+    private static final ExtensionContext.Namespace NAMESPACE =
+        ExtensionContext.Namespace.create(FakeSftpServerExtension.class);
+    // the filesystem of a finished test may still be open while the next test creates its filesystem
+    private static final AtomicLong FILE_SYSTEM_COUNTER = new AtomicLong();
 
     private final InMemoryAuthenticator authenticator = new InMemoryAuthenticator();
+    private final SftpStatistics statistics = new SftpStatistics();
+    private final FileActivity activity = new FileActivity();
     private FileSystem fileSystem;
-    private SshServer server;
+    private CheckpointFileSystemProvider checkpointProvider;
+    private ContentFileSystemProvider contentProvider;
+    private OverlayFileSystemProvider overlayProvider;
+    private final Object serverLock = new Object();
+    private volatile SshServer server;
+    private PortListener portListener;
+    private SharedSftpServer.Lease lease;
 
     @Getter
     private Integer manualPort;
 
+    @Getter
+    private ServerLifecycle lifecycle = ServerLifecycle.PER_TEST;
+
+    @Getter
+    private HostKey hostKey = HostKey.rsa();
+
+    @Getter
+    private ChannelExecutor channelExecutor = ChannelExecutor.perChannel();
+
+    @Getter
+    private IoThreads ioThreads = IoThreads.perServer();
+
+    @Getter
+    private NetworkProfile networkProfile = NetworkProfile.unlimited();
+    private volatile NetworkShaper networkShaper;
+    private volatile TraceRecording recording;
+
+    @Getter
+    private BaseLayer baseLayer;
+
+    @Getter
+    private Storage storage = Storage.HEAP;
+
+    @Getter
+    private boolean lazyStart;
+
+    @Getter
+    private StandbyPool standbyPool;
+
+    @Getter
+    private boolean asyncTeardown;
+
+    // the users that have been added before the first test, which a server that is reused by several tests keeps
+    private InMemoryAuthenticator configuredUsers;
+    private boolean registeredStatically;
+
+    @Override
+    public void beforeAll(final ExtensionContext extensionContext) throws Exception {
+        // this method will only be called if the extension is registered in a static field
+        this.registeredStatically = true;
+        if (this.lifecycle == ServerLifecycle.PER_CLASS || this.lifecycle == ServerLifecycle.PER_RUN) {
+            this.ensureServerIsRunning(extensionContext);
+        }
+    }
 
     @Override
     public void beforeEach(final ExtensionContext extensionContext) throws Exception {
         // this method will be called on the beginning of a test
-        final FileSystem newFileSystem = this.createFileSystem();
-        this.startServer(newFileSystem);
+        final TestCallbackEvent event = TestCallbackEvent.start();
+        this.statistics.reset();
+        if (this.lifecycle == ServerLifecycle.PER_TEST) {
+            final FileSystem newFileSystem = this.createFileSystem();
+            this.startServer(newFileSystem);
+        } else if (this.lifecycle == ServerLifecycle.SHARED) {
+            final FileSystem newFileSystem = this.createFileSystem();
+            this.leaseSharedServer(newFileSystem);
+        } else {
+            if (!this.registeredStatically) {
+                throw new IllegalStateException("The extension with the lifecycle "
+                    + this.lifecycle
+                    + " has to be registered in a static field.");
+            }
+            if (this.configuredUsers == null) {
+                this.configuredUsers = this.authenticator.copy();
+            }
+            this.ensureServerIsRunning(extensionContext);
+        }
+        event.finish("beforeEach", extensionContext, this.lifecycle);
     }
 
     @Override
     public void afterEach(final ExtensionContext extensionContext) throws Exception {
         // this method will be called after a test
-        this.close();
+        final TestCallbackEvent event = TestCallbackEvent.start();
+        this.finishRecording();
+        if (this.lifecycle == ServerLifecycle.PER_TEST || this.lifecycle == ServerLifecycle.SHARED) {
+            this.close();
+        } else if (this.fileSystem != null) {
+            this.resetFileSystem();
+            if (this.configuredUsers != null) {
+                this.authenticator.restore(this.configuredUsers);
+            }
+        }
+        event.finish("afterEach", extensionContext, this.lifecycle);
     }
 
     @Override
     public void close() throws Exception {
-        if (this.server != null) {
-            this.server.stop();
+        this.finishRecording();
+        if (this.lease != null) {
+            this.lease.close();
+            this.lease = null;
             this.server = null;
         }
 
+        if (this.asyncTeardown) {
+            this.releaseServer();
+        } else {
+            this.stopServer();
+        }
+
         if (this.fileSystem != null) {
-            this.fileSystem.close();
+            if (this.asyncTeardown) {
+                TeardownReaper.close(this.fileSystem);
+            } else {
+                this.fileSystem.close();
+            }
             this.fileSystem = null;
+            this.checkpointProvider = null;
+            this.contentProvider = null;
+            this.overlayProvider = null;
         }
+        this.configuredUsers = null;
+        this.registeredStatically = false;
     }
 
     /**
@@ -201,18 +477,45 @@ public class FakeSftpServerExtension implements AfterEachCallback, BeforeEachCal
      */
     public int getPort() {
         this.verifyThatFileSystemIsOpen("call getPort()");
-        return this.server.getPort();
+        try {
+            return this.startPendingServer();
+        } catch (final IOException e) {
+            throw new IllegalStateException("The SFTP server cannot be started.", e);
+        }
+    }
+
+    /**
+     * Returns the username that selects the filesystem of this test on the
+     * shared SFTP server. Clients of tests with the lifecycle
+     * {@link ServerLifecycle#SHARED} have to log in with this username (or
+     * with one of the users that have been added to the extension). The
+     * username is accepted with any password or key, even after users have
+     * been added.
+     *
+     * @return the username.
+     * @throws IllegalStateException if you call the method outside a test or
+     *                               if the lifecycle is not {@code SHARED}.
+     */
+    public String getLeaseUsername() {
+        this.verifyThatFileSystemIsOpen("call getLeaseUsername()");
+        if (this.lease == null) {
+            throw new IllegalStateException("Failed to call getLeaseUsername() because the server is not shared.");
+        }
+        return this.lease.getUsername();
     }
 
     /**
-     * Set the port of the SFTP server. The SFTP server gets restarted if you
-     * call {@code setPort} from within a test. The time-consuming restart can
-     * be avoided by setting the port immediately after creating the Extension.
+     * Set the port of the SFTP server. If you call {@code setPort} from within
+     * a test then the running server starts listening on the new port and
+     * releases the old port afterwards. Open sessions and the files on the
+     * server are kept.
      *
      * @param port the port. Must be between 1 and 65535.
      * @return the Extension itself.
      * @throws IllegalArgumentException if the port is not between 1 and 65535.
-     * @throws IllegalStateException    if the server cannot be restarted.
+     * @throws IllegalStateException    if the new port cannot be bound or if
+     *                                  the server is shared. The server keeps
+     *                                  its old port then.
      */
     public FakeSftpServerExtension setManualPort(final int port) {
         if (port < LOWEST_PORT || port > HIGHEST_PORT) {
@@ -221,12 +524,246 @@ public class FakeSftpServerExtension implements AfterEachCallback, BeforeEachCal
                 + " because only ports between 1 and 65535 are valid.");
         }
 
+        if (this.lifecycle == ServerLifecycle.SHARED) {
+            throw new IllegalStateException("The port of the shared SFTP server cannot be changed.");
+        }
+
+        final Integer previousPort = this.manualPort;
         this.manualPort = port;
 
-        if (this.server != null) {
-            this.restartServer();
+        if (this.server != null || this.portListener != null) {
+            try {
+                this.rebindServer();
+            } catch (final IOException e) {
+                this.manualPort = previousPort;
+                throw new IllegalStateException("The SFTP server cannot be moved to port " + port + ".", e);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Set the lifecycle of the SFTP server. By default, a new server is started
+     * for every test ({@link ServerLifecycle#PER_TEST}). The other lifecycles
+     * require that the extension is registered in a static field. With
+     * {@code PER_CLASS} and {@code PER_RUN} every test fails with an
+     * {@link IllegalStateException} otherwise, because each test would start
+     * a server that is only stopped after the class or the test run.
+     *
+     * @param lifecycle the lifecycle of the server.
+     * @return the Extension itself.
+     * @throws IllegalStateException if a port has been set and the lifecycle
+     *                               is {@code SHARED}.
+     */
+    public FakeSftpServerExtension setLifecycle(@NonNull final ServerLifecycle lifecycle) {
+        if (lifecycle == ServerLifecycle.SHARED && this.manualPort != null) {
+            throw new IllegalStateException("The port of the shared SFTP server cannot be changed.");
+        }
+        this.lifecycle = lifecycle;
+        return this;
+    }
+
+    /**
+     * Set the host key of the SFTP server. By default, an RSA key is used.
+     * Every host key is generated or loaded only once per JVM and then shared by
+     * all servers.
+     *
+     * @param hostKey the host key.
+     * @return the Extension itself.
+     */
+    public FakeSftpServerExtension setHostKey(@NonNull final HostKey hostKey) {
+        this.hostKey = hostKey;
+        return this;
+    }
+
+    /**
+     * Set the threads that process the requests of SFTP channels. By
+     * default, every channel gets its own thread. Tests with many concurrent
+     * clients can use a pool that is shared by all servers or, on Java 21 and
+     * later, virtual threads.
+     *
+     * @param channelExecutor the executor of the SFTP channels.
+     * @return the Extension itself.
+     */
+    public FakeSftpServerExtension setChannelExecutor(@NonNull final ChannelExecutor channelExecutor) {
+        this.channelExecutor = channelExecutor;
+        return this;
+    }
+
+    /**
+     * Set the threads that accept connections and transfer their bytes, and
+     * the transport that they use. By default, every server starts its own
+     * threads. Many extensions, e.g. in parallel tests, can share threads
+     * that are created only once per JVM.
+     *
+     * @param ioThreads the IO threads.
+     * @return the Extension itself.
+     */
+    public FakeSftpServerExtension setIoThreads(@NonNull final IoThreads ioThreads) {
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    /**
+     * Set the network between the clients and the server. By default, the
+     * server answers as fast as possible. The profile applies to SFTP channels
+     * that are opened afterwards, so it can be changed within a test.
+     *
+     * @param networkProfile the network profile.
+     * @return the Extension itself.
+     */
+    public FakeSftpServerExtension setNetworkProfile(@NonNull final NetworkProfile networkProfile) {
+        this.networkProfile = networkProfile;
+        this.networkShaper = networkProfile.isUnlimited() ? null : new NetworkShaper(networkProfile);
+        return this;
+    }
+
+    /**
+     * Returns the statistics of the SFTP requests that clients have sent
+     * to the server during the current test: the number of requests and the
+     * server-side latency of every operation, and the number of bytes that
+     * have been read and written. The statistics are reset before each test.
+     *
+     * @return the statistics.
+     */
+    public SftpStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Returns how much memory the storage {@link Storage#DEDUPLICATED} saves
+     * by storing identical content only once. All values are {@code 0} if the
+     * filesystem uses another storage.
+     *
+     * @return the current statistics.
+     * @throws IllegalStateException if not called from within a test.
+     */
+    public DeduplicationStatistics getDeduplicationStatistics() {
+        this.verifyThatFileSystemIsOpen("read deduplication statistics");
+        return this.contentProvider.getDeduplicationStatistics();
+    }
+
+    /**
+     * Starts recording the SFTP requests that clients send to the server in a
+     * trace file. The trace contains the operation, the path, the offset and
+     * the length of every request and the time of its arrival, but not the
+     * content of the files. It can be sent to a server again by a
+     * {@link TraceReplayer}. The recording applies to SFTP channels that are
+     * opened afterwards and is finished when it is closed or after the test.
+     *
+     * @param file the trace file. An existing file is overwritten.
+     * @return the recording.
+     * @throws IOException           if the file cannot be created.
+     * @throws IllegalStateException if a recording is already running.
+     */
+    public TraceRecording startRecording(@NonNull final Path file) throws IOException {
+        if (this.recording != null && !this.recording.isClosed()) {
+            throw new IllegalStateException("Failed to start a recording because another recording is running.");
+        }
+        this.recording = new TraceRecording(file);
+        return this.recording;
+    }
+
+    /**
+     * Set a read-only base layer of the filesystem. The files of the base layer
+     * are visible to every test without being uploaded. Files that are
+     * uploaded, deleted or renamed by a test are stored in a writable layer of
+     * the test, which is dropped after the test. Every base layer is loaded
+     * only once per JVM.
+     *
+     * @param baseLayer the base layer.
+     * @return the Extension itself.
+     * @throws IllegalStateException if called from within a test.
+     */
+    public FakeSftpServerExtension setBaseLayer(@NonNull final BaseLayer baseLayer) {
+        if (this.fileSystem != null) {
+            throw new IllegalStateException("The base layer cannot be changed while the filesystem is in use.");
+        }
+        this.baseLayer = baseLayer;
+        return this;
+    }
+
+    /**
+     * Set where the content of files is stored. The default is
+     * {@link Storage#HEAP}.
+     *
+     * @param storage the storage.
+     * @return the Extension itself.
+     * @throws IllegalStateException if called from within a test.
+     */
+    public FakeSftpServerExtension setStorage(@NonNull final Storage storage) {
+        if (this.fileSystem != null) {
+            throw new IllegalStateException("The storage cannot be changed while the filesystem is in use.");
         }
+        this.storage = storage;
+        return this;
+    }
 
+    /**
+     * Start the SFTP server lazily. The filesystem is created before each test
+     * as usual, but the server is started on the first call of
+     * {@link #getPort()}. If a port has been set by {@link #setManualPort(int)}
+     * then the port is bound immediately and the server is started when the
+     * first client connects. Tests that only use the filesystem, e.g. because
+     * the code that would connect is mocked, do not pay for starting a server.
+     * This has no effect if the lifecycle is {@link ServerLifecycle#SHARED}.
+     * <p>The first client of a manual port is relayed to the server, so the
+     * server sees it as a client from the loopback address. Further clients
+     * that connect while the server is being started are refused, because the
+     * port is released before the server binds it.
+     *
+     * @param lazyStart {@code true} if the server is started lazily.
+     * @return the Extension itself.
+     * @throws IllegalStateException if called from within a test.
+     */
+    public FakeSftpServerExtension setLazyStart(final boolean lazyStart) {
+        if (this.fileSystem != null) {
+            throw new IllegalStateException("The lazy start cannot be changed while the filesystem is in use.");
+        }
+        this.lazyStart = lazyStart;
+        return this;
+    }
+
+    /**
+     * Lease servers from a pool of servers that have been started in the
+     * background instead of starting a server for every test. This has no
+     * effect if the lifecycle is {@link ServerLifecycle#SHARED} or if a port
+     * has been set by {@link #setManualPort(int)}, because the servers of the
+     * pool listen on auto-allocated ports.
+     *
+     * @param standbyPool the pool or {@code null} if every server is started
+     *                    by the extension itself.
+     * @return the Extension itself.
+     * @throws IllegalStateException if called from within a test.
+     */
+    public FakeSftpServerExtension setStandbyPool(final StandbyPool standbyPool) {
+        if (this.fileSystem != null) {
+            throw new IllegalStateException("The standby pool cannot be changed while the filesystem is in use.");
+        }
+        this.standbyPool = standbyPool;
+        return this;
+    }
+
+    /**
+     * Tear down the server and the filesystem in the background. At the end
+     * of a test the server only stops accepting connections and releases its
+     * port. Closing the sessions and the server and freeing the content of
+     * the files is done by a background thread, so the next test does not
+     * wait for it. If the background thread falls behind then a test tears
+     * down its server itself. Everything that is still pending when the JVM
+     * exits is torn down by a shutdown hook.
+     *
+     * @param asyncTeardown {@code true} if the server and the filesystem are
+     *                      torn down in the background.
+     * @return the Extension itself.
+     * @throws IllegalStateException if called from within a test.
+     */
+    public FakeSftpServerExtension setAsyncTeardown(final boolean asyncTeardown) {
+        if (this.fileSystem != null) {
+            throw new IllegalStateException("The teardown cannot be changed while the filesystem is in use.");
+        }
+        this.asyncTeardown = asyncTeardown;
         return this;
     }
 
@@ -242,10 +779,58 @@ public class FakeSftpServerExtension implements AfterEachCallback, BeforeEachCal
      * @return the Extension itself.
      */
     public FakeSftpServerExtension addUser(@NonNull final String username, @NonNull final String password) {
+        if (this.lease != null) {
+            this.lease.addUsername(username);
+        }
         this.authenticator.putUser(username, password);
         return this;
     }
 
+    /**
+     * Register a public key of a user. After registering a user it is only
+     * possible to connect to the server with one of the registered
+     * username/password pairs or username/key pairs. A user can have several
+     * keys and a password.
+     *
+     * @param username the username.
+     * @param key      the public key of the user.
+     * @return the Extension itself.
+     */
+    public FakeSftpServerExtension addPublicKey(@NonNull final String username, @NonNull final PublicKey key) {
+        if (this.lease != null) {
+            this.lease.addUsername(username);
+        }
+        this.authenticator.putPublicKey(username, key);
+        return this;
+    }
+
+    /**
+     * Register a public key of a user in the format of an
+     * {@code authorized_keys} file, e.g.
+     * {@code ssh-ed25519 AAAAC3NzaC1lZDI1NTE5AAAA... user@host}. The key is
+     * parsed once, so authenticating the user is cheap.
+     *
+     * @param username      the username.
+     * @param authorizedKey the line of the {@code authorized_keys} file.
+     * @return the Extension itself.
+     * @throws IllegalArgumentException if the key cannot be parsed.
+     * @see #addPublicKey(String, PublicKey)
+     */
+    public FakeSftpServerExtension addAuthorizedKey(@NonNull final String username,
+                                                    @NonNull final String authorizedKey) {
+        final PublicKey key;
+        try {
+            final AuthorizedKeyEntry entry = AuthorizedKeyEntry.parseAuthorizedKeyEntry(authorizedKey);
+            key = entry == null ? null : entry.resolvePublicKey(null, PublicKeyEntryResolver.FAILING);
+        } catch (final IOException | GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("The authorized key of " + username + " cannot be parsed.", e);
+        }
+        if (key == null) {
+            throw new IllegalArgumentException("The authorized key of " + username + " is empty.");
+        }
+        return this.addPublicKey(username, key);
+    }
+
     /**
      * Put a text file on the SFTP folder. The file is available by the
      * specified path.
@@ -291,6 +876,87 @@ public class FakeSftpServerExtension implements AfterEachCallback, BeforeEachCal
         copy(is, pathAsObject);
     }
 
+    /**
+     * Copy the files and directories of a local directory to a directory on
+     * the SFTP server. Every directory is created once and the files are
+     * copied in parallel, so this is much faster than putting the files one
+     * by one. Existing files are overwritten.
+     *
+     * @param localDirectory the local directory.
+     * @param target         the directory on the SFTP server. It is created if
+     *                       it does not exist.
+     * @throws IOException if the local directory cannot be read or the files
+     *                     cannot be written.
+     */
+    public void importDirectory(@NonNull final Path localDirectory, final String target) throws IOException {
+        this.verifyThatFileSystemIsOpen("import files");
+        FixtureImporter.importDirectory(localDirectory, this.fileSystem.getPath(target));
+    }
+
+    /**
+     * Extract a zip archive to a directory on the SFTP server. Small entries
+     * are written in parallel and large entries are streamed, so they are
+     * never held in memory completely.
+     *
+     * @param zip    the archive. It is read but not closed.
+     * @param target the directory on the SFTP server. It is created if it does
+     *               not exist.
+     * @throws IOException if the archive cannot be read, if an entry would be
+     *                     extracted outside the target directory or if the
+     *                     files cannot be written.
+     */
+    public void importZip(@NonNull final InputStream zip, final String target) throws IOException {
+        this.verifyThatFileSystemIsOpen("import files");
+        FixtureImporter.importZip(zip, this.fileSystem.getPath(target));
+    }
+
+    /**
+     * Copy the files and directories of a directory of the classpath to a
+     * directory on the SFTP server, like
+     * {@link #importDirectory(Path, String)}. The directory may be part of a
+     * directory or of a jar file of the classpath. It is looked up by the
+     * context class loader of the current thread.
+     *
+     * @param resourceDirectory the name of the directory, e.g.
+     *                          {@code fixtures/orders}.
+     * @param target            the directory on the SFTP server. It is
+     *                          created if it does not exist.
+     * @throws IOException if the directory is not on the classpath, cannot be
+     *                     read or if the files cannot be written.
+     */
+    public void importClasspath(@NonNull final String resourceDirectory, final String target) throws IOException {
+        this.verifyThatFileSystemIsOpen("import files");
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        FixtureImporter.importClasspath(
+            contextClassLoader != null ? contextClassLoader : FakeSftpServerExtension.class.getClassLoader(),
+            resourceDirectory, this.fileSystem.getPath(target));
+    }
+
+    /**
+     * Put a synthetic file on the SFTP folder. Its content is computed by the
+     * generator whenever it is read, so the file takes no memory, no matter
+     * how large it is. The content is stored only if the file is modified.
+     *
+     * @param path      the path to the file.
+     * @param size      the size of the file in bytes.
+     * @param generator computes the content of the file, e.g.
+     *                  {@link ContentGenerator#seeded(long)}.
+     * @throws IOException              if the file cannot be written.
+     * @throws IllegalArgumentException if the size is negative.
+     */
+    public void putSyntheticFile(final String path, final long size, @NonNull final ContentGenerator generator)
+    throws IOException {
+        if (size < 0) {
+            throw new IllegalArgumentException("The size of a file cannot be negative.");
+        }
+
+        this.verifyThatFileSystemIsOpen("upload file");
+        final Path pathAsObject = this.fileSystem.getPath(path);
+        SftpServerUtil.ensureDirectoryOfPathExists(pathAsObject);
+        write(pathAsObject, new byte[0]);
+        this.contentProvider.attach(pathAsObject, new SyntheticContent(size, generator));
+    }
+
     /**
      * Create a directory on the SFTP server.
      *
@@ -344,6 +1010,78 @@ public class FakeSftpServerExtension implements AfterEachCallback, BeforeEachCal
         return readAllBytes(pathAsObject);
     }
 
+    /**
+     * Opens a file of the SFTP server for reading. In contrast to
+     * {@link #getFileContent(String)} the file is not loaded into memory, so
+     * that large files can be read with a small heap.
+     *
+     * @param path the path to the file.
+     * @return a stream of the file's content. It has to be closed by the caller.
+     * @throws IOException           if the file cannot be opened.
+     * @throws IllegalStateException if not called from within a test.
+     */
+    public InputStream openFile(final String path) throws IOException {
+        this.verifyThatFileSystemIsOpen("open file");
+        return newInputStream(this.fileSystem.getPath(path));
+    }
+
+    /**
+     * Opens a file of the SFTP server for reading at arbitrary positions. The
+     * file is not loaded into memory.
+     *
+     * @param path the path to the file.
+     * @return a read-only channel of the file's content. It has to be closed by
+     * the caller.
+     * @throws IOException           if the file cannot be opened.
+     * @throws IllegalStateException if not called from within a test.
+     */
+    public SeekableByteChannel openChannel(final String path) throws IOException {
+        this.verifyThatFileSystemIsOpen("open file");
+        return newByteChannel(this.fileSystem.getPath(path), StandardOpenOption.READ);
+    }
+
+    /**
+     * Compares the content of a file with the content of a stream. Both are
+     * read in chunks, so that large files can be verified with a small heap.
+     *
+     * @param path     the path to the file.
+     * @param expected the expected content. It is read but not closed.
+     * @return {@code true} iff the file has exactly the expected content.
+     * @throws IOException           if the file or the stream cannot be read.
+     * @throws IllegalStateException if not called from within a test.
+     */
+    public boolean contentEquals(final String path, @NonNull final InputStream expected) throws IOException {
+        this.verifyThatFileSystemIsOpen("compare file");
+        return SftpServerUtil.contentEquals(this.fileSystem.getPath(path), expected);
+    }
+
+    /**
+     * Calculates the SHA-256 hash of a file. The file is read in chunks, so
+     * that large files can be verified with a small heap.
+     *
+     * @param path the path to the file.
+     * @return the hash as lower case hexadecimal string.
+     * @throws IOException           if the file cannot be read.
+     * @throws IllegalStateException if not called from within a test.
+     */
+    public String sha256(final String path) throws IOException {
+        this.verifyThatFileSystemIsOpen("hash file");
+        return SftpServerUtil.sha256(this.fileSystem.getPath(path));
+    }
+
+    /**
+     * Returns the size of a file without reading its content.
+     *
+     * @param path the path to the file.
+     * @return the size of the file in bytes.
+     * @throws IOException           if the size cannot be read.
+     * @throws IllegalStateException if not called from within a test.
+     */
+    public long size(final String path) throws IOException {
+        this.verifyThatFileSystemIsOpen("read size of file");
+        return Files.size(this.fileSystem.getPath(path));
+    }
+
     /**
      * Checks the existence of a file. returns {@code true} iff the file exists,
      * and it is not a directory.
@@ -358,6 +1096,43 @@ public class FakeSftpServerExtension implements AfterEachCallback, BeforeEachCal
         return exists(pathAsObject) && !isDirectory(pathAsObject);
     }
 
+    /**
+     * Waits until a file exists and no SFTP client has it open, e.g. until an
+     * asynchronous upload has been completed. The test continues as soon as
+     * the client closes the file or renames it to the given path. There is
+     * no polling.
+     *
+     * @param path    the path to the file.
+     * @param timeout the maximum time to wait.
+     * @return {@code true} if the file has been written, {@code false} if the
+     * timeout has elapsed before.
+     * @throws InterruptedException  if the thread has been interrupted while
+     *                               waiting.
+     * @throws IllegalStateException if not called from within a test.
+     */
+    public boolean awaitFile(final String path, @NonNull final Duration timeout) throws InterruptedException {
+        this.verifyThatFileSystemIsOpen("wait for file");
+        final Path pathAsObject = this.fileSystem.getPath(path).toAbsolutePath().normalize();
+        return this.activity.awaitFile(pathAsObject.toString(), () -> isRegularFile(pathAsObject), timeout);
+    }
+
+    /**
+     * Waits until no SFTP client has a file or directory open, e.g. until all
+     * asynchronous uploads have been completed. The test continues as soon as
+     * the last one is closed. There is no polling.
+     *
+     * @param timeout the maximum time to wait.
+     * @return {@code true} if no file or directory is open, {@code false} if
+     * the timeout has elapsed before.
+     * @throws InterruptedException  if the thread has been interrupted while
+     *                               waiting.
+     * @throws IllegalStateException if not called from within a test.
+     */
+    public boolean awaitQuiescence(@NonNull final Duration timeout) throws InterruptedException {
+        this.verifyThatFileSystemIsOpen("wait for quiescence");
+        return this.activity.awaitQuiescence(timeout);
+    }
+
     /**
      * Deletes all files and directories.
      *
@@ -370,41 +1145,258 @@ public class FakeSftpServerExtension implements AfterEachCallback, BeforeEachCal
         }
     }
 
-    private void restartServer() {
-        try {
-            this.server.stop();
+    /**
+     * Creates a checkpoint of the filesystem. The filesystem can be rolled back
+     * to the checkpoint by {@link #rollback(Checkpoint)}.
+     * <p>Creating a checkpoint is cheap because nothing is copied. A file or
+     * directory is copied when it is modified for the first time after the
+     * checkpoint has been created.
+     *
+     * @return the checkpoint.
+     * @throws IllegalStateException if not called from within a test.
+     */
+    public Checkpoint checkpoint() {
+        this.verifyThatFileSystemIsOpen("create checkpoint");
+        return this.checkpointProvider.createCheckpoint();
+    }
+
+    /**
+     * Rolls back the filesystem to a checkpoint. Only the files and directories
+     * that have been modified since the checkpoint are restored. Checkpoints
+     * that have been created after the given checkpoint are discarded. The
+     * given checkpoint stays valid, so you can roll back to it again.
+     *
+     * @param checkpoint the checkpoint.
+     * @throws IOException              if the filesystem cannot be restored.
+     * @throws IllegalArgumentException if the checkpoint has been discarded or
+     *                                  belongs to another filesystem.
+     * @throws IllegalStateException    if not called from within a test.
+     */
+    public void rollback(@NonNull final Checkpoint checkpoint) throws IOException {
+        this.verifyThatFileSystemIsOpen("roll back filesystem");
+        this.checkpointProvider.rollback(checkpoint);
+    }
 
-            // sometimes, the system needs some time to release the port
-            Thread.sleep(100);
+    /**
+     * Writes a snapshot of all files and directories of the SFTP server,
+     * including their attributes and content, in a compact binary format. The
+     * snapshot can be loaded by {@link #loadSnapshot(Path)}, e.g. by another
+     * test class that needs the same files.
+     *
+     * @param output the stream that the snapshot is written to. It is flushed
+     *               but not closed.
+     * @throws IOException           if the files cannot be read or the
+     *                               snapshot cannot be written.
+     * @throws IllegalStateException if not called from within a test.
+     */
+    public void saveSnapshot(@NonNull final OutputStream output) throws IOException {
+        this.verifyThatFileSystemIsOpen("save snapshot");
+        Snapshot.save(this.fileSystem, output);
+    }
 
-            this.startServer(this.fileSystem);
-        } catch (final IOException e) {
-            throw new IllegalStateException("The SFTP server cannot be restarted.", e);
-        } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
+    /**
+     * Replaces all files and directories of the SFTP server with the files and
+     * directories of a snapshot that has been written by
+     * {@link #saveSnapshot(OutputStream)}. The content of the files is
+     * memory-mapped instead of being copied, so even a large snapshot is
+     * loaded in milliseconds. The snapshot file must not be modified while
+     * the test runs.
+     *
+     * @param snapshot the snapshot file. It has to be a file of the default
+     *                 filesystem.
+     * @throws IOException           if the snapshot cannot be read or is
+     *                               malformed or if the files cannot be
+     *                               written.
+     * @throws IllegalStateException if not called from within a test.
+     */
+    public void loadSnapshot(@NonNull final Path snapshot) throws IOException {
+        this.verifyThatFileSystemIsOpen("load snapshot");
+        this.deleteAllFilesAndDirectories();
+        Snapshot.load(snapshot, this.fileSystem, this.contentProvider);
+    }
+
+    private void resetFileSystem() throws IOException {
+        final Checkpoint firstCheckpoint = this.checkpointProvider.getFirstCheckpoint();
+        if (firstCheckpoint != null) {
+            this.checkpointProvider.rollback(firstCheckpoint);
+        } else if (this.overlayProvider != null) {
+            this.overlayProvider.reset();
+        } else {
+            this.deleteAllFilesAndDirectories();
+        }
+    }
+
+    private TraceRecording getRunningRecording() {
+        final TraceRecording currentRecording = this.recording;
+        return currentRecording != null && !currentRecording.isClosed() ? currentRecording : null;
+    }
+
+    private void finishRecording() throws IOException {
+        final TraceRecording currentRecording = this.recording;
+        this.recording = null;
+        if (currentRecording != null) {
+            currentRecording.close();
+        }
+    }
+
+    private void rebindServer() throws IOException {
+        synchronized (this.serverLock) {
+            if (this.portListener != null) {
+                if (this.portListener.getPort() == this.getManualPort()) {
+                    return;
+                }
+                // the server has not been started yet, so only the listener moves to the new port
+                final PortListener oldListener = this.portListener;
+                this.portListener = PortListener.listen(this.getManualPort(), this::startServerForFirstClient);
+                oldListener.close();
+            } else if (this.server != null) {
+                ((UnbindableSshServer) this.server).rebind(this.getManualPort());
+            }
+        }
+    }
+
+    private void leaseSharedServer(final FileSystem fileSystem) throws IOException {
+        this.lease = SharedSftpServer.of(this.hostKey, this.channelExecutor, this.ioThreads)
+            .lease(new UnclosableFileSystem(fileSystem), this.authenticator, () -> this.networkShaper,
+                this.statistics, this::getRunningRecording, this.activity);
+        this.server = this.lease.getServer();
+    }
+
+    private void ensureServerIsRunning(final ExtensionContext extensionContext) throws IOException {
+        if (this.fileSystem != null) {
+            return;
+        }
+
+        final FileSystem newFileSystem = this.createFileSystem();
+        this.startServer(newFileSystem);
+
+        if (extensionContext != null) {
+            // JUnit closes the resource together with the context that owns the server
+            this.getOwningContext(extensionContext).getStore(NAMESPACE)
+                .getOrComputeIfAbsent(this, key -> (CloseableResource) this::close, CloseableResource.class);
+        }
+    }
+
+    private ExtensionContext getOwningContext(final ExtensionContext extensionContext) {
+        if (this.lifecycle == ServerLifecycle.PER_RUN) {
+            return extensionContext.getRoot();
         }
+
+        return extensionContext.getTestMethod().isPresent()
+            ? extensionContext.getParent().orElse(extensionContext)
+            : extensionContext;
     }
 
     private FileSystem createFileSystem() throws IOException {
-        this.fileSystem = newLinux().build("fakeSftpExtension@" + this.hashCode());
+        final ServerPhaseEvent event = ServerPhaseEvent.start();
+        final FileSystem memoryFileSystem = newLinux()
+            .build("fakeSftpExtension@" + this.hashCode() + "-" + FILE_SYSTEM_COUNTER.incrementAndGet());
+        this.contentProvider = new ContentFileSystemProvider(memoryFileSystem, this.storage);
+        FileSystem layeredFileSystem = this.contentProvider.getFileSystem();
+        if (this.baseLayer != null) {
+            this.overlayProvider = new OverlayFileSystemProvider(layeredFileSystem, this.baseLayer.getFileSystem());
+            layeredFileSystem = this.overlayProvider.getFileSystem();
+        }
+        this.checkpointProvider = new CheckpointFileSystemProvider(layeredFileSystem, this.contentProvider);
+        this.fileSystem = this.checkpointProvider.getFileSystem();
+        event.finish(ServerPhaseEvent.BUILD_FILESYSTEM, this.lifecycle);
         return this.fileSystem;
     }
 
     private void startServer(final FileSystem fileSystem) throws IOException {
-        final SshServer newServer = SshServer.setUpDefaultServer();
+        if (!this.lazyStart) {
+            this.bindServer(fileSystem);
+        } else if (this.getManualPort() != null) {
+            synchronized (this.serverLock) {
+                this.portListener = PortListener.listen(this.getManualPort(), this::startServerForFirstClient);
+            }
+        }
+    }
+
+    private int startPendingServer() throws IOException {
+        synchronized (this.serverLock) {
+            if (this.server == null) {
+                if (this.fileSystem == null) {
+                    throw new IllegalStateException("The SFTP server cannot be started after the test.");
+                }
+                this.closePortListener();
+                this.bindServer(this.fileSystem);
+            }
+            return this.server.getPort();
+        }
+    }
+
+    private int startServerForFirstClient(final PortListener listener) throws IOException {
+        synchronized (this.serverLock) {
+            if (listener != this.portListener) {
+                // the server has been stopped or moved to another port while the client connected
+                return PortListener.ServerStarter.NOT_STARTED;
+            }
+            return this.startPendingServer();
+        }
+    }
+
+    private void stopServer() throws IOException {
+        synchronized (this.serverLock) {
+            this.closePortListener();
+            if (this.server != null) {
+                this.server.stop();
+                this.server = null;
+            }
+        }
+    }
+
+    private void releaseServer() throws IOException {
+        synchronized (this.serverLock) {
+            this.closePortListener();
+            final SshServer oldServer = this.server;
+            this.server = null;
+            if (oldServer != null) {
+                if (oldServer instanceof UnbindableSshServer) {
+                    ((UnbindableSshServer) oldServer).unbind();
+                }
+                TeardownReaper.close(() -> oldServer.stop(true));
+            }
+        }
+    }
+
+    private void closePortListener() throws IOException {
+        if (this.portListener != null) {
+            this.portListener.close();
+            this.portListener = null;
+        }
+    }
+
+    private void bindServer(final FileSystem fileSystem) throws IOException {
+        if (this.standbyPool != null && this.getManualPort() == null) {
+            final ServerPhaseEvent leaseEvent = ServerPhaseEvent.start();
+            this.server = this.standbyPool.lease(this.hostKey, this.channelExecutor, this.ioThreads,
+                new StandbyServer.Tenant(new UnclosableFileSystem(fileSystem), this.authenticator,
+                    () -> this.networkShaper, this.statistics, this::getRunningRecording, this.activity));
+            leaseEvent.finish(ServerPhaseEvent.LEASE_STANDBY, this.lifecycle);
+            return;
+        }
+
+        final SshServer newServer = UnbindableSshServer.create();
 
-        newServer.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+        final ServerPhaseEvent hostKeyEvent = ServerPhaseEvent.start();
+        newServer.setKeyPairProvider(this.hostKey.getKeyPairProvider());
+        hostKeyEvent.finish(ServerPhaseEvent.PROVIDE_HOST_KEY, this.lifecycle);
+        this.ioThreads.configure(newServer);
         newServer.setPasswordAuthenticator(this.authenticator);
-        newServer.setSubsystemFactories(singletonList(new SftpSubsystemFactory.Builder()
-            .withUnsupportedAttributePolicy(UnsupportedAttributePolicy.Warn)
-            .build()));
+        newServer.setPublickeyAuthenticator(this.authenticator);
+        newServer.setSubsystemFactories(singletonList(
+            new CustomSftpSubsystemFactory(this.channelExecutor, session -> this.networkShaper,
+                session -> this.statistics, session -> this.getRunningRecording(), session -> this.activity)));
         newServer.setFileSystemFactory(new CustomFileSystemFactory(new UnclosableFileSystem(fileSystem)));
 
         if (this.getManualPort() != null) {
             newServer.setPort(this.getManualPort());
         }
 
+        final ServerPhaseEvent bindEvent = ServerPhaseEvent.start();
         newServer.start();
+        bindEvent.finish(ServerPhaseEvent.BIND, this.lifecycle);
         this.server = newServer;
     }
 
@@ -0,0 +1,84 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The handles of files and directories that SFTP clients have opened. A test can wait until a file has been written
+ * or until all handles have been closed. The waiting threads are notified by the SFTP subsystems whenever a handle is
+ * opened or closed and whenever a request has been processed, so they continue immediately.
+ */
+final class FileActivity {
+
+    private final Map<String, Integer> openHandlesByPath = new HashMap<>();
+    private int openHandles;
+
+    /**
+     * Records that a handle has been opened.
+     *
+     * @param path the absolute path of the file or directory.
+     */
+    synchronized void opened(final String path) {
+        this.openHandles++;
+        this.openHandlesByPath.merge(path, 1, Integer::sum);
+        this.notifyAll();
+    }
+
+    /**
+     * Records that a handle has been closed.
+     *
+     * @param path the absolute path of the file or directory.
+     */
+    synchronized void closed(final String path) {
+        this.openHandles--;
+        this.openHandlesByPath.computeIfPresent(path, (key, count) -> count == 1 ? null : count - 1);
+        this.notifyAll();
+    }
+
+    /**
+     * Records that a request has been processed, which may have created, renamed or deleted files.
+     */
+    synchronized void changed() {
+        this.notifyAll();
+    }
+
+    /**
+     * Waits until a file exists and has no open handle.
+     *
+     * @param path    the absolute path of the file.
+     * @param exists  checks whether the file exists.
+     * @param timeout the maximum time to wait.
+     * @return {@code true} if the file has been written, {@code false} if the timeout has elapsed before.
+     * @throws InterruptedException if the thread has been interrupted while waiting.
+     */
+    synchronized boolean awaitFile(final String path, final BooleanSupplier exists, final Duration timeout)
+    throws InterruptedException {
+        return this.await(() -> !this.openHandlesByPath.containsKey(path) && exists.getAsBoolean(), timeout);
+    }
+
+    /**
+     * Waits until no handle is open.
+     *
+     * @param timeout the maximum time to wait.
+     * @return {@code true} if no handle is open, {@code false} if the timeout has elapsed before.
+     * @throws InterruptedException if the thread has been interrupted while waiting.
+     */
+    synchronized boolean awaitQuiescence(final Duration timeout) throws InterruptedException {
+        return this.await(() -> this.openHandles == 0, timeout);
+    }
+
+    private boolean await(final BooleanSupplier condition, final Duration timeout) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        while (!condition.getAsBoolean()) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,86 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+
+/**
+ * The content of a file that is not stored by the underlying filesystem but by the
+ * {@link ContentFileSystemProvider}. Implementations have to be thread-safe.
+ */
+abstract class FileContent {
+
+    /**
+     * Returns the size of the content.
+     *
+     * @return the size in bytes.
+     */
+    abstract long size();
+
+    /**
+     * Reads bytes into the remaining space of the buffer.
+     *
+     * @param target   the buffer.
+     * @param position the position of the first byte that is read.
+     * @return the number of bytes that have been read or {@code -1} if the position is not before the end of the
+     * content.
+     * @throws IOException if the content cannot be read.
+     */
+    abstract int read(ByteBuffer target, long position) throws IOException;
+
+    /**
+     * Creates a copy of the content, e.g. for a copied file. Modifying the copy does not modify this content.
+     *
+     * @return the copy.
+     * @throws IOException if the content cannot be copied.
+     */
+    abstract FileContent copy() throws IOException;
+
+    /**
+     * Checks whether the content can be modified. Content that cannot be modified is replaced by writable content
+     * before a file is opened for writing.
+     *
+     * @return {@code true} iff the content can be modified.
+     */
+    boolean isWritable() {
+        return false;
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer. The content grows if necessary.
+     *
+     * @param source   the buffer.
+     * @param position the position of the first byte that is written.
+     * @return the number of bytes that have been written.
+     * @throws IOException if the content cannot be written.
+     */
+    int write(final ByteBuffer source, final long position) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    /**
+     * Truncates the content. Nothing happens if the content is not larger than the given size.
+     *
+     * @param size the new size.
+     * @throws IOException if the content cannot be truncated.
+     */
+    void truncate(final long size) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    /**
+     * Completes a modification of the content. This is called when a channel that has modified the content is closed.
+     *
+     * @throws IOException if the content cannot be stored.
+     */
+    void commit() throws IOException {
+        // most content is stored while it is written
+    }
+
+    /**
+     * Frees the storage of the content. This is called when the file is deleted or replaced.
+     */
+    void release() {
+        // most content is freed by the garbage collector
+    }
+}
@@ -0,0 +1,65 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.util.Random;
+
+/**
+ * The distribution of the sizes of the files that a {@link LoadGenerator} uploads.
+ */
+@FunctionalInterface
+public interface FileSizeDistribution {
+
+    /**
+     * Returns the size of the next file.
+     *
+     * @param random the random generator of the channel that uploads the file.
+     * @return the size in bytes.
+     */
+    long nextSize(Random random);
+
+    /**
+     * Files of the same size.
+     *
+     * @param size the size in bytes.
+     * @return the distribution.
+     * @throws IllegalArgumentException if the size is negative.
+     */
+    static FileSizeDistribution fixed(final long size) {
+        return uniform(size, size);
+    }
+
+    /**
+     * Files whose sizes are uniformly distributed between a minimum and a maximum.
+     *
+     * @param min the minimal size in bytes.
+     * @param max the maximal size in bytes.
+     * @return the distribution.
+     * @throws IllegalArgumentException if the minimum is negative or larger than the maximum.
+     */
+    static FileSizeDistribution uniform(final long min, final long max) {
+        if (min < 0 || min > max) {
+            throw new IllegalArgumentException("The minimal size must be between 0 and the maximal size.");
+        }
+        return random -> min == max ? min : min + (long) (random.nextDouble() * (max - min + 1));
+    }
+
+    /**
+     * Files whose sizes are chosen from a list of sizes with the same probability, e.g. many small files and a few
+     * large files if the small size is listed more often.
+     *
+     * @param sizes the sizes in bytes.
+     * @return the distribution.
+     * @throws IllegalArgumentException if there is no size or if a size is negative.
+     */
+    static FileSizeDistribution choice(final long... sizes) {
+        if (sizes.length == 0) {
+            throw new IllegalArgumentException("At least one size is required.");
+        }
+        for (final long size : sizes) {
+            if (size < 0) {
+                throw new IllegalArgumentException("The size of a file cannot be negative.");
+            }
+        }
+        final long[] copy = sizes.clone();
+        return random -> copy[random.nextInt(copy.length)];
+    }
+}
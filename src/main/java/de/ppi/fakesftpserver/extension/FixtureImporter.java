@@ -0,0 +1,255 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Imports many files into a filesystem at once. Every directory is created once, and the files are copied in parallel
+ * by the common fork-join pool. Large files are streamed, so they are never held in memory completely.
+ */
+final class FixtureImporter {
+
+    // entries of an archive up to this size are read into memory, so they can be written in parallel
+    private static final int MAX_BUFFERED_SIZE = 1024 * 1024;
+    private static final int FILES_PER_TASK = 8;
+
+    private FixtureImporter() {
+    }
+
+    /**
+     * Copies the files and directories of a directory into a directory of another filesystem.
+     *
+     * @param source the directory.
+     * @param target the target directory, which is created if it does not exist.
+     * @throws IOException if the directory cannot be read or the files cannot be written.
+     */
+    static void importDirectory(final Path source, final Path target) throws IOException {
+        if (!Files.isDirectory(source)) {
+            throw new FileNotFoundException("The directory " + source + " does not exist.");
+        }
+
+        final List<Path[]> files = new ArrayList<>();
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+            throws IOException {
+                Files.createDirectories(resolve(target, source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                files.add(new Path[]{file, resolve(target, source.relativize(file))});
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        join(ForkJoinPool.commonPool().submit(new CopyTask(files)));
+    }
+
+    /**
+     * Extracts a zip archive into a directory. Small entries are written in parallel, large entries are streamed.
+     *
+     * @param zip    the archive. It is read but not closed.
+     * @param target the target directory, which is created if it does not exist.
+     * @throws IOException if the archive cannot be read, if an entry would be extracted outside the target directory or
+     *                     if the files cannot be written.
+     */
+    static void importZip(final InputStream zip, final Path target) throws IOException {
+        final Path normalizedTarget = target.toAbsolutePath().normalize();
+        final Set<Path> directories = new HashSet<>();
+        final List<ForkJoinTask<?>> writes = new ArrayList<>();
+        createDirectories(normalizedTarget, directories);
+
+        final ZipInputStream entries = new ZipInputStream(zip);
+        try {
+            ZipEntry entry;
+            while ((entry = entries.getNextEntry()) != null) {
+                final Path path = normalizedTarget.resolve(stripLeadingSlashes(entry.getName())).normalize();
+                if (!path.startsWith(normalizedTarget)) {
+                    throw new IOException("The entry " + entry.getName() + " would be extracted outside of "
+                        + normalizedTarget + ".");
+                }
+                if (entry.isDirectory()) {
+                    createDirectories(path, directories);
+                    continue;
+                }
+
+                createDirectories(path.getParent(), directories);
+                final byte[] start = entries.readNBytes(MAX_BUFFERED_SIZE);
+                if (start.length < MAX_BUFFERED_SIZE) {
+                    writes.add(ForkJoinPool.commonPool().submit(() -> write(path, start)));
+                } else {
+                    try (OutputStream out = Files.newOutputStream(path)) {
+                        out.write(start);
+                        entries.transferTo(out);
+                    }
+                }
+            }
+        } finally {
+            for (final ForkJoinTask<?> write : writes) {
+                join(write);
+            }
+        }
+    }
+
+    /**
+     * Copies the files and directories of a directory of the classpath into a directory. The directory may be part of
+     * a directory or of a jar file of the classpath.
+     *
+     * @param classLoader       the class loader that finds the directory.
+     * @param resourceDirectory the name of the directory, e.g. {@code fixtures/orders}.
+     * @param target            the target directory, which is created if it does not exist.
+     * @throws IOException if the directory cannot be found or read or if the files cannot be written.
+     */
+    static void importClasspath(final ClassLoader classLoader, final String resourceDirectory, final Path target)
+    throws IOException {
+        final URL url = classLoader.getResource(stripLeadingSlashes(resourceDirectory));
+        if (url == null) {
+            throw new FileNotFoundException("The directory " + resourceDirectory + " is not on the classpath.");
+        }
+
+        final URI uri;
+        try {
+            uri = url.toURI();
+        } catch (final URISyntaxException e) {
+            throw new IOException("The directory " + resourceDirectory + " cannot be located.", e);
+        }
+        if (!"jar".equals(uri.getScheme())) {
+            importDirectory(Paths.get(uri), target);
+            return;
+        }
+
+        FileSystem jarFileSystem = null;
+        try {
+            jarFileSystem = FileSystems.newFileSystem(uri, Map.of());
+        } catch (final FileSystemAlreadyExistsException e) {
+            // another user of the jar has opened it, and it must stay open for that user
+        }
+        try {
+            importDirectory(Paths.get(uri), target);
+        } finally {
+            if (jarFileSystem != null) {
+                jarFileSystem.close();
+            }
+        }
+    }
+
+    private static Path resolve(final Path target, final Path relativePath) {
+        // the paths belong to different filesystems, so they are resolved by their names
+        Path path = target;
+        for (final Path name : relativePath) {
+            if (!name.toString().isEmpty()) {
+                path = path.resolve(stripTrailingSlashes(name.toString()));
+            }
+        }
+        return path;
+    }
+
+    private static void createDirectories(final Path directory, final Set<Path> directories) throws IOException {
+        if (directory != null && directories.add(directory)) {
+            Files.createDirectories(directory);
+        }
+    }
+
+    private static String stripLeadingSlashes(final String name) {
+        int start = 0;
+        while (start < name.length() && name.charAt(start) == '/') {
+            start++;
+        }
+        return name.substring(start);
+    }
+
+    private static String stripTrailingSlashes(final String name) {
+        int end = name.length();
+        while (end > 1 && name.charAt(end - 1) == '/') {
+            end--;
+        }
+        return name.substring(0, end);
+    }
+
+    private static Void write(final Path path, final byte[] content) {
+        try {
+            Files.write(path, content);
+            return null;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void join(final ForkJoinTask<?> task) throws IOException {
+        try {
+            task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The import has been interrupted.", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
+    /**
+     * Copies files. The task splits itself until every part has only a few files.
+     */
+    private static final class CopyTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Path[]> files;
+
+        CopyTask(final List<Path[]> files) {
+            this.files = files;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.files.size() > FILES_PER_TASK) {
+                final int middle = this.files.size() / 2;
+                invokeAll(new CopyTask(this.files.subList(0, middle)),
+                    new CopyTask(this.files.subList(middle, this.files.size())));
+                return;
+            }
+            for (final Path[] file : this.files) {
+                try {
+                    Files.copy(file[0], file[1], REPLACE_EXISTING);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filesystem that forwards all calls to another filesystem. In contrast to {@link UnclosableFileSystem} its paths
+ * belong to a {@link ForwardingFileSystemProvider}, so that the provider sees every access to a file.
+ */
+class ForwardingFileSystem extends FileSystem {
+
+    private final ForwardingFileSystemProvider provider;
+    private final FileSystem delegate;
+
+    ForwardingFileSystem(final ForwardingFileSystemProvider provider, final FileSystem delegate) {
+        this.provider = provider;
+        this.delegate = delegate;
+    }
+
+    /**
+     * Wraps a path of the underlying filesystem.
+     *
+     * @param path a path of the underlying filesystem or {@code null}.
+     * @return the path of this filesystem or {@code null} if the path is {@code null}.
+     */
+    Path wrap(final Path path) {
+        return path == null ? null : new ForwardingPath(this, path);
+    }
+
+    @Override
+    public ForwardingFileSystemProvider provider() {
+        return this.provider;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.delegate.close();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.delegate.isOpen();
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return this.delegate.isReadOnly();
+    }
+
+    @Override
+    public String getSeparator() {
+        return this.delegate.getSeparator();
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        final List<Path> rootDirectories = new ArrayList<>();
+        this.delegate.getRootDirectories().forEach(directory -> rootDirectories.add(this.wrap(directory)));
+        return rootDirectories;
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return this.delegate.getFileStores();
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return this.delegate.supportedFileAttributeViews();
+    }
+
+    @Override
+    public Path getPath(final String first, final String... more) {
+        return this.wrap(this.delegate.getPath(first, more));
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(final String syntaxAndPattern) {
+        final PathMatcher matcher = this.delegate.getPathMatcher(syntaxAndPattern);
+        return path -> path instanceof ForwardingPath && matcher.matches(ForwardingPath.unwrap(path));
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        return this.delegate.getUserPrincipalLookupService();
+    }
+
+    @Override
+    public WatchService newWatchService() throws IOException {
+        return this.delegate.newWatchService();
+    }
+}
@@ -0,0 +1,251 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import static de.ppi.fakesftpserver.extension.ForwardingPath.unwrap;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Provider of a {@link ForwardingFileSystem}. It forwards all calls to the provider of the underlying filesystem.
+ * Subclasses override single operations in order to add behaviour to the filesystem.
+ */
+class ForwardingFileSystemProvider extends FileSystemProvider {
+
+    @Getter
+    private final ForwardingFileSystem fileSystem;
+
+    private final FileSystemProvider delegate;
+
+    ForwardingFileSystemProvider(final FileSystem delegate) {
+        this.fileSystem = new ForwardingFileSystem(this, delegate);
+        this.delegate = delegate.provider();
+    }
+
+    /**
+     * Wraps a path of the underlying filesystem.
+     *
+     * @param path a path of the underlying filesystem or {@code null}.
+     * @return the path of this filesystem or {@code null} if the path is {@code null}.
+     */
+    Path wrap(final Path path) {
+        return this.fileSystem.wrap(path);
+    }
+
+    /**
+     * Checks whether a file that is opened with these options may be modified.
+     *
+     * @param options the options for opening the file.
+     * @return {@code true} iff the file may be modified.
+     */
+    static boolean isWriting(final Set<? extends OpenOption> options) {
+        return options.contains(WRITE) || options.contains(APPEND) || options.contains(DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Checks whether a method of a {@link FileAttributeView} modifies the file.
+     *
+     * @param methodName the name of the method.
+     * @return {@code true} iff the method modifies the file.
+     */
+    static boolean isModifying(final String methodName) {
+        return methodName.startsWith("set") || "write".equals(methodName) || "delete".equals(methodName);
+    }
+
+    @Override
+    public String getScheme() {
+        return this.delegate.getScheme();
+    }
+
+    @Override
+    public FileSystem newFileSystem(final URI uri, final Map<String, ?> env) {
+        throw new UnsupportedOperationException("A forwarding filesystem cannot be created by URI.");
+    }
+
+    @Override
+    public FileSystem getFileSystem(final URI uri) {
+        throw new UnsupportedOperationException("A forwarding filesystem cannot be looked up by URI.");
+    }
+
+    @Override
+    public Path getPath(final URI uri) {
+        return this.wrap(this.delegate.getPath(uri));
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(final Path path,
+                                              final Set<? extends OpenOption> options,
+                                              final FileAttribute<?>... attrs) throws IOException {
+        return this.delegate.newByteChannel(unwrap(path), options, attrs);
+    }
+
+    @Override
+    public FileChannel newFileChannel(final Path path,
+                                      final Set<? extends OpenOption> options,
+                                      final FileAttribute<?>... attrs) throws IOException {
+        return this.delegate.newFileChannel(unwrap(path), options, attrs);
+    }
+
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(final Path path,
+                                                              final Set<? extends OpenOption> options,
+                                                              final ExecutorService executor,
+                                                              final FileAttribute<?>... attrs) throws IOException {
+        return this.delegate.newAsynchronousFileChannel(unwrap(path), options, executor, attrs);
+    }
+
+    @Override
+    public InputStream newInputStream(final Path path, final OpenOption... options) throws IOException {
+        return this.delegate.newInputStream(unwrap(path), options);
+    }
+
+    @Override
+    public OutputStream newOutputStream(final Path path, final OpenOption... options) throws IOException {
+        return this.delegate.newOutputStream(unwrap(path), options);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(final Path dir,
+                                                    final DirectoryStream.Filter<? super Path> filter)
+    throws IOException {
+        final DirectoryStream<Path> stream = this.delegate.newDirectoryStream(unwrap(dir),
+            entry -> filter.accept(this.wrap(entry)));
+        return new DirectoryStream<>() {
+            @Override
+            public Iterator<Path> iterator() {
+                final Iterator<Path> iterator = stream.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Path next() {
+                        return ForwardingFileSystemProvider.this.wrap(iterator.next());
+                    }
+                };
+            }
+
+            @Override
+            public void close() throws IOException {
+                stream.close();
+            }
+        };
+    }
+
+    @Override
+    public void createDirectory(final Path dir, final FileAttribute<?>... attrs) throws IOException {
+        this.delegate.createDirectory(unwrap(dir), attrs);
+    }
+
+    @Override
+    public void createSymbolicLink(final Path link, final Path target, final FileAttribute<?>... attrs)
+    throws IOException {
+        this.delegate.createSymbolicLink(unwrap(link), unwrap(target), attrs);
+    }
+
+    @Override
+    public void createLink(final Path link, final Path existing) throws IOException {
+        this.delegate.createLink(unwrap(link), unwrap(existing));
+    }
+
+    @Override
+    public void delete(final Path path) throws IOException {
+        this.delegate.delete(unwrap(path));
+    }
+
+    @Override
+    public boolean deleteIfExists(final Path path) throws IOException {
+        return this.delegate.deleteIfExists(unwrap(path));
+    }
+
+    @Override
+    public Path readSymbolicLink(final Path link) throws IOException {
+        return this.wrap(this.delegate.readSymbolicLink(unwrap(link)));
+    }
+
+    @Override
+    public void copy(final Path source, final Path target, final CopyOption... options) throws IOException {
+        this.delegate.copy(unwrap(source), unwrap(target), options);
+    }
+
+    @Override
+    public void move(final Path source, final Path target, final CopyOption... options) throws IOException {
+        this.delegate.move(unwrap(source), unwrap(target), options);
+    }
+
+    @Override
+    public boolean isSameFile(final Path path, final Path path2) throws IOException {
+        return path2 instanceof ForwardingPath && this.delegate.isSameFile(unwrap(path), unwrap(path2));
+    }
+
+    @Override
+    public boolean isHidden(final Path path) throws IOException {
+        return this.delegate.isHidden(unwrap(path));
+    }
+
+    @Override
+    public FileStore getFileStore(final Path path) throws IOException {
+        return this.delegate.getFileStore(unwrap(path));
+    }
+
+    @Override
+    public void checkAccess(final Path path, final AccessMode... modes) throws IOException {
+        this.delegate.checkAccess(unwrap(path), modes);
+    }
+
+    @Override
+    public <V extends FileAttributeView> V getFileAttributeView(final Path path,
+                                                                final Class<V> type,
+                                                                final LinkOption... options) {
+        return this.delegate.getFileAttributeView(unwrap(path), type, options);
+    }
+
+    @Override
+    public <A extends BasicFileAttributes> A readAttributes(final Path path,
+                                                            final Class<A> type,
+                                                            final LinkOption... options) throws IOException {
+        return this.delegate.readAttributes(unwrap(path), type, options);
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(final Path path,
+                                              final String attributes,
+                                              final LinkOption... options) throws IOException {
+        return this.delegate.readAttributes(unwrap(path), attributes, options);
+    }
+
+    @Override
+    public void setAttribute(final Path path,
+                             final String attribute,
+                             final Object value,
+                             final LinkOption... options) throws IOException {
+        this.delegate.setAttribute(unwrap(path), attribute, value, options);
+    }
+}
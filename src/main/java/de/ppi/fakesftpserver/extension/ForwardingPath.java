@@ -0,0 +1,204 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+
+/**
+ * Path of a {@link ForwardingFileSystem}. It wraps a path of the underlying filesystem.
+ */
+class ForwardingPath implements Path {
+
+    private final ForwardingFileSystem fileSystem;
+
+    @Getter
+    private final Path delegate;
+
+    ForwardingPath(final ForwardingFileSystem fileSystem, final Path delegate) {
+        this.fileSystem = fileSystem;
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns the path of the underlying filesystem.
+     *
+     * @param path a path of a forwarding filesystem.
+     * @return the wrapped path.
+     * @throws ProviderMismatchException if the path does not belong to a forwarding filesystem.
+     */
+    static Path unwrap(final Path path) {
+        if (path instanceof ForwardingPath) {
+            return ((ForwardingPath) path).delegate;
+        }
+        throw new ProviderMismatchException("The path " + path + " does not belong to this filesystem.");
+    }
+
+    @Override
+    public ForwardingFileSystem getFileSystem() {
+        return this.fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return this.delegate.isAbsolute();
+    }
+
+    @Override
+    public Path getRoot() {
+        return this.fileSystem.wrap(this.delegate.getRoot());
+    }
+
+    @Override
+    public Path getFileName() {
+        return this.fileSystem.wrap(this.delegate.getFileName());
+    }
+
+    @Override
+    public Path getParent() {
+        return this.fileSystem.wrap(this.delegate.getParent());
+    }
+
+    @Override
+    public int getNameCount() {
+        return this.delegate.getNameCount();
+    }
+
+    @Override
+    public Path getName(final int index) {
+        return this.fileSystem.wrap(this.delegate.getName(index));
+    }
+
+    @Override
+    public Path subpath(final int beginIndex, final int endIndex) {
+        return this.fileSystem.wrap(this.delegate.subpath(beginIndex, endIndex));
+    }
+
+    @Override
+    public boolean startsWith(final Path other) {
+        return other instanceof ForwardingPath && this.delegate.startsWith(unwrap(other));
+    }
+
+    @Override
+    public boolean startsWith(final String other) {
+        return this.delegate.startsWith(other);
+    }
+
+    @Override
+    public boolean endsWith(final Path other) {
+        return other instanceof ForwardingPath && this.delegate.endsWith(unwrap(other));
+    }
+
+    @Override
+    public boolean endsWith(final String other) {
+        return this.delegate.endsWith(other);
+    }
+
+    @Override
+    public Path normalize() {
+        return this.fileSystem.wrap(this.delegate.normalize());
+    }
+
+    @Override
+    public Path resolve(final Path other) {
+        return this.fileSystem.wrap(this.delegate.resolve(unwrap(other)));
+    }
+
+    @Override
+    public Path resolve(final String other) {
+        return this.fileSystem.wrap(this.delegate.resolve(other));
+    }
+
+    @Override
+    public Path resolveSibling(final Path other) {
+        return this.fileSystem.wrap(this.delegate.resolveSibling(unwrap(other)));
+    }
+
+    @Override
+    public Path resolveSibling(final String other) {
+        return this.fileSystem.wrap(this.delegate.resolveSibling(other));
+    }
+
+    @Override
+    public Path relativize(final Path other) {
+        return this.fileSystem.wrap(this.delegate.relativize(unwrap(other)));
+    }
+
+    @Override
+    public URI toUri() {
+        return this.delegate.toUri();
+    }
+
+    @Override
+    public Path toAbsolutePath() {
+        return this.fileSystem.wrap(this.delegate.toAbsolutePath());
+    }
+
+    @Override
+    public Path toRealPath(final LinkOption... options) throws IOException {
+        return this.fileSystem.wrap(this.delegate.toRealPath(options));
+    }
+
+    @Override
+    public File toFile() {
+        throw new UnsupportedOperationException("An in-memory path cannot be converted to a file.");
+    }
+
+    @Override
+    public WatchKey register(final WatchService watcher,
+                             final WatchEvent.Kind<?>[] events,
+                             final WatchEvent.Modifier... modifiers) throws IOException {
+        return this.delegate.register(watcher, events, modifiers);
+    }
+
+    @Override
+    public WatchKey register(final WatchService watcher, final WatchEvent.Kind<?>... events) throws IOException {
+        return this.delegate.register(watcher, events);
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+        final Iterator<Path> iterator = this.delegate.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Path next() {
+                return ForwardingPath.this.fileSystem.wrap(iterator.next());
+            }
+        };
+    }
+
+    @Override
+    public int compareTo(final Path other) {
+        return this.delegate.compareTo(unwrap(other));
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof ForwardingPath
+            && this.fileSystem == ((ForwardingPath) other).fileSystem
+            && this.delegate.equals(((ForwardingPath) other).delegate);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.delegate.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.delegate.toString();
+    }
+}
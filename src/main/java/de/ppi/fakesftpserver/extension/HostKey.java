@@ -0,0 +1,130 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.apache.sshd.common.config.keys.KeyUtils;
+import org.apache.sshd.common.keyprovider.ClassLoadableResourceKeyPairProvider;
+import org.apache.sshd.common.keyprovider.FileKeyPairProvider;
+import org.apache.sshd.common.keyprovider.KeyPairProvider;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The host key of the SFTP server.
+ * <p>Generating a key pair is expensive. Therefore, every host key is generated or loaded only once per JVM
+ * and shared by all extensions that use an equal {@code HostKey}.
+ */
+@EqualsAndHashCode
+@ToString
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class HostKey {
+
+    private static final int RSA_KEY_SIZE = 2048;
+    private static final int EC_KEY_SIZE = 256;
+    private static final int ED25519_KEY_SIZE = 256;
+
+    private static final Map<HostKey, KeyPairProvider> KEY_PAIR_PROVIDERS = new ConcurrentHashMap<>();
+
+    private final Source source;
+    private final String location;
+    private final int keySize;
+
+    /**
+     * A generated RSA key. This is the default.
+     *
+     * @return the host key.
+     */
+    public static HostKey rsa() {
+        return new HostKey(Source.GENERATED, KeyPairProvider.SSH_RSA, RSA_KEY_SIZE);
+    }
+
+    /**
+     * A generated ECDSA key on the curve nistp256. It is much faster to generate and to use than an RSA key.
+     *
+     * @return the host key.
+     */
+    public static HostKey ec() {
+        return new HostKey(Source.GENERATED, KeyPairProvider.ECDSA_SHA2_NISTP256, EC_KEY_SIZE);
+    }
+
+    /**
+     * A generated Ed25519 key. It is the cheapest key to generate and to use, but not every client supports it.
+     *
+     * @return the host key.
+     */
+    public static HostKey ed25519() {
+        return new HostKey(Source.GENERATED, KeyPairProvider.SSH_ED25519, ED25519_KEY_SIZE);
+    }
+
+    /**
+     * A key that is loaded from a file, e.g. an OpenSSH or PEM private key file.
+     *
+     * @param path the path of the key file.
+     * @return the host key.
+     */
+    public static HostKey fromFile(@NonNull final Path path) {
+        return new HostKey(Source.FILE, path.toAbsolutePath().normalize().toString(), 0);
+    }
+
+    /**
+     * A key that is loaded from a resource on the classpath, e.g. an OpenSSH or PEM private key file.
+     *
+     * @param resource the name of the resource.
+     * @return the host key.
+     */
+    public static HostKey fromClasspath(@NonNull final String resource) {
+        return new HostKey(Source.CLASSPATH, resource, 0);
+    }
+
+    /**
+     * Returns the key pairs of this host key. They are created when the method is called for the first time.
+     *
+     * @return a provider for the key pairs.
+     * @throws IllegalStateException if the key cannot be generated or loaded.
+     */
+    KeyPairProvider getKeyPairProvider() {
+        return KEY_PAIR_PROVIDERS.computeIfAbsent(this, HostKey::createKeyPairProvider);
+    }
+
+    private KeyPairProvider createKeyPairProvider() {
+        try {
+            switch (this.source) {
+                case GENERATED:
+                    return KeyPairProvider.wrap(KeyUtils.generateKeyPair(this.location, this.keySize));
+                case FILE:
+                    return loadKeyPairs(new FileKeyPairProvider(Path.of(this.location)));
+                case CLASSPATH:
+                    return loadKeyPairs(new ClassLoadableResourceKeyPairProvider(
+                        HostKey.class.getClassLoader(), this.location));
+                default:
+                    throw new IllegalStateException("Unknown source of host key: " + this.source);
+            }
+        } catch (final IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("The host key " + this + " cannot be created.", e);
+        }
+    }
+
+    private static KeyPairProvider loadKeyPairs(final KeyPairProvider provider)
+    throws IOException, GeneralSecurityException {
+        final List<KeyPair> keyPairs = new ArrayList<>();
+        provider.loadKeys(null).forEach(keyPairs::add);
+        if (keyPairs.isEmpty()) {
+            throw new IOException("No key pair found.");
+        }
+        return KeyPairProvider.wrap(keyPairs);
+    }
+
+    private enum Source {
+        GENERATED, FILE, CLASSPATH
+    }
+}
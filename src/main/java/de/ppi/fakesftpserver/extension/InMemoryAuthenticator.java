@@ -4,24 +4,57 @@ import lombok.NonNull;
 import org.apache.sshd.server.auth.AsyncAuthException;
 import org.apache.sshd.server.auth.password.PasswordAuthenticator;
 import org.apache.sshd.server.auth.password.PasswordChangeRequiredException;
+import org.apache.sshd.server.auth.pubkey.PublickeyAuthenticator;
 import org.apache.sshd.server.session.ServerSession;
 
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * This class provides a small logic to authenticate users. It can be used by SSHD-Auth.
+ * This class provides a small logic to authenticate users by password or public key. It can be used by SSHD-Auth.
+ * <p>The users are stored in concurrent maps, so users can be added while clients log in. Public keys are stored in
+ * their encoded form, so authenticating a key neither parses keys nor takes a lock. If no user has been added then
+ * every password and every key is accepted.
  */
-class InMemoryAuthenticator implements PasswordAuthenticator {
+class InMemoryAuthenticator implements PasswordAuthenticator, PublickeyAuthenticator {
 
-    private final Map<String, String> usernamesAndPasswords = new HashMap<>();
+    private final Map<String, String> usernamesAndPasswords = new ConcurrentHashMap<>();
+    private final Map<String, Set<ByteBuffer>> usernamesAndKeys = new ConcurrentHashMap<>();
 
     @Override
     public boolean authenticate(final String user, final String pass, final ServerSession serverSession)
     throws PasswordChangeRequiredException, AsyncAuthException {
-        return this.usernamesAndPasswords.isEmpty()
+        final AuthenticationEvent event = new AuthenticationEvent();
+        event.begin();
+        final boolean successful = this.hasNoUsers()
             || user != null && Objects.equals(this.usernamesAndPasswords.get(user), pass);
+        if (event.shouldCommit()) {
+            event.user = user;
+            event.method = "password";
+            event.successful = successful;
+            event.commit();
+        }
+        return successful;
+    }
+
+    @Override
+    public boolean authenticate(final String user, final PublicKey key, final ServerSession serverSession)
+    throws AsyncAuthException {
+        final AuthenticationEvent event = new AuthenticationEvent();
+        event.begin();
+        final boolean successful = this.hasNoUsers() || user != null && this.hasKey(user, key);
+        if (event.shouldCommit()) {
+            event.user = user;
+            event.method = "publickey";
+            event.successful = successful;
+            event.commit();
+        }
+        return successful;
     }
 
     /**
@@ -34,4 +67,66 @@ class InMemoryAuthenticator implements PasswordAuthenticator {
         this.usernamesAndPasswords.put(user, pass);
     }
 
+    /**
+     * Adds a public key to a user. A user can have several keys.
+     *
+     * @param user the username.
+     * @param key  the public key.
+     */
+    void putPublicKey(@NonNull final String user, @NonNull final PublicKey key) {
+        this.usernamesAndKeys.computeIfAbsent(user, username -> ConcurrentHashMap.newKeySet())
+            .add(ByteBuffer.wrap(key.getEncoded()));
+    }
+
+    /**
+     * Returns a copy of the registered users, e.g. to restore them later.
+     *
+     * @return the copy.
+     */
+    InMemoryAuthenticator copy() {
+        final InMemoryAuthenticator copy = new InMemoryAuthenticator();
+        copy.restore(this);
+        return copy;
+    }
+
+    /**
+     * Replaces the registered users by the users of another authenticator.
+     *
+     * @param users the authenticator with the users.
+     */
+    void restore(@NonNull final InMemoryAuthenticator users) {
+        this.usernamesAndPasswords.keySet().retainAll(users.usernamesAndPasswords.keySet());
+        this.usernamesAndPasswords.putAll(users.usernamesAndPasswords);
+        this.usernamesAndKeys.keySet().retainAll(users.usernamesAndKeys.keySet());
+        users.usernamesAndKeys.forEach((user, keys) -> {
+            final Set<ByteBuffer> copiedKeys = ConcurrentHashMap.newKeySet();
+            copiedKeys.addAll(keys);
+            this.usernamesAndKeys.put(user, copiedKeys);
+        });
+    }
+
+    /**
+     * Returns the names of all registered users.
+     *
+     * @return the usernames.
+     */
+    Set<String> getUsernames() {
+        final Set<String> usernames = new HashSet<>(this.usernamesAndPasswords.keySet());
+        usernames.addAll(this.usernamesAndKeys.keySet());
+        return Set.copyOf(usernames);
+    }
+
+    private boolean hasNoUsers() {
+        return this.usernamesAndPasswords.isEmpty() && this.usernamesAndKeys.isEmpty();
+    }
+
+    private boolean hasKey(final String user, final PublicKey key) {
+        final Set<ByteBuffer> keys = this.usernamesAndKeys.get(user);
+        if (keys == null || key == null) {
+            return false;
+        }
+        final byte[] encoded = key.getEncoded();
+        return encoded != null && keys.contains(ByteBuffer.wrap(encoded));
+    }
+
 }
@@ -0,0 +1,44 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.sshd.common.io.BuiltinIoServiceFactoryFactories;
+import org.apache.sshd.common.io.IoServiceFactoryFactory;
+
+/**
+ * The transport of the SFTP server, i.e. the library that accepts connections and reads and writes their bytes.
+ */
+@RequiredArgsConstructor
+public enum IoBackend {
+
+    /**
+     * The asynchronous channels of the JDK. This is the default and does not need further dependencies.
+     */
+    NIO2(BuiltinIoServiceFactoryFactories.NIO2, null),
+
+    /**
+     * Apache MINA, which requires {@code org.apache.sshd:sshd-mina} on the classpath.
+     */
+    MINA(BuiltinIoServiceFactoryFactories.MINA, "org.apache.sshd:sshd-mina"),
+
+    /**
+     * Netty, which requires {@code org.apache.sshd:sshd-netty} on the classpath.
+     */
+    NETTY(BuiltinIoServiceFactoryFactories.NETTY, "org.apache.sshd:sshd-netty");
+
+    private final BuiltinIoServiceFactoryFactories factoryFactories;
+    private final String artifact;
+
+    /**
+     * Creates the factory of the IO services of SFTP servers.
+     *
+     * @return the factory.
+     * @throws IllegalStateException if the backend is not on the classpath.
+     */
+    IoServiceFactoryFactory createFactoryFactory() {
+        if (!this.factoryFactories.isSupported()) {
+            throw new IllegalStateException(
+                "The IO backend " + this.name() + " requires " + this.artifact + " on the classpath.");
+        }
+        return this.factoryFactories.create();
+    }
+}
@@ -0,0 +1,118 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.apache.sshd.common.io.AbstractIoServiceFactoryFactory;
+import org.apache.sshd.common.io.IoServiceFactoryFactory;
+import org.apache.sshd.common.util.threads.CloseableExecutorService;
+import org.apache.sshd.common.util.threads.ThreadUtils;
+import org.apache.sshd.server.SshServer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * The threads that accept connections and read and write their bytes, and the scheduler of timeouts.
+ * <p>By default every server starts its own IO threads and its own scheduler, so many short-lived servers create many
+ * short-lived threads. Shared threads are created only once per JVM and used by all servers with an equal
+ * {@code IoThreads}.
+ */
+@EqualsAndHashCode
+@ToString
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class IoThreads {
+
+    private static final Map<IoThreads, IoServiceFactoryFactory> FACTORY_FACTORIES = new ConcurrentHashMap<>();
+    // the scheduler creates its thread when the first timeout is scheduled
+    private static final ScheduledExecutorService SHARED_SCHEDULER =
+        ThreadUtils.newSingleThreadScheduledExecutor("fake-sftp-scheduler");
+
+    /**
+     * The transport of the servers.
+     */
+    @Getter
+    private final IoBackend backend;
+
+    /**
+     * The number of shared IO threads or {@code 0} if every server has its own threads.
+     */
+    @Getter
+    private final int workers;
+
+    /**
+     * Own IO threads and an own scheduler for every server. This is the default.
+     *
+     * @return the IO threads.
+     */
+    public static IoThreads perServer() {
+        return new IoThreads(IoBackend.NIO2, 0);
+    }
+
+    /**
+     * IO threads and a scheduler that are shared by all servers. There is one IO thread more than there are
+     * processors.
+     *
+     * @return the IO threads.
+     */
+    public static IoThreads shared() {
+        return shared(Runtime.getRuntime().availableProcessors() + 1);
+    }
+
+    /**
+     * A fixed number of IO threads and a scheduler that are shared by all servers.
+     *
+     * @param workers the number of IO threads.
+     * @return the IO threads.
+     * @throws IllegalArgumentException if the number of IO threads is not positive.
+     */
+    public static IoThreads shared(final int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("The number of IO workers must be positive.");
+        }
+        return new IoThreads(IoBackend.NIO2, workers);
+    }
+
+    /**
+     * Returns the same threads with another transport. The IO threads can only be shared by transports that run on
+     * an executor of SSHD, i.e. {@link IoBackend#NIO2} and {@link IoBackend#MINA}. Netty always uses its own threads.
+     *
+     * @param newBackend the transport.
+     * @return the IO threads.
+     */
+    public IoThreads withBackend(@NonNull final IoBackend newBackend) {
+        return new IoThreads(newBackend, this.workers);
+    }
+
+    /**
+     * Configures the transport and the threads of a server that has not been started yet.
+     *
+     * @param server the server.
+     * @throws IllegalStateException if the transport is not on the classpath.
+     */
+    void configure(final SshServer server) {
+        if (this.workers == 0 && this.backend == IoBackend.NIO2) {
+            // the default of SSHD
+            return;
+        }
+        server.setIoServiceFactoryFactory(FACTORY_FACTORIES.computeIfAbsent(this, IoThreads::createFactoryFactory));
+        if (this.workers > 0) {
+            server.setScheduledExecutorService(SHARED_SCHEDULER, false);
+        }
+    }
+
+    private IoServiceFactoryFactory createFactoryFactory() {
+        final IoServiceFactoryFactory factoryFactory = this.backend.createFactoryFactory();
+        if (this.workers > 0 && factoryFactory instanceof AbstractIoServiceFactoryFactory) {
+            final CloseableExecutorService executorService =
+                ThreadUtils.newFixedThreadPool("fake-sftp-io", this.workers);
+            ((AbstractIoServiceFactoryFactory) factoryFactory)
+                .setExecutorServiceFactory(() -> ThreadUtils.noClose(executorService));
+        }
+        return factoryFactory;
+    }
+}
@@ -0,0 +1,128 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies, which is updated without locks.
+ * <p>Every power of two is split into eight buckets, so a percentile is at most 12.5% larger than the exact value.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     *
+     * @return the number of latencies.
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * Returns the sum of all recorded latencies.
+     *
+     * @return the sum.
+     */
+    public Duration getTotal() {
+        return Duration.ofNanos(this.totalNanos.sum());
+    }
+
+    /**
+     * Returns the mean of all recorded latencies.
+     *
+     * @return the mean or {@link Duration#ZERO} if no latency has been recorded.
+     */
+    public Duration getMean() {
+        final long currentCount = this.count.sum();
+        return currentCount == 0 ? Duration.ZERO : Duration.ofNanos(this.totalNanos.sum() / currentCount);
+    }
+
+    /**
+     * Returns the largest recorded latency.
+     *
+     * @return the largest latency or {@link Duration#ZERO} if no latency has been recorded.
+     */
+    public Duration getMax() {
+        return Duration.ofNanos(this.maxNanos.get());
+    }
+
+    /**
+     * Returns a percentile of the recorded latencies, e.g. {@code getPercentile(99)}.
+     *
+     * @param percentile the percentile between 0 and 100.
+     * @return the upper bound of the bucket of the percentile or {@link Duration#ZERO} if no latency has been
+     *     recorded.
+     * @throws IllegalArgumentException if the percentile is not between 0 and 100.
+     */
+    public Duration getPercentile(final double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+        }
+
+        long total = 0;
+        final long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Duration.ofNanos(Math.min(upperBound(i), this.maxNanos.get()));
+            }
+        }
+        return Duration.ZERO;
+    }
+
+    void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        this.buckets.incrementAndGet(bucket(value));
+        this.count.increment();
+        this.totalNanos.add(value);
+        this.maxNanos.accumulateAndGet(value, Math::max);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.reset();
+        this.totalNanos.reset();
+        this.maxNanos.set(0);
+    }
+
+    private static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = bucket % SUB_BUCKETS;
+        final long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
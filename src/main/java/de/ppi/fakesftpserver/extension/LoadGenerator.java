@@ -0,0 +1,441 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.NonNull;
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.common.util.threads.CloseableExecutorService;
+import org.apache.sshd.common.util.threads.ThreadUtils;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.SftpClientFactory;
+import org.apache.sshd.sftp.common.SftpException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives an SFTP server with concurrent clients, e.g. for measuring how the code under test behaves when the server is
+ * busy, or for measuring the server itself. The generator opens a number of sessions with a number of SFTP channels
+ * each. Every channel performs a random mix of {@link LoadOperation operations} in its own directory until a number of
+ * operations or a duration is reached.
+ * <pre>
+ * LoadReport report = LoadGenerator.forServer(sftpServer)
+ *     .setSessions(4)
+ *     .setChannelsPerSession(2)
+ *     .setOperationWeight(LoadOperation.UPLOAD, 1)
+ *     .setOperationWeight(LoadOperation.DOWNLOAD, 4)
+ *     .setFileSizes(FileSizeDistribution.uniform(1_000, 1_000_000))
+ *     .setDuration(Duration.ofSeconds(10))
+ *     .run();
+ * System.out.println(report);
+ * </pre>
+ * <p>The generator uses the SFTP client of Apache SSHD, so it can drive any SFTP server. The operations of every channel
+ * are chosen by a random generator whose seed is derived from {@link #setSeed(long) the seed}, so runs with the same
+ * settings perform the same operations.
+ */
+public final class LoadGenerator {
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final SftpClientConnector connector;
+    private final Map<LoadOperation, Integer> weights = new EnumMap<>(LoadOperation.class);
+    private int sessions = 1;
+    private int channelsPerSession = 1;
+    private FileSizeDistribution fileSizes = FileSizeDistribution.fixed(10_000);
+    private long operations = 1_000;
+    private Duration duration;
+    private long seed;
+    private String directory = "/load";
+
+    private LoadGenerator(final SftpClientConnector connector) {
+        this.connector = connector;
+        for (final LoadOperation operation : LoadOperation.values()) {
+            this.weights.put(operation, 1);
+        }
+    }
+
+    /**
+     * Creates a generator for the server of an extension. The port and, if the server is shared, the username are
+     * taken from the extension when the generator is run, so it has to be run within a test.
+     *
+     * @param extension the extension.
+     * @return the generator.
+     */
+    public static LoadGenerator forServer(@NonNull final FakeSftpServerExtension extension) {
+        return new LoadGenerator(new SftpClientConnector(extension, "localhost", 0));
+    }
+
+    /**
+     * Creates a generator for any SFTP server. The key of the server is not verified.
+     *
+     * @param host the host of the server.
+     * @param port the port of the server.
+     * @return the generator.
+     * @throws IllegalArgumentException if the port is not between 1 and 65535.
+     */
+    public static LoadGenerator forServer(@NonNull final String host, final int port) {
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("Port cannot be set to " + port + " because only ports between 1 and"
+                + " 65535 are valid.");
+        }
+        return new LoadGenerator(new SftpClientConnector(null, host, port));
+    }
+
+    /**
+     * Sets the credentials of the sessions. By default, the generator logs in as {@code user} (or with the lease
+     * username of a shared server) and the password {@code password}, which the fake server accepts if no user has
+     * been added.
+     *
+     * @param username the username.
+     * @param password the password.
+     * @return the generator itself.
+     */
+    public LoadGenerator setCredentials(@NonNull final String username, @NonNull final String password) {
+        this.connector.setCredentials(username, password);
+        return this;
+    }
+
+    /**
+     * Sets the number of concurrent sessions. The default is 1.
+     *
+     * @param sessions the number of sessions.
+     * @return the generator itself.
+     * @throws IllegalArgumentException if the number is not positive.
+     */
+    public LoadGenerator setSessions(final int sessions) {
+        if (sessions < 1) {
+            throw new IllegalArgumentException("The number of sessions must be positive.");
+        }
+        this.sessions = sessions;
+        return this;
+    }
+
+    /**
+     * Sets the number of SFTP channels of every session. Every channel performs its operations in its own thread. The
+     * default is 1.
+     *
+     * @param channelsPerSession the number of channels.
+     * @return the generator itself.
+     * @throws IllegalArgumentException if the number is not positive.
+     */
+    public LoadGenerator setChannelsPerSession(final int channelsPerSession) {
+        if (channelsPerSession < 1) {
+            throw new IllegalArgumentException("The number of channels must be positive.");
+        }
+        this.channelsPerSession = channelsPerSession;
+        return this;
+    }
+
+    /**
+     * Sets the weight of an operation in the mix. An operation with weight 2 is chosen twice as often as an operation
+     * with weight 1, and an operation with weight 0 is never chosen. By default, every operation has the weight 1.
+     * Downloads and renames fall back to uploads as long as the channel has not uploaded a file.
+     *
+     * @param operation the operation.
+     * @param weight    the weight.
+     * @return the generator itself.
+     * @throws IllegalArgumentException if the weight is negative.
+     */
+    public LoadGenerator setOperationWeight(@NonNull final LoadOperation operation, final int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("The weight of an operation cannot be negative.");
+        }
+        this.weights.put(operation, weight);
+        return this;
+    }
+
+    /**
+     * Sets the distribution of the sizes of the uploaded files. By default, every file has 10,000 bytes.
+     *
+     * @param fileSizes the distribution.
+     * @return the generator itself.
+     */
+    public LoadGenerator setFileSizes(@NonNull final FileSizeDistribution fileSizes) {
+        this.fileSizes = fileSizes;
+        return this;
+    }
+
+    /**
+     * Sets the number of operations of all channels together. The default is 1,000. The run ends when this number or
+     * {@link #setDuration(Duration) the duration} is reached.
+     *
+     * @param operations the number of operations.
+     * @return the generator itself.
+     * @throws IllegalArgumentException if the number is not positive.
+     */
+    public LoadGenerator setOperations(final long operations) {
+        if (operations < 1) {
+            throw new IllegalArgumentException("The number of operations must be positive.");
+        }
+        this.operations = operations;
+        return this;
+    }
+
+    /**
+     * Sets the maximal duration of the run. By default, the run is only limited by
+     * {@link #setOperations(long) the number of operations}. If you want to run for a fixed time then set the number
+     * of operations to {@link Long#MAX_VALUE}.
+     *
+     * @param duration the duration.
+     * @return the generator itself.
+     * @throws IllegalArgumentException if the duration is not positive.
+     */
+    public LoadGenerator setDuration(@NonNull final Duration duration) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("The duration must be positive.");
+        }
+        this.duration = duration;
+        return this;
+    }
+
+    /**
+     * Sets the seed of the random generators that choose the operations and the sizes of the files. The default is 0.
+     *
+     * @param seed the seed.
+     * @return the generator itself.
+     */
+    public LoadGenerator setSeed(final long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets the directory on the server. Every channel uses a subdirectory {@code worker-<n>}. The default is
+     * {@code /load}.
+     *
+     * @param directory the absolute path of the directory.
+     * @return the generator itself.
+     */
+    public LoadGenerator setDirectory(@NonNull final String directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    /**
+     * Opens the sessions and channels, performs the operations and closes the sessions again. Failed operations are
+     * counted as errors and do not stop the run.
+     *
+     * @return the report.
+     * @throws IOException           if a session or channel cannot be opened.
+     * @throws InterruptedException  if the thread is interrupted while waiting for the channels.
+     * @throws IllegalStateException if the weights of all operations are 0 or if the generator is run for an extension
+     *                               outside a test.
+     */
+    public LoadReport run() throws IOException, InterruptedException {
+        if (this.weights.values().stream().allMatch(weight -> weight == 0)) {
+            throw new IllegalStateException("The weight of at least one operation must be positive.");
+        }
+
+        final LoadReport report = new LoadReport();
+        try (SshClient client = SftpClientConnector.startClient()) {
+            final List<SftpClient> channels = this.openChannels(client);
+            final CloseableExecutorService executor = ThreadUtils.newFixedThreadPool("fake-sftp-load", channels.size());
+            try {
+                createDirectories(channels.get(0), this.directory);
+                final AtomicLong remaining = new AtomicLong(this.operations);
+                final long start = System.nanoTime();
+                final long end = this.duration == null ? Long.MAX_VALUE : start + this.duration.toNanos();
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < channels.size(); i++) {
+                    final Worker worker = new Worker(channels.get(i), i, report, remaining, end);
+                    futures.add(executor.submit(worker::run));
+                }
+                for (final Future<?> future : futures) {
+                    awaitWorker(future);
+                }
+                report.setDuration(Duration.ofNanos(System.nanoTime() - start));
+            } finally {
+                executor.shutdownNow();
+                for (final SftpClient channel : channels) {
+                    channel.close();
+                }
+            }
+        }
+        return report;
+    }
+
+    private List<SftpClient> openChannels(final SshClient client) throws IOException {
+        final List<SftpClient> channels = new ArrayList<>();
+        try {
+            for (int i = 0; i < this.sessions; i++) {
+                final ClientSession session = this.connector.connect(client);
+                for (int j = 0; j < this.channelsPerSession; j++) {
+                    channels.add(SftpClientFactory.instance().createSftpClient(session));
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            for (final SftpClient channel : channels) {
+                channel.close();
+            }
+            throw e;
+        }
+        return channels;
+    }
+
+    private LoadOperation chooseOperation(final Random random) {
+        int total = 0;
+        for (final int weight : this.weights.values()) {
+            total += weight;
+        }
+        int value = random.nextInt(total);
+        for (final Map.Entry<LoadOperation, Integer> entry : this.weights.entrySet()) {
+            value -= entry.getValue();
+            if (value < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("The weights of the operations have been changed during the run.");
+    }
+
+    private static void awaitWorker(final Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
+    private static void createDirectories(final SftpClient channel, final String path) throws IOException {
+        final StringBuilder current = new StringBuilder();
+        for (final String name : path.split("/")) {
+            if (name.isEmpty()) {
+                continue;
+            }
+            current.append('/').append(name);
+            try {
+                channel.stat(current.toString());
+            } catch (final SftpException e) {
+                channel.mkdir(current.toString());
+            }
+        }
+    }
+
+    /**
+     * Performs the operations of a channel. The files that a worker has uploaded are only accessed by this worker.
+     */
+    private final class Worker {
+
+        private final SftpClient channel;
+        private final String workingDirectory;
+        private final LoadReport report;
+        private final AtomicLong remaining;
+        private final long end;
+        private final Random random;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final List<String> files = new ArrayList<>();
+        private int nextFile;
+
+        Worker(final SftpClient channel,
+               final int index,
+               final LoadReport report,
+               final AtomicLong remaining,
+               final long end) {
+            this.channel = channel;
+            this.workingDirectory = LoadGenerator.this.directory + "/worker-" + index;
+            this.report = report;
+            this.remaining = remaining;
+            this.end = end;
+            this.random = new Random(LoadGenerator.this.seed * 31 + index);
+            this.random.nextBytes(this.buffer);
+        }
+
+        void run() {
+            try {
+                createDirectories(this.channel, this.workingDirectory);
+            } catch (final IOException e) {
+                this.report.recordError(LoadOperation.UPLOAD);
+                return;
+            }
+            while (this.remaining.getAndDecrement() > 0 && System.nanoTime() - this.end < 0) {
+                LoadOperation operation = LoadGenerator.this.chooseOperation(this.random);
+                if (this.files.isEmpty() && (operation == LoadOperation.DOWNLOAD || operation == LoadOperation.RENAME)) {
+                    operation = LoadOperation.UPLOAD;
+                }
+                final long start = System.nanoTime();
+                try {
+                    this.perform(operation);
+                    this.report.recordOperation(operation, System.nanoTime() - start);
+                } catch (final IOException e) {
+                    this.report.recordError(operation);
+                }
+            }
+        }
+
+        private void perform(final LoadOperation operation) throws IOException {
+            switch (operation) {
+                case UPLOAD:
+                    this.upload();
+                    break;
+                case DOWNLOAD:
+                    this.download();
+                    break;
+                case LIST:
+                    this.list();
+                    break;
+                case RENAME:
+                    this.rename();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation + ".");
+            }
+        }
+
+        private void upload() throws IOException {
+            final long size = LoadGenerator.this.fileSizes.nextSize(this.random);
+            final String file = this.newFileName();
+            try (OutputStream out = this.channel.write(file)) {
+                long left = size;
+                while (left > 0) {
+                    final int length = (int) Math.min(left, this.buffer.length);
+                    out.write(this.buffer, 0, length);
+                    left -= length;
+                }
+            }
+            this.files.add(file);
+            this.report.recordUploaded(size);
+        }
+
+        private void download() throws IOException {
+            final String file = this.files.get(this.random.nextInt(this.files.size()));
+            final byte[] target = new byte[BUFFER_SIZE];
+            long size = 0;
+            try (InputStream in = this.channel.read(file)) {
+                int length;
+                while ((length = in.read(target)) >= 0) {
+                    size += length;
+                }
+            }
+            this.report.recordDownloaded(size);
+        }
+
+        private void list() throws IOException {
+            for (final SftpClient.DirEntry ignored : this.channel.readDir(this.workingDirectory)) {
+                // the entries are only read
+            }
+        }
+
+        private void rename() throws IOException {
+            final int index = this.random.nextInt(this.files.size());
+            final String target = this.newFileName();
+            this.channel.rename(this.files.get(index), target);
+            this.files.set(index, target);
+        }
+
+        private String newFileName() {
+            return this.workingDirectory + "/file-" + this.nextFile++;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package de.ppi.fakesftpserver.extension;
+
+/**
+ * The operations that a {@link LoadGenerator} performs.
+ */
+public enum LoadOperation {
+
+    /**
+     * Uploads a new file, whose size is taken from the {@link FileSizeDistribution}.
+     */
+    UPLOAD,
+
+    /**
+     * Downloads a file that the same channel has uploaded before.
+     */
+    DOWNLOAD,
+
+    /**
+     * Lists the directory of the channel.
+     */
+    LIST,
+
+    /**
+     * Renames a file that the same channel has uploaded before.
+     */
+    RENAME
+}
@@ -0,0 +1,183 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The result of a run of a {@link LoadGenerator}: the number of operations, their client-side latencies, the errors and
+ * the bytes that have been transferred. The latencies are measured from sending the first request of an operation until
+ * receiving the last response, so they include the network and the client.
+ */
+public final class LoadReport {
+
+    private final Map<LoadOperation, LatencyHistogram> latencies = new EnumMap<>(LoadOperation.class);
+    private final Map<LoadOperation, LongAdder> errors = new EnumMap<>(LoadOperation.class);
+    private final LongAdder bytesUploaded = new LongAdder();
+    private final LongAdder bytesDownloaded = new LongAdder();
+    private volatile Duration duration = Duration.ZERO;
+
+    LoadReport() {
+        for (final LoadOperation operation : LoadOperation.values()) {
+            this.latencies.put(operation, new LatencyHistogram());
+            this.errors.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * Returns the number of operations of a type that have succeeded.
+     *
+     * @param operation the type of the operations.
+     * @return the number of operations.
+     */
+    public long getCount(@NonNull final LoadOperation operation) {
+        return this.latencies.get(operation).getCount();
+    }
+
+    /**
+     * Returns the number of operations of all types that have succeeded.
+     *
+     * @return the number of operations.
+     */
+    public long getTotalCount() {
+        long total = 0;
+        for (final LatencyHistogram histogram : this.latencies.values()) {
+            total += histogram.getCount();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of operations of a type that have failed.
+     *
+     * @param operation the type of the operations.
+     * @return the number of failed operations.
+     */
+    public long getErrors(@NonNull final LoadOperation operation) {
+        return this.errors.get(operation).sum();
+    }
+
+    /**
+     * Returns the number of operations of all types that have failed.
+     *
+     * @return the number of failed operations.
+     */
+    public long getTotalErrors() {
+        long total = 0;
+        for (final LongAdder adder : this.errors.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the latencies of the operations of a type that have succeeded.
+     *
+     * @param operation the type of the operations.
+     * @return the latencies.
+     */
+    public LatencyHistogram getLatency(@NonNull final LoadOperation operation) {
+        return this.latencies.get(operation);
+    }
+
+    /**
+     * Returns the number of bytes that have been uploaded.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesUploaded() {
+        return this.bytesUploaded.sum();
+    }
+
+    /**
+     * Returns the number of bytes that have been downloaded.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesDownloaded() {
+        return this.bytesDownloaded.sum();
+    }
+
+    /**
+     * Returns the time from starting the first operation until finishing the last one. Opening the sessions and
+     * channels is not included.
+     *
+     * @return the duration.
+     */
+    public Duration getDuration() {
+        return this.duration;
+    }
+
+    /**
+     * Returns the number of successful operations per second.
+     *
+     * @return the throughput or {@code 0} if the run has not taken any time.
+     */
+    public double getOperationsPerSecond() {
+        return perSecond(this.getTotalCount());
+    }
+
+    /**
+     * Returns the number of bytes that have been uploaded and downloaded per second.
+     *
+     * @return the throughput or {@code 0} if the run has not taken any time.
+     */
+    public double getBytesPerSecond() {
+        return perSecond(this.getBytesUploaded() + this.getBytesDownloaded());
+    }
+
+    /**
+     * Returns a table with the throughput and the percentiles of the latencies of every type of operation.
+     *
+     * @return the table.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.ROOT, "%d operations in %d ms: %.1f ops/s, %.1f MB/s, %d errors%n",
+            this.getTotalCount(), this.duration.toMillis(), this.getOperationsPerSecond(),
+            this.getBytesPerSecond() / 1_000_000, this.getTotalErrors()));
+        table.append(String.format(Locale.ROOT, "%-9s %9s %7s %10s %10s %10s %10s%n",
+            "operation", "count", "errors", "p50 (ms)", "p90 (ms)", "p99 (ms)", "max (ms)"));
+        for (final LoadOperation operation : LoadOperation.values()) {
+            final LatencyHistogram latency = this.latencies.get(operation);
+            table.append(String.format(Locale.ROOT, "%-9s %9d %7d %10.3f %10.3f %10.3f %10.3f%n",
+                operation, latency.getCount(), this.getErrors(operation), millis(latency.getPercentile(50)),
+                millis(latency.getPercentile(90)), millis(latency.getPercentile(99)), millis(latency.getMax())));
+        }
+        return table.toString();
+    }
+
+    void recordOperation(final LoadOperation operation, final long nanos) {
+        this.latencies.get(operation).record(nanos);
+    }
+
+    void recordError(final LoadOperation operation) {
+        this.errors.get(operation).increment();
+    }
+
+    void recordUploaded(final long bytes) {
+        this.bytesUploaded.add(bytes);
+    }
+
+    void recordDownloaded(final long bytes) {
+        this.bytesDownloaded.add(bytes);
+    }
+
+    void setDuration(final Duration duration) {
+        this.duration = duration;
+    }
+
+    private double perSecond(final long value) {
+        final long nanos = this.duration.toNanos();
+        return nanos == 0 ? 0 : value * 1e9 / nanos;
+    }
+
+    private static double millis(final Duration duration) {
+        return duration.toNanos() / 1e6;
+    }
+}
@@ -0,0 +1,67 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Content that is a region of a memory-mapped file, e.g. of a snapshot. It cannot be modified, so it is replaced by
+ * writable content when the file is opened for writing.
+ * <p>A mapping cannot be larger than 2 GB, so the region is mapped in segments of 1 GB. The mapping stays valid after
+ * the channel has been closed.
+ */
+final class MappedContent extends FileContent {
+
+    private static final int SEGMENT_SIZE = 1 << 30;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private final long size;
+
+    /**
+     * Maps a region of a file.
+     *
+     * @param channel  the channel of the file.
+     * @param position the position of the region.
+     * @param size     the size of the region.
+     * @throws IOException if the region cannot be mapped.
+     */
+    MappedContent(final FileChannel channel, final long position, final long size) throws IOException {
+        this.size = size;
+        for (long offset = 0; offset < size; offset += SEGMENT_SIZE) {
+            this.segments.add(channel.map(FileChannel.MapMode.READ_ONLY, position + offset,
+                Math.min(SEGMENT_SIZE, size - offset)));
+        }
+    }
+
+    @Override
+    long size() {
+        return this.size;
+    }
+
+    @Override
+    int read(final ByteBuffer target, final long position) {
+        if (position >= this.size) {
+            return -1;
+        }
+
+        final int length = (int) Math.min(target.remaining(), this.size - position);
+        int read = 0;
+        while (read < length) {
+            final long current = position + read;
+            final ByteBuffer segment = this.segments.get((int) (current / SEGMENT_SIZE)).duplicate();
+            final int offset = (int) (current % SEGMENT_SIZE);
+            final int chunk = Math.min(length - read, segment.capacity() - offset);
+            segment.limit(offset + chunk).position(offset);
+            target.put(segment);
+            read += chunk;
+        }
+        return length;
+    }
+
+    @Override
+    FileContent copy() {
+        return this;
+    }
+}
@@ -0,0 +1,130 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.time.Duration;
+
+/**
+ * The network between the clients and the SFTP server. By default, the server answers as fast as possible.
+ * <p>A profile emulates a slow link: every response to an SFTP request is delayed by the round-trip latency and a
+ * random jitter, and the bytes of requests and responses are limited per session and for all sessions of the server
+ * together. The jitter is derived from a seed, therefore a channel that sends the same requests always gets the same
+ * delays.
+ * <p>A profile is immutable. Every {@code with...} method returns a new profile.
+ */
+@EqualsAndHashCode
+@ToString
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class NetworkProfile {
+
+    private static final NetworkProfile UNLIMITED = new NetworkProfile(Duration.ZERO, Duration.ZERO, 0, 0, 0);
+
+    /**
+     * The round-trip latency that is added to every SFTP request.
+     */
+    private final Duration latency;
+
+    /**
+     * The maximum random latency that is added to the round-trip latency of every SFTP request.
+     */
+    private final Duration jitter;
+
+    /**
+     * The seed of the random jitter.
+     */
+    private final long seed;
+
+    /**
+     * The bytes per second of every session, or 0 if the bandwidth is not limited.
+     */
+    private final long sessionBandwidth;
+
+    /**
+     * The bytes per second of all sessions of the server together, or 0 if the bandwidth is not limited.
+     */
+    private final long globalBandwidth;
+
+    /**
+     * A network without latency and without a limit of the bandwidth. This is the default.
+     *
+     * @return the profile.
+     */
+    public static NetworkProfile unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Returns a profile with a round-trip latency that is added to every SFTP request.
+     *
+     * @param latency the latency.
+     * @return the new profile.
+     * @throws IllegalArgumentException if the latency is negative.
+     */
+    public NetworkProfile withLatency(@NonNull final Duration latency) {
+        if (latency.isNegative()) {
+            throw new IllegalArgumentException("The latency cannot be negative.");
+        }
+        return new NetworkProfile(latency, this.jitter, this.seed, this.sessionBandwidth, this.globalBandwidth);
+    }
+
+    /**
+     * Returns a profile with a random latency between zero and {@code jitter} that is added to every SFTP request.
+     *
+     * @param jitter the maximum random latency.
+     * @param seed   the seed of the random latency.
+     * @return the new profile.
+     * @throws IllegalArgumentException if the jitter is negative.
+     */
+    public NetworkProfile withJitter(@NonNull final Duration jitter, final long seed) {
+        if (jitter.isNegative()) {
+            throw new IllegalArgumentException("The jitter cannot be negative.");
+        }
+        return new NetworkProfile(this.latency, jitter, seed, this.sessionBandwidth, this.globalBandwidth);
+    }
+
+    /**
+     * Returns a profile that limits the bytes per second of every session.
+     *
+     * @param bytesPerSecond the bandwidth.
+     * @return the new profile.
+     * @throws IllegalArgumentException if the bandwidth is not positive.
+     */
+    public NetworkProfile withSessionBandwidth(final long bytesPerSecond) {
+        verifyBandwidth(bytesPerSecond);
+        return new NetworkProfile(this.latency, this.jitter, this.seed, bytesPerSecond, this.globalBandwidth);
+    }
+
+    /**
+     * Returns a profile that limits the bytes per second of all sessions of the server together.
+     *
+     * @param bytesPerSecond the bandwidth.
+     * @return the new profile.
+     * @throws IllegalArgumentException if the bandwidth is not positive.
+     */
+    public NetworkProfile withGlobalBandwidth(final long bytesPerSecond) {
+        verifyBandwidth(bytesPerSecond);
+        return new NetworkProfile(this.latency, this.jitter, this.seed, this.sessionBandwidth, bytesPerSecond);
+    }
+
+    /**
+     * Tells whether this profile changes nothing.
+     *
+     * @return {@code true} if there is neither latency nor a limit of the bandwidth.
+     */
+    boolean isUnlimited() {
+        return this.latency.isZero() && this.jitter.isZero() && this.sessionBandwidth == 0
+            && this.globalBandwidth == 0;
+    }
+
+    private static void verifyBandwidth(final long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("The bandwidth must be positive.");
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.Getter;
+import org.apache.sshd.common.AttributeRepository.AttributeKey;
+import org.apache.sshd.server.session.ServerSession;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emulates the {@link NetworkProfile} of a server.
+ * <p>Every session and the server itself have a link with a limited bandwidth. A link transmits one message after
+ * the other, so a message has to wait until the previous messages have been transmitted. A response is sent when it
+ * has been transmitted by the link of its session and by the link of the server, plus the latency.
+ */
+final class NetworkShaper {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // all delayed responses are sent by a single thread, which only passes them to the asynchronous output stream
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "fake-sftp-network");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Getter
+    private final NetworkProfile profile;
+    private final Link globalLink;
+    private final AttributeKey<Link> sessionLinkKey = new AttributeKey<>();
+
+    NetworkShaper(final NetworkProfile profile) {
+        this.profile = profile;
+        this.globalLink = new Link(profile.getGlobalBandwidth());
+    }
+
+    /**
+     * Blocks until the links have transmitted a request.
+     *
+     * @param session the session of the request.
+     * @param bytes   the size of the request.
+     * @throws InterruptedIOException if the thread has been interrupted.
+     */
+    void awaitReceived(final ServerSession session, final long bytes) throws InterruptedIOException {
+        final long now = System.nanoTime();
+        final long delay = this.transmit(session, now, bytes) - now;
+        if (delay > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("The request has been interrupted.");
+            }
+        }
+    }
+
+    /**
+     * Transmits a message by the links.
+     *
+     * @param session the session of the message.
+     * @param now     the current time in the unit of {@link System#nanoTime()}.
+     * @param bytes   the size of the message.
+     * @return the time when the message has been transmitted.
+     */
+    long transmit(final ServerSession session, final long now, final long bytes) {
+        final Link sessionLink = session.computeAttributeIfAbsent(this.sessionLinkKey,
+            key -> new Link(this.profile.getSessionBandwidth()));
+        return Math.max(sessionLink.transmit(now, bytes), this.globalLink.transmit(now, bytes));
+    }
+
+    /**
+     * Runs a task at a given time.
+     *
+     * @param time the time in the unit of {@link System#nanoTime()}.
+     * @param task the task.
+     */
+    static void schedule(final long time, final Runnable task) {
+        SCHEDULER.schedule(task, time - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * A link that transmits one message after the other.
+     */
+    private static final class Link {
+
+        private final long bytesPerSecond;
+        private long idleSince = Long.MIN_VALUE;
+
+        Link(final long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        synchronized long transmit(final long now, final long bytes) {
+            if (this.bytesPerSecond == 0) {
+                return now;
+            }
+            this.idleSince = Math.max(now, this.idleSince) + bytes * NANOS_PER_SECOND / this.bytesPerSecond;
+            return this.idleSince;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Content that is stored in direct buffers outside the Java heap.
+ * <p>The content is split into blocks of 1 MB, so that a growing file is never copied as a whole. Only the last block
+ * may be smaller; it grows by doubling its capacity.
+ */
+final class OffHeapContent extends FileContent {
+
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final int MIN_BLOCK_SIZE = 4 * 1024;
+
+    private final List<ByteBuffer> blocks = new ArrayList<>();
+    private long size;
+
+    @Override
+    synchronized long size() {
+        return this.size;
+    }
+
+    @Override
+    synchronized int read(final ByteBuffer target, final long position) {
+        if (position >= this.size) {
+            return -1;
+        }
+
+        final int length = (int) Math.min(target.remaining(), this.size - position);
+        int read = 0;
+        while (read < length) {
+            final long current = position + read;
+            final ByteBuffer block = this.blocks.get((int) (current / BLOCK_SIZE)).duplicate();
+            final int offset = (int) (current % BLOCK_SIZE);
+            final int chunk = Math.min(length - read, block.capacity() - offset);
+            block.limit(offset + chunk).position(offset);
+            target.put(block);
+            read += chunk;
+        }
+        return length;
+    }
+
+    @Override
+    boolean isWritable() {
+        return true;
+    }
+
+    @Override
+    synchronized int write(final ByteBuffer source, final long position) {
+        final int length = source.remaining();
+        if (length == 0) {
+            return 0;
+        }
+        final long end = position + length;
+        this.ensureCapacity(end);
+
+        // a write beyond the end leaves a gap of zeros, which the new or cleared blocks already contain
+        long current = position;
+        while (source.hasRemaining()) {
+            final ByteBuffer block = this.blocks.get((int) (current / BLOCK_SIZE)).duplicate();
+            final int offset = (int) (current % BLOCK_SIZE);
+            final int chunk = Math.min(source.remaining(), block.capacity() - offset);
+            final ByteBuffer part = source.duplicate();
+            part.limit(part.position() + chunk);
+            block.position(offset);
+            block.put(part);
+            source.position(source.position() + chunk);
+            current += chunk;
+        }
+        this.size = Math.max(this.size, end);
+        return length;
+    }
+
+    @Override
+    synchronized void truncate(final long newSize) {
+        if (newSize >= this.size) {
+            return;
+        }
+
+        final int blockCount = (int) ((newSize + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        while (this.blocks.size() > blockCount) {
+            this.blocks.remove(this.blocks.size() - 1);
+        }
+        if (blockCount > 0) {
+            // the truncated bytes have to be zeros if the file grows again
+            final ByteBuffer lastBlock = this.blocks.get(blockCount - 1).duplicate();
+            clear(lastBlock, (int) (newSize - (long) (blockCount - 1) * BLOCK_SIZE));
+        }
+        this.size = newSize;
+    }
+
+    @Override
+    synchronized FileContent copy() {
+        final OffHeapContent copy = new OffHeapContent();
+        for (final ByteBuffer block : this.blocks) {
+            final ByteBuffer blockCopy = ByteBuffer.allocateDirect(block.capacity());
+            blockCopy.put(block.duplicate().clear());
+            copy.blocks.add(blockCopy);
+        }
+        copy.size = this.size;
+        return copy;
+    }
+
+    @Override
+    synchronized void release() {
+        // the direct buffers are freed by the garbage collector as soon as they are not referenced anymore
+        this.blocks.clear();
+        this.size = 0;
+    }
+
+    private void ensureCapacity(final long capacity) {
+        final int lastIndex = (int) ((capacity - 1) / BLOCK_SIZE);
+        while (this.blocks.size() <= lastIndex) {
+            if (!this.blocks.isEmpty()) {
+                this.grow(this.blocks.size() - 1, BLOCK_SIZE);
+            }
+            this.blocks.add(ByteBuffer.allocateDirect(MIN_BLOCK_SIZE));
+        }
+        this.grow(lastIndex, (int) (capacity - (long) lastIndex * BLOCK_SIZE));
+    }
+
+    private void grow(final int index, final int required) {
+        final ByteBuffer block = this.blocks.get(index);
+        if (block.capacity() >= required) {
+            return;
+        }
+
+        int capacity = block.capacity();
+        while (capacity < required) {
+            capacity = Math.min(capacity * 2, BLOCK_SIZE);
+        }
+        final ByteBuffer grownBlock = ByteBuffer.allocateDirect(capacity);
+        grownBlock.put(block.duplicate().clear());
+        this.blocks.set(index, grownBlock);
+    }
+
+    private static void clear(final ByteBuffer block, final int from) {
+        final byte[] zeros = new byte[Math.min(block.capacity() - from, MIN_BLOCK_SIZE)];
+        block.position(from);
+        while (block.hasRemaining()) {
+            block.put(zeros, 0, Math.min(zeros.length, block.remaining()));
+        }
+    }
+}
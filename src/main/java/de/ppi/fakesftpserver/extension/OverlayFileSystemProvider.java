@@ -0,0 +1,471 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import static de.ppi.fakesftpserver.extension.ForwardingPath.unwrap;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Provider of a filesystem that consists of a read-only base layer and a writable upper layer.
+ * <p>A path that exists in the upper layer hides the path of the base layer. All modifications are done in the upper
+ * layer: a file or directory of the base layer is copied up before it is modified, and a deleted path of the base
+ * layer is hidden by a whiteout, which hides everything below that path, too. Directories list the entries of both
+ * layers.
+ */
+class OverlayFileSystemProvider extends ForwardingFileSystemProvider {
+
+    private final FileSystem upper;
+    private final FileSystem base;
+    private final Set<String> whiteouts = ConcurrentHashMap.newKeySet();
+
+    OverlayFileSystemProvider(final FileSystem upper, final FileSystem base) {
+        super(upper);
+        this.upper = upper;
+        this.base = base;
+    }
+
+    /**
+     * Drops the upper layer, so that the filesystem has the content of the base layer again.
+     *
+     * @throws IOException if the upper layer cannot be deleted.
+     */
+    synchronized void reset() throws IOException {
+        for (final Path directory : this.upper.getRootDirectories()) {
+            Files.walkFileTree(directory, new DeleteAllFilesVisitor());
+        }
+        this.whiteouts.clear();
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(final Path path,
+                                              final Set<? extends OpenOption> options,
+                                              final FileAttribute<?>... attrs) throws IOException {
+        if (isWriting(options)) {
+            this.prepareWrite(path, options);
+            return super.newByteChannel(path, options, attrs);
+        }
+        final Path source = this.resolve(path);
+        return source.getFileSystem().provider().newByteChannel(source, options, attrs);
+    }
+
+    @Override
+    public FileChannel newFileChannel(final Path path,
+                                      final Set<? extends OpenOption> options,
+                                      final FileAttribute<?>... attrs) throws IOException {
+        if (isWriting(options)) {
+            this.prepareWrite(path, options);
+            return super.newFileChannel(path, options, attrs);
+        }
+        final Path source = this.resolve(path);
+        return source.getFileSystem().provider().newFileChannel(source, options, attrs);
+    }
+
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(final Path path,
+                                                              final Set<? extends OpenOption> options,
+                                                              final ExecutorService executor,
+                                                              final FileAttribute<?>... attrs) throws IOException {
+        if (isWriting(options)) {
+            this.prepareWrite(path, options);
+            return super.newAsynchronousFileChannel(path, options, executor, attrs);
+        }
+        final Path source = this.resolve(path);
+        return source.getFileSystem().provider().newAsynchronousFileChannel(source, options, executor, attrs);
+    }
+
+    @Override
+    public InputStream newInputStream(final Path path, final OpenOption... options) throws IOException {
+        final Path source = this.resolve(path);
+        return source.getFileSystem().provider().newInputStream(source, options);
+    }
+
+    @Override
+    public OutputStream newOutputStream(final Path path, final OpenOption... options) throws IOException {
+        final Set<OpenOption> optionSet = options.length == 0
+            ? Set.of(CREATE, TRUNCATE_EXISTING, WRITE)
+            : new HashSet<>(Arrays.asList(options));
+        this.prepareWrite(path, optionSet);
+        return super.newOutputStream(path, options);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(final Path dir,
+                                                    final DirectoryStream.Filter<? super Path> filter)
+    throws IOException {
+        final List<Path> entries = new ArrayList<>();
+        for (final Path entry : this.list(upperPath(dir))) {
+            final Path wrappedEntry = this.wrap(entry);
+            if (filter.accept(wrappedEntry)) {
+                entries.add(wrappedEntry);
+            }
+        }
+        return new DirectoryStream<>() {
+            @Override
+            public Iterator<Path> iterator() {
+                return entries.iterator();
+            }
+
+            @Override
+            public void close() {
+                // the entries have been read already
+            }
+        };
+    }
+
+    @Override
+    public void createDirectory(final Path dir, final FileAttribute<?>... attrs) throws IOException {
+        final Path path = upperPath(dir);
+        if (this.exists(path)) {
+            throw new FileAlreadyExistsException(dir.toString());
+        }
+        this.copyUpParent(path);
+        super.createDirectory(dir, attrs);
+    }
+
+    @Override
+    public void createSymbolicLink(final Path link, final Path target, final FileAttribute<?>... attrs)
+    throws IOException {
+        final Path path = upperPath(link);
+        if (this.exists(path)) {
+            throw new FileAlreadyExistsException(link.toString());
+        }
+        this.copyUpParent(path);
+        super.createSymbolicLink(link, target, attrs);
+    }
+
+    @Override
+    public void createLink(final Path link, final Path existing) throws IOException {
+        final Path path = upperPath(link);
+        if (this.exists(path)) {
+            throw new FileAlreadyExistsException(link.toString());
+        }
+        this.copyUp(upperPath(existing));
+        this.copyUpParent(path);
+        super.createLink(link, existing);
+    }
+
+    @Override
+    public void delete(final Path path) throws IOException {
+        final Path upperPath = upperPath(path);
+        if (!this.exists(upperPath)) {
+            throw new NoSuchFileException(path.toString());
+        }
+        if (this.isDirectory(upperPath) && !this.list(upperPath).isEmpty()) {
+            throw new DirectoryNotEmptyException(path.toString());
+        }
+
+        final boolean existsInBase = this.existsInBase(upperPath);
+        if (existsInUpper(upperPath)) {
+            super.delete(path);
+        }
+        if (existsInBase) {
+            this.whiteouts.add(upperPath.toString());
+        }
+    }
+
+    @Override
+    public boolean deleteIfExists(final Path path) throws IOException {
+        if (!this.exists(upperPath(path))) {
+            return false;
+        }
+        this.delete(path);
+        return true;
+    }
+
+    @Override
+    public Path readSymbolicLink(final Path link) throws IOException {
+        final Path source = this.resolve(link);
+        final Path target = source.getFileSystem().provider().readSymbolicLink(source);
+        return this.wrap(this.upper.getPath(target.toString()));
+    }
+
+    @Override
+    public void copy(final Path source, final Path target, final CopyOption... options) throws IOException {
+        final Path resolvedSource = this.resolve(source);
+        final Path upperTarget = upperPath(target);
+        if (!this.exists(upperPath(source))) {
+            throw new NoSuchFileException(source.toString());
+        }
+        this.prepareReplace(target, upperTarget, options);
+
+        // files are copied between the layers like between two different filesystems
+        Files.copy(resolvedSource, upperTarget, options);
+    }
+
+    @Override
+    public void move(final Path source, final Path target, final CopyOption... options) throws IOException {
+        final Path upperSource = upperPath(source);
+        final Path upperTarget = upperPath(target);
+        if (!this.exists(upperSource)) {
+            throw new NoSuchFileException(source.toString());
+        }
+        if (upperSource.equals(upperTarget)) {
+            return;
+        }
+
+        this.copyUpTree(upperSource);
+        this.prepareReplace(target, upperTarget, options);
+        final boolean existsInBase = this.existsInBase(upperSource);
+        super.move(source, target, options);
+        if (existsInBase) {
+            this.whiteouts.add(upperSource.toString());
+        }
+    }
+
+    @Override
+    public boolean isSameFile(final Path path, final Path path2) throws IOException {
+        return path2 instanceof ForwardingPath && upperPath(path).equals(upperPath(path2));
+    }
+
+    @Override
+    public void checkAccess(final Path path, final AccessMode... modes) throws IOException {
+        final Path source = this.resolve(path);
+        source.getFileSystem().provider().checkAccess(source, modes);
+    }
+
+    @Override
+    public <V extends FileAttributeView> V getFileAttributeView(final Path path,
+                                                                final Class<V> type,
+                                                                final LinkOption... options) {
+        final V upperView = super.getFileAttributeView(path, type, options);
+        if (upperView == null || !type.isInterface()) {
+            return upperView;
+        }
+
+        // the view is used for reading and for writing, so the layer is selected when a method is called
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+            (proxy, method, args) -> {
+                final V view;
+                if (isModifying(method.getName())) {
+                    this.copyUp(upperPath(path));
+                    view = upperView;
+                } else {
+                    final Path source = this.resolve(path);
+                    view = source.getFileSystem().provider().getFileAttributeView(source, type, options);
+                }
+                try {
+                    return method.invoke(view, args);
+                } catch (final InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }));
+    }
+
+    @Override
+    public <A extends BasicFileAttributes> A readAttributes(final Path path,
+                                                            final Class<A> type,
+                                                            final LinkOption... options) throws IOException {
+        final Path source = this.resolve(path);
+        return source.getFileSystem().provider().readAttributes(source, type, options);
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(final Path path,
+                                              final String attributes,
+                                              final LinkOption... options) throws IOException {
+        final Path source = this.resolve(path);
+        return source.getFileSystem().provider().readAttributes(source, attributes, options);
+    }
+
+    @Override
+    public void setAttribute(final Path path,
+                             final String attribute,
+                             final Object value,
+                             final LinkOption... options) throws IOException {
+        this.copyUp(upperPath(path));
+        super.setAttribute(path, attribute, value, options);
+    }
+
+    private static Path upperPath(final Path path) {
+        return unwrap(path).toAbsolutePath().normalize();
+    }
+
+    private Path basePath(final Path upperPath) {
+        return this.base.getPath(upperPath.toString());
+    }
+
+    private static boolean existsInUpper(final Path upperPath) {
+        return Files.exists(upperPath, NOFOLLOW_LINKS);
+    }
+
+    private boolean existsInBase(final Path upperPath) {
+        for (Path path = upperPath; path != null; path = path.getParent()) {
+            if (this.whiteouts.contains(path.toString())) {
+                return false;
+            }
+        }
+        return Files.exists(this.basePath(upperPath), NOFOLLOW_LINKS);
+    }
+
+    private boolean exists(final Path upperPath) {
+        return existsInUpper(upperPath) || this.existsInBase(upperPath);
+    }
+
+    private boolean isDirectory(final Path upperPath) {
+        return Files.isDirectory(this.resolve(upperPath), NOFOLLOW_LINKS);
+    }
+
+    /**
+     * Returns the path of the layer that provides the given path.
+     *
+     * @param path a path of this filesystem or of the upper layer.
+     * @return the path of the base layer if the path only exists in the base layer, otherwise the path of the upper
+     * layer.
+     */
+    private Path resolve(final Path path) {
+        final Path upperPath = path instanceof ForwardingPath ? upperPath(path) : path;
+        if (!existsInUpper(upperPath) && this.existsInBase(upperPath)) {
+            return this.basePath(upperPath);
+        }
+        return upperPath;
+    }
+
+    private List<Path> list(final Path upperDir) throws IOException {
+        final boolean inUpper = existsInUpper(upperDir);
+        final boolean inBase = this.existsInBase(upperDir);
+        if (!inUpper && !inBase) {
+            throw new NoSuchFileException(upperDir.toString());
+        }
+        if (!this.isDirectory(upperDir)) {
+            throw new NotDirectoryException(upperDir.toString());
+        }
+
+        final List<Path> entries = new ArrayList<>();
+        final Set<String> names = new HashSet<>();
+        if (inUpper) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(upperDir)) {
+                for (final Path entry : stream) {
+                    names.add(entry.getFileName().toString());
+                    entries.add(entry);
+                }
+            }
+        }
+        if (inBase && Files.isDirectory(this.basePath(upperDir), NOFOLLOW_LINKS)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.basePath(upperDir))) {
+                for (final Path entry : stream) {
+                    final Path upperEntry = upperDir.resolve(entry.getFileName().toString());
+                    if (names.add(upperEntry.getFileName().toString()) && this.existsInBase(upperEntry)) {
+                        entries.add(upperEntry);
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    private void prepareWrite(final Path path, final Set<? extends OpenOption> options) throws IOException {
+        final Path upperPath = upperPath(path);
+        if (options.contains(CREATE_NEW) && this.exists(upperPath)) {
+            throw new FileAlreadyExistsException(path.toString());
+        }
+
+        if (options.contains(TRUNCATE_EXISTING) && !existsInUpper(upperPath) && this.existsInBase(upperPath)) {
+            // there is no need to copy content that is dropped anyway
+            this.copyUpParent(upperPath);
+            createEmptyFile(upperPath);
+        } else {
+            this.copyUpParent(upperPath);
+            this.copyUp(upperPath);
+        }
+    }
+
+    private void prepareReplace(final Path target, final Path upperTarget, final CopyOption... options)
+    throws IOException {
+        if (this.exists(upperTarget)) {
+            if (!Arrays.asList(options).contains(REPLACE_EXISTING)) {
+                throw new FileAlreadyExistsException(target.toString());
+            }
+            this.delete(target);
+        }
+        this.copyUpParent(upperTarget);
+    }
+
+    private void copyUpParent(final Path upperPath) throws IOException {
+        if (upperPath.getParent() != null) {
+            this.copyUp(upperPath.getParent());
+        }
+    }
+
+    private void copyUpTree(final Path upperPath) throws IOException {
+        this.copyUp(upperPath);
+        if (this.isDirectory(upperPath)) {
+            for (final Path entry : this.list(upperPath)) {
+                this.copyUpTree(entry);
+            }
+        }
+    }
+
+    /**
+     * Copies a path from the base layer to the upper layer, so that it can be modified. Parent directories are copied
+     * up, too. Nothing happens if the path already exists in the upper layer or does not exist in the base layer.
+     *
+     * @param upperPath the path of the upper layer.
+     * @throws IOException if the path cannot be copied.
+     */
+    private synchronized void copyUp(final Path upperPath) throws IOException {
+        if (existsInUpper(upperPath) || !this.existsInBase(upperPath)) {
+            return;
+        }
+        this.copyUpParent(upperPath);
+
+        final Path basePath = this.basePath(upperPath);
+        final BasicFileAttributes attributes = Files.readAttributes(basePath, BasicFileAttributes.class,
+            NOFOLLOW_LINKS);
+        if (attributes.isSymbolicLink()) {
+            Files.createSymbolicLink(upperPath, this.upper.getPath(Files.readSymbolicLink(basePath).toString()));
+            return;
+        }
+
+        if (attributes.isDirectory()) {
+            Files.createDirectory(upperPath);
+        } else {
+            Files.copy(basePath, upperPath);
+        }
+        Files.setPosixFilePermissions(upperPath, Files.getPosixFilePermissions(basePath, NOFOLLOW_LINKS));
+        Files.setLastModifiedTime(upperPath, attributes.lastModifiedTime());
+    }
+
+    private static void createEmptyFile(final Path upperPath) throws IOException {
+        try {
+            Files.createFile(upperPath);
+        } catch (final FileAlreadyExistsException e) {
+            // created by a concurrent write
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
+
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The saved state of a single path: whether it exists, what it is, its content and its attributes.
+ * <p>The content of a file that is stored by the {@link ContentFileSystemProvider} is saved as a copy of its
+ * {@link FileContent}, so that it stays where the storage keeps it. Only files that the underlying filesystem stores
+ * are read into a byte array.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class PathState {
+
+    private static final PathState ABSENT = new PathState(Kind.ABSENT, null, null, null, null, null);
+
+    private final Kind kind;
+    private final byte[] content;
+    private final FileContent storedContent;
+    private final Path linkTarget;
+    private final FileTime lastModifiedTime;
+    private final Set<PosixFilePermission> permissions;
+
+    /**
+     * Returns the state of a path that does not exist.
+     *
+     * @return the state.
+     */
+    static PathState absent() {
+        return ABSENT;
+    }
+
+    /**
+     * Reads the current state of a path.
+     *
+     * @param path            the path.
+     * @param contentProvider the provider that stores the content of files or {@code null} if the underlying
+     *                        filesystem stores all files.
+     * @return the state of the path.
+     * @throws IOException if the path cannot be read.
+     */
+    static PathState read(final Path path, final ContentFileSystemProvider contentProvider) throws IOException {
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, NOFOLLOW_LINKS);
+        } catch (final NoSuchFileException e) {
+            return ABSENT;
+        }
+
+        if (attributes.isSymbolicLink()) {
+            return new PathState(Kind.SYMBOLIC_LINK, null, null, Files.readSymbolicLink(path), null, null);
+        }
+
+        final Set<PosixFilePermission> permissions = readPermissions(path);
+        if (attributes.isDirectory()) {
+            return new PathState(Kind.DIRECTORY, null, null, null, attributes.lastModifiedTime(), permissions);
+        }
+        final FileContent storedContent = contentProvider != null ? contentProvider.copyContent(path) : null;
+        final byte[] content = storedContent == null ? Files.readAllBytes(path) : null;
+        return new PathState(Kind.FILE, content, storedContent, null, attributes.lastModifiedTime(), permissions);
+    }
+
+    /**
+     * Checks whether the path has been a directory.
+     *
+     * @return {@code true} iff the path has been a directory.
+     */
+    boolean isDirectory() {
+        return this.kind == Kind.DIRECTORY;
+    }
+
+    /**
+     * Checks whether the path currently exists but is not of the saved kind, so that it has to be deleted before the
+     * saved state can be restored.
+     *
+     * @param path the path.
+     * @return {@code true} iff the path has to be deleted.
+     * @throws IOException if the path cannot be read.
+     */
+    boolean isReplacedBy(final Path path) throws IOException {
+        final Kind currentKind = kindOf(path);
+        return currentKind != Kind.ABSENT && currentKind != this.kind;
+    }
+
+    /**
+     * Restores the saved kind and content of the path. The parent directory must exist. A saved {@link FileContent} is
+     * attached to the file, so the state must not be restored twice.
+     *
+     * @param path            the path.
+     * @param contentProvider the provider that stores the content of files or {@code null} if the underlying
+     *                        filesystem stores all files.
+     * @throws IOException if the path cannot be written.
+     */
+    void restoreContent(final Path path, final ContentFileSystemProvider contentProvider) throws IOException {
+        switch (this.kind) {
+            case DIRECTORY:
+                if (!Files.isDirectory(path, NOFOLLOW_LINKS)) {
+                    Files.createDirectory(path);
+                }
+                break;
+            case FILE:
+                if (this.storedContent == null) {
+                    Files.write(path, this.content, CREATE, TRUNCATE_EXISTING, WRITE);
+                } else {
+                    if (!Files.isRegularFile(path, NOFOLLOW_LINKS)) {
+                        Files.createFile(path);
+                    }
+                    contentProvider.attach(path, this.storedContent);
+                }
+                break;
+            case SYMBOLIC_LINK:
+                if (!Files.isSymbolicLink(path)) {
+                    Files.createSymbolicLink(path, this.linkTarget);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Restores the saved attributes of the path. This has to be done after the content of all children has been
+     * restored, because that changes the modification time of a directory.
+     *
+     * @param path the path.
+     * @throws IOException if the attributes cannot be written.
+     */
+    void restoreAttributes(final Path path) throws IOException {
+        if (this.kind != Kind.DIRECTORY && this.kind != Kind.FILE) {
+            return;
+        }
+        if (this.permissions != null) {
+            Files.setPosixFilePermissions(path, this.permissions);
+        }
+        Files.setLastModifiedTime(path, this.lastModifiedTime);
+    }
+
+    private static Kind kindOf(final Path path) throws IOException {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, NOFOLLOW_LINKS);
+            if (attributes.isSymbolicLink()) {
+                return Kind.SYMBOLIC_LINK;
+            }
+            return attributes.isDirectory() ? Kind.DIRECTORY : Kind.FILE;
+        } catch (final NoSuchFileException e) {
+            return Kind.ABSENT;
+        }
+    }
+
+    private static Set<PosixFilePermission> readPermissions(final Path path) throws IOException {
+        try {
+            return Files.getPosixFilePermissions(path, NOFOLLOW_LINKS);
+        } catch (final UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private enum Kind {
+        ABSENT, DIRECTORY, FILE, SYMBOLIC_LINK
+    }
+}
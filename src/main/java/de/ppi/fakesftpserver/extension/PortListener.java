@@ -0,0 +1,160 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Listens on the port of an SFTP server that has not been started yet. When the first client connects, the server is
+ * started and the connection of that client is relayed to it. The server accepts all further connections itself.
+ * <p>Binding a socket is much cheaper than starting a server, so a test that never connects to the server does not
+ * pay for starting it.
+ * <p>The handover has two limitations. The listener releases the port before the server binds it, so a client that
+ * connects while the server is being started is refused. And the server sees the relayed first connection as a
+ * connection from the loopback address, not from the address of the client.
+ */
+@Slf4j
+final class PortListener implements Closeable {
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    /**
+     * The port that the listener listens on.
+     */
+    @Getter
+    private final int port;
+    private final ServerSocketChannel channel;
+    private final ServerStarter starter;
+
+    private PortListener(final int port, final ServerSocketChannel channel, final ServerStarter starter) {
+        this.port = port;
+        this.channel = channel;
+        this.starter = starter;
+    }
+
+    /**
+     * Starts listening on a port.
+     *
+     * @param port    the port.
+     * @param starter starts the server when the first client connects. It has to close the listener before it binds
+     *                the port, and it must not start the server for a listener that has been closed or replaced.
+     * @return the listener.
+     * @throws IOException if the port cannot be bound.
+     */
+    static PortListener listen(final int port, final ServerStarter starter) throws IOException {
+        final ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.bind(new InetSocketAddress(port));
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        final PortListener listener = new PortListener(port, channel, starter);
+        startDaemon(listener::acceptFirstConnection, "fake-sftp-port-" + port);
+        return listener;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private void acceptFirstConnection() {
+        final SocketChannel client;
+        try {
+            client = this.channel.accept();
+        } catch (final IOException e) {
+            // the listener has been closed before a client has connected
+            return;
+        }
+
+        try {
+            final int serverPort = this.starter.start(this);
+            if (serverPort == ServerStarter.NOT_STARTED) {
+                // the listener has been closed or replaced while the client connected
+                closeQuietly(client);
+                return;
+            }
+            final SocketChannel server = SocketChannel.open(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), serverPort));
+            relay(client, server);
+        } catch (final IOException | RuntimeException e) {
+            log.warn("The SFTP server cannot be started for the first client.", e);
+            closeQuietly(client);
+        }
+    }
+
+    private static void relay(final SocketChannel client, final SocketChannel server) {
+        final AtomicInteger openDirections = new AtomicInteger(2);
+        startDaemon(() -> copy(server, client, openDirections), "fake-sftp-relay");
+        copy(client, server, openDirections);
+    }
+
+    private static void copy(final SocketChannel from, final SocketChannel to, final AtomicInteger openDirections) {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try {
+            while (from.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    to.write(buffer);
+                }
+                buffer.clear();
+            }
+            to.shutdownOutput();
+            if (openDirections.decrementAndGet() > 0) {
+                return;
+            }
+        } catch (final IOException e) {
+            // one side has closed the connection, which ends the relay in both directions
+        }
+        closeQuietly(from);
+        closeQuietly(to);
+    }
+
+    private static void startDaemon(final Runnable runnable, final String name) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void closeQuietly(final SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            log.debug("The connection cannot be closed.", e);
+        }
+    }
+
+    /**
+     * Starts the SFTP server.
+     */
+    @FunctionalInterface
+    interface ServerStarter {
+
+        /**
+         * The result of {@link #start(PortListener)} if the server has not been started for the listener.
+         */
+        int NOT_STARTED = -1;
+
+        /**
+         * Starts the server, unless it has been started already. The server is only started if the listener is still
+         * the listener of the server. A listener that has been closed or replaced, e.g. because the port has been
+         * changed, must not start the server.
+         *
+         * @param listener the listener that has accepted the first client.
+         * @return the port of the server or {@link #NOT_STARTED} if the listener is no longer the listener of the
+         * server.
+         * @throws IOException if the server cannot be started.
+         */
+        int start(PortListener listener) throws IOException;
+    }
+}
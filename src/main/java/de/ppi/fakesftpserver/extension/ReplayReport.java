@@ -0,0 +1,221 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The comparison of a trace with its replay by a {@link TraceReplayer}. Both the recorded and the replayed latencies
+ * are measured by the server, from taking a request until its response is ready, so they can be compared directly.
+ */
+public final class ReplayReport {
+
+    private final double speed;
+    private final SftpStatistics replayedStatistics;
+    private final Map<SftpOperation, LatencyHistogram> recordedLatencies = new EnumMap<>(SftpOperation.class);
+    private final Map<SftpOperation, LongAdder> replayedCounts = new EnumMap<>(SftpOperation.class);
+    private final Map<SftpOperation, LongAdder> errors = new EnumMap<>(SftpOperation.class);
+    private final LongAdder skipped = new LongAdder();
+    private Duration recordedDuration = Duration.ZERO;
+    private volatile Duration replayedDuration = Duration.ZERO;
+
+    ReplayReport(final double speed, final SftpStatistics replayedStatistics) {
+        this.speed = speed;
+        this.replayedStatistics = replayedStatistics;
+        for (final SftpOperation operation : SftpOperation.values()) {
+            this.recordedLatencies.put(operation, new LatencyHistogram());
+            this.replayedCounts.put(operation, new LongAdder());
+            this.errors.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * Returns the factor by which the replay was faster than the recording.
+     *
+     * @return the speed.
+     */
+    public double getSpeed() {
+        return this.speed;
+    }
+
+    /**
+     * Returns the time from the arrival of the first recorded request until the response of the last one.
+     *
+     * @return the duration.
+     */
+    public Duration getRecordedDuration() {
+        return this.recordedDuration;
+    }
+
+    /**
+     * Returns the time from sending the first replayed request until receiving the response of the last one.
+     *
+     * @return the duration.
+     */
+    public Duration getReplayedDuration() {
+        return this.replayedDuration;
+    }
+
+    /**
+     * Returns the number of recorded requests of an operation.
+     *
+     * @param operation the operation.
+     * @return the number of requests.
+     */
+    public long getRecordedCount(@NonNull final SftpOperation operation) {
+        return this.recordedLatencies.get(operation).getCount();
+    }
+
+    /**
+     * Returns the number of requests of an operation that have been replayed successfully.
+     *
+     * @param operation the operation.
+     * @return the number of requests.
+     */
+    public long getReplayedCount(@NonNull final SftpOperation operation) {
+        return this.replayedCounts.get(operation).sum();
+    }
+
+    /**
+     * Returns the number of requests of an operation that have failed during the replay, e.g. because a file did not
+     * exist on the server.
+     *
+     * @param operation the operation.
+     * @return the number of failed requests.
+     */
+    public long getErrors(@NonNull final SftpOperation operation) {
+        return this.errors.get(operation).sum();
+    }
+
+    /**
+     * Returns the number of requests of all operations that have failed during the replay.
+     *
+     * @return the number of failed requests.
+     */
+    public long getTotalErrors() {
+        return sum(this.errors);
+    }
+
+    /**
+     * Returns the number of recorded requests that the replayer does not send, e.g. {@code INIT}, which the client
+     * sends by itself, or links and extended requests.
+     *
+     * @return the number of requests.
+     */
+    public long getSkipped() {
+        return this.skipped.sum();
+    }
+
+    /**
+     * Returns the recorded latencies of the requests of an operation.
+     *
+     * @param operation the operation.
+     * @return the latencies.
+     */
+    public LatencyHistogram getRecordedLatency(@NonNull final SftpOperation operation) {
+        return this.recordedLatencies.get(operation);
+    }
+
+    /**
+     * Returns the latencies of the requests of an operation during the replay. They are taken from the
+     * {@link SftpStatistics} of the extension, which are reset when the replay starts.
+     *
+     * @param operation the operation.
+     * @return the latencies.
+     */
+    public LatencyHistogram getReplayedLatency(@NonNull final SftpOperation operation) {
+        return this.replayedStatistics.getLatency(operation);
+    }
+
+    /**
+     * Returns the number of recorded requests per second.
+     *
+     * @return the throughput or {@code 0} if the recording has not taken any time.
+     */
+    public double getRecordedThroughput() {
+        return perSecond(this.recordedLatencies.values().stream().mapToLong(LatencyHistogram::getCount).sum(),
+            this.recordedDuration);
+    }
+
+    /**
+     * Returns the number of replayed requests per second.
+     *
+     * @return the throughput or {@code 0} if the replay has not taken any time.
+     */
+    public double getReplayedThroughput() {
+        return perSecond(sum(this.replayedCounts), this.replayedDuration);
+    }
+
+    /**
+     * Returns a table that compares the durations, the throughput and the latencies of every recorded operation.
+     *
+     * @return the table.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.ROOT, "speed %.1fx, recorded %d ms (%.1f req/s), replayed %d ms"
+                + " (%.1f req/s), %d errors, %d skipped%n", this.speed, this.recordedDuration.toMillis(),
+            this.getRecordedThroughput(), this.replayedDuration.toMillis(), this.getReplayedThroughput(),
+            this.getTotalErrors(), this.getSkipped()));
+        table.append(String.format(Locale.ROOT, "%-9s %9s %9s %7s %14s %14s %14s %14s%n", "operation", "recorded",
+            "replayed", "errors", "rec p50 (ms)", "rep p50 (ms)", "rec p99 (ms)", "rep p99 (ms)"));
+        for (final SftpOperation operation : SftpOperation.values()) {
+            final LatencyHistogram recorded = this.recordedLatencies.get(operation);
+            if (recorded.getCount() == 0) {
+                continue;
+            }
+            final LatencyHistogram replayed = this.getReplayedLatency(operation);
+            table.append(String.format(Locale.ROOT, "%-9s %9d %9d %7d %14.3f %14.3f %14.3f %14.3f%n", operation,
+                recorded.getCount(), this.getReplayedCount(operation), this.getErrors(operation),
+                millis(recorded.getPercentile(50)), millis(replayed.getPercentile(50)),
+                millis(recorded.getPercentile(99)), millis(replayed.getPercentile(99))));
+        }
+        return table.toString();
+    }
+
+    void recordRecorded(final TraceRecord record) {
+        this.recordedLatencies.get(record.getOperation()).record(record.nanos);
+    }
+
+    void setRecordedDuration(final Duration recordedDuration) {
+        this.recordedDuration = recordedDuration;
+    }
+
+    void setReplayedDuration(final Duration replayedDuration) {
+        this.replayedDuration = replayedDuration;
+    }
+
+    void recordReplayed(final SftpOperation operation) {
+        this.replayedCounts.get(operation).increment();
+    }
+
+    void recordError(final SftpOperation operation) {
+        this.errors.get(operation).increment();
+    }
+
+    void recordSkipped() {
+        this.skipped.increment();
+    }
+
+    private static long sum(final Map<SftpOperation, LongAdder> adders) {
+        long total = 0;
+        for (final LongAdder adder : adders.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    private static double perSecond(final long value, final Duration duration) {
+        final long nanos = duration.toNanos();
+        return nanos == 0 ? 0 : value * 1e9 / nanos;
+    }
+
+    private static double millis(final Duration duration) {
+        return duration.toNanos() / 1e6;
+    }
+}
@@ -0,0 +1,42 @@
+package de.ppi.fakesftpserver.extension;
+
+/**
+ * Defines how long the SFTP server of a {@link FakeSftpServerExtension} lives.
+ */
+public enum ServerLifecycle {
+
+    /**
+     * A new SFTP server with an empty filesystem is started before each test and stopped afterwards.
+     */
+    PER_TEST,
+
+    /**
+     * The SFTP server is started once per test class and stopped after the last test of the class.
+     * Between two tests only the filesystem and the users are reset: the filesystem is rolled back to its first
+     * checkpoint or, if there is no checkpoint, all files are deleted. Users that a test has added are removed, so only
+     * the users that have been added before the first test remain.
+     * <p>The extension has to be registered in a static field.
+     */
+    PER_CLASS,
+
+    /**
+     * The SFTP server is started once and stopped after all tests of the test run are finished.
+     * Between two tests only the filesystem and the users are reset: the filesystem is rolled back to its first
+     * checkpoint or, if there is no checkpoint, all files are deleted. Users that a test has added are removed, so only
+     * the users that have been added before the first test remain.
+     * <p>The extension has to be registered in a static field, which may be shared by several test classes.
+     */
+    PER_RUN,
+
+    /**
+     * All extensions with this lifecycle share a single SFTP server, which runs until the JVM exits. Every test has
+     * its own filesystem, which is selected by the username of the SFTP session. Therefore, tests that run in parallel
+     * do not interfere with each other.
+     * <p>Clients have to log in with the username
+     * {@link FakeSftpServerExtension#getLeaseUsername()}, which is accepted with any password or key, or with one of the
+     * users that have been added to the extension.
+     * Usernames that are added by {@link FakeSftpServerExtension#addUser(String, String)} must be unique among all tests
+     * that run at the same time. The port of the shared server cannot be changed.
+     */
+    SHARED
+}
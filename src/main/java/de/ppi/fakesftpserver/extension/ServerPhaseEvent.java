@@ -0,0 +1,53 @@
+package de.ppi.fakesftpserver.extension;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a phase of starting an SFTP server.
+ */
+@Name("de.ppi.fakesftpserver.ServerPhase")
+@Label("Server Phase")
+@Description("A phase of starting an SFTP server: building the filesystem, providing the host key, binding the port or leasing a standby server")
+@Category("Fake SFTP Server")
+class ServerPhaseEvent extends Event {
+
+    static final String BUILD_FILESYSTEM = "build filesystem";
+    static final String PROVIDE_HOST_KEY = "provide host key";
+    static final String BIND = "bind";
+    static final String LEASE_STANDBY = "lease standby server";
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Lifecycle")
+    String lifecycle;
+
+    /**
+     * Creates an event and starts its timing.
+     *
+     * @return the event.
+     */
+    static ServerPhaseEvent start() {
+        final ServerPhaseEvent event = new ServerPhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the timing and commits the event if it is recorded.
+     *
+     * @param phase     the phase.
+     * @param lifecycle the lifecycle of the server.
+     */
+    void finish(final String phase, final ServerLifecycle lifecycle) {
+        if (this.shouldCommit()) {
+            this.phase = phase;
+            this.lifecycle = lifecycle.name();
+            this.commit();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package de.ppi.fakesftpserver.extension;
+
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Connects the clients of the {@link LoadGenerator} and the {@link TraceReplayer} to a server.
+ */
+final class SftpClientConnector {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final FakeSftpServerExtension extension;
+    private final String host;
+    private final int port;
+    private String username;
+    private String password = "password";
+
+    /**
+     * Creates a connector for the server of an extension or for any server.
+     *
+     * @param extension the extension or {@code null} if the host and the port are used.
+     * @param host      the host of the server.
+     * @param port      the port of the server, which is ignored if the extension is set.
+     */
+    SftpClientConnector(final FakeSftpServerExtension extension, final String host, final int port) {
+        this.extension = extension;
+        this.host = host;
+        this.port = port;
+    }
+
+    void setCredentials(final String username, final String password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Starts a client that does not verify the key of the server.
+     *
+     * @return the client, which has to be closed.
+     */
+    static SshClient startClient() {
+        final SshClient client = SshClient.setUpDefaultClient();
+        client.setServerKeyVerifier((session, address, key) -> true);
+        client.start();
+        return client;
+    }
+
+    /**
+     * Opens an authenticated session. The port and, if the server is shared, the username are taken from the extension
+     * when the session is opened. Without credentials the session logs in as {@code user} with the password
+     * {@code password}.
+     *
+     * @param client the client.
+     * @return the session.
+     * @throws IOException if the session cannot be opened or authenticated.
+     */
+    ClientSession connect(final SshClient client) throws IOException {
+        final int portOfServer = this.extension == null ? this.port : this.extension.getPort();
+        final ClientSession session = client.connect(this.usernameOfSession(), this.host, portOfServer)
+            .verify(CONNECT_TIMEOUT)
+            .getSession();
+        try {
+            session.addPasswordIdentity(this.password);
+            session.auth().verify(CONNECT_TIMEOUT);
+        } catch (final IOException | RuntimeException e) {
+            session.close(true);
+            throw e;
+        }
+        return session;
+    }
+
+    private String usernameOfSession() {
+        if (this.username != null) {
+            return this.username;
+        }
+        return this.extension != null && this.extension.getLifecycle() == ServerLifecycle.SHARED
+            ? this.extension.getLeaseUsername()
+            : "user";
+    }
+}
@@ -0,0 +1,95 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.apache.sshd.sftp.common.SftpConstants;
+
+/**
+ * The types of SFTP requests.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public enum SftpOperation {
+
+    INIT(SftpConstants.SSH_FXP_INIT, Argument.NONE),
+    OPEN(SftpConstants.SSH_FXP_OPEN, Argument.PATH),
+    CLOSE(SftpConstants.SSH_FXP_CLOSE, Argument.HANDLE),
+    READ(SftpConstants.SSH_FXP_READ, Argument.HANDLE),
+    WRITE(SftpConstants.SSH_FXP_WRITE, Argument.HANDLE),
+    LSTAT(SftpConstants.SSH_FXP_LSTAT, Argument.PATH),
+    FSTAT(SftpConstants.SSH_FXP_FSTAT, Argument.HANDLE),
+    SETSTAT(SftpConstants.SSH_FXP_SETSTAT, Argument.PATH),
+    FSETSTAT(SftpConstants.SSH_FXP_FSETSTAT, Argument.HANDLE),
+    OPENDIR(SftpConstants.SSH_FXP_OPENDIR, Argument.PATH),
+    READDIR(SftpConstants.SSH_FXP_READDIR, Argument.HANDLE),
+    REMOVE(SftpConstants.SSH_FXP_REMOVE, Argument.PATH),
+    MKDIR(SftpConstants.SSH_FXP_MKDIR, Argument.PATH),
+    RMDIR(SftpConstants.SSH_FXP_RMDIR, Argument.PATH),
+    REALPATH(SftpConstants.SSH_FXP_REALPATH, Argument.PATH),
+    STAT(SftpConstants.SSH_FXP_STAT, Argument.PATH),
+    RENAME(SftpConstants.SSH_FXP_RENAME, Argument.PATH),
+    READLINK(SftpConstants.SSH_FXP_READLINK, Argument.PATH),
+    SYMLINK(SftpConstants.SSH_FXP_SYMLINK, Argument.PATH),
+    LINK(SftpConstants.SSH_FXP_LINK, Argument.PATH),
+    BLOCK(SftpConstants.SSH_FXP_BLOCK, Argument.HANDLE),
+    UNBLOCK(SftpConstants.SSH_FXP_UNBLOCK, Argument.HANDLE),
+    EXTENDED(SftpConstants.SSH_FXP_EXTENDED, Argument.NONE),
+
+    /**
+     * A request of an unknown type.
+     */
+    UNKNOWN(-1, Argument.NONE);
+
+    private static final SftpOperation[] OPERATIONS_BY_TYPE = new SftpOperation[SftpConstants.SSH_FXP_EXTENDED + 1];
+
+    static {
+        for (final SftpOperation operation : values()) {
+            if (operation != UNKNOWN) {
+                OPERATIONS_BY_TYPE[operation.type] = operation;
+            }
+        }
+    }
+
+    /**
+     * The type of the request in the SFTP protocol.
+     */
+    @Getter
+    private final int type;
+
+    private final Argument firstArgument;
+
+    /**
+     * Returns the operation of a request type.
+     *
+     * @param type the type of the request in the SFTP protocol.
+     * @return the operation or {@link #UNKNOWN}.
+     */
+    static SftpOperation of(final int type) {
+        final SftpOperation operation = type >= 0 && type < OPERATIONS_BY_TYPE.length ? OPERATIONS_BY_TYPE[type] : null;
+        return operation != null ? operation : UNKNOWN;
+    }
+
+    /**
+     * Tells whether the first argument of the request is a path.
+     *
+     * @return {@code true} if it is a path.
+     */
+    boolean hasPath() {
+        return this.firstArgument == Argument.PATH;
+    }
+
+    /**
+     * Tells whether the first argument of the request is the handle of an open file or directory.
+     *
+     * @return {@code true} if it is a handle.
+     */
+    boolean hasHandle() {
+        return this.firstArgument == Argument.HANDLE;
+    }
+
+    private enum Argument {
+        NONE,
+        PATH,
+        HANDLE
+    }
+}
@@ -0,0 +1,31 @@
+package de.ppi.fakesftpserver.extension;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of the processing of an SFTP request.
+ */
+@Name("de.ppi.fakesftpserver.SftpOperation")
+@Label("SFTP Operation")
+@Description("The processing of an SFTP request by the server")
+@Category("Fake SFTP Server")
+class SftpOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Path")
+    String path;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("User")
+    String user;
+}
@@ -0,0 +1,99 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.NonNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the SFTP requests that the server has processed: the number of requests and the server-side latency
+ * of every {@link SftpOperation}, and the number of bytes that have been read and written.
+ * <p>The statistics are updated without locks. A reset is not atomic, so requests that are processed at the same time
+ * may be counted partially.
+ */
+public final class SftpStatistics {
+
+    private final Map<SftpOperation, LatencyHistogram> latencies = new EnumMap<>(SftpOperation.class);
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    SftpStatistics() {
+        for (final SftpOperation operation : SftpOperation.values()) {
+            this.latencies.put(operation, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Returns the number of requests of an operation.
+     *
+     * @param operation the operation.
+     * @return the number of requests.
+     */
+    public long getCount(@NonNull final SftpOperation operation) {
+        return this.latencies.get(operation).getCount();
+    }
+
+    /**
+     * Returns the number of requests of all operations.
+     *
+     * @return the number of requests.
+     */
+    public long getTotalCount() {
+        long total = 0;
+        for (final LatencyHistogram histogram : this.latencies.values()) {
+            total += histogram.getCount();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the server-side latencies of the requests of an operation, i.e. the time from taking a request until its
+     * response is ready.
+     *
+     * @param operation the operation.
+     * @return the latencies.
+     */
+    public LatencyHistogram getLatency(@NonNull final SftpOperation operation) {
+        return this.latencies.get(operation);
+    }
+
+    /**
+     * Returns the number of bytes that clients have read from files.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesRead() {
+        return this.bytesRead.sum();
+    }
+
+    /**
+     * Returns the number of bytes that clients have written to files.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten.sum();
+    }
+
+    /**
+     * Resets all statistics to zero.
+     */
+    public void reset() {
+        this.latencies.values().forEach(LatencyHistogram::reset);
+        this.bytesRead.reset();
+        this.bytesWritten.reset();
+    }
+
+    void recordRequest(final int type, final long nanos) {
+        this.latencies.get(SftpOperation.of(type)).record(nanos);
+    }
+
+    void recordRead(final int bytes) {
+        this.bytesRead.add(bytes);
+    }
+
+    void recordWritten(final int bytes) {
+        this.bytesWritten.add(bytes);
+    }
+}
@@ -0,0 +1,228 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.auth.AsyncAuthException;
+import org.apache.sshd.server.auth.password.PasswordChangeRequiredException;
+import org.apache.sshd.server.session.ServerSession;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.security.PublicKey;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * An SFTP server, which is shared by all tests that use the lifecycle {@link ServerLifecycle#SHARED}.
+ * <p>Every test leases its own filesystem. The filesystem of a session is selected by its username, which is either
+ * the username of the lease or one of the users that were registered by the test.
+ */
+@Slf4j
+final class SharedSftpServer {
+
+    private static final Map<List<Object>, SharedSftpServer> SERVERS = new HashMap<>();
+
+    private final SshServer server;
+    private final CustomFileSystemFactory fileSystemFactory = new CustomFileSystemFactory(null);
+    private final Map<String, Lease> leasesByUsername = new ConcurrentHashMap<>();
+    private final AtomicLong leaseCounter = new AtomicLong();
+
+    private SharedSftpServer(final HostKey hostKey, final ChannelExecutor channelExecutor, final IoThreads ioThreads)
+    throws IOException {
+        this.server = SshServer.setUpDefaultServer();
+        final ServerPhaseEvent hostKeyEvent = ServerPhaseEvent.start();
+        this.server.setKeyPairProvider(hostKey.getKeyPairProvider());
+        hostKeyEvent.finish(ServerPhaseEvent.PROVIDE_HOST_KEY, ServerLifecycle.SHARED);
+        ioThreads.configure(this.server);
+        this.server.setPasswordAuthenticator((user, pass, session) -> {
+            final Lease lease = this.leasesByUsername.get(user);
+            return lease != null && lease.authenticate(user, pass, session);
+        });
+        this.server.setPublickeyAuthenticator((user, key, session) -> {
+            final Lease lease = this.leasesByUsername.get(user);
+            return lease != null && lease.authenticate(user, key, session);
+        });
+        this.server.setSubsystemFactories(singletonList(new CustomSftpSubsystemFactory(channelExecutor,
+            session -> {
+                final Lease lease = this.leasesByUsername.get(session.getUsername());
+                return lease != null ? lease.networkShaper.get() : null;
+            },
+            session -> {
+                final Lease lease = this.leasesByUsername.get(session.getUsername());
+                return lease != null ? lease.statistics : null;
+            },
+            session -> {
+                final Lease lease = this.leasesByUsername.get(session.getUsername());
+                return lease != null ? lease.recording.get() : null;
+            },
+            session -> {
+                final Lease lease = this.leasesByUsername.get(session.getUsername());
+                return lease != null ? lease.activity : null;
+            })));
+        this.server.setFileSystemFactory(this.fileSystemFactory);
+        final ServerPhaseEvent bindEvent = ServerPhaseEvent.start();
+        this.server.start();
+        bindEvent.finish(ServerPhaseEvent.BIND, ServerLifecycle.SHARED);
+    }
+
+    /**
+     * Returns the shared server for a host key, a channel executor and IO threads. The server is started on the first call and
+     * stopped when the JVM exits.
+     *
+     * @param hostKey         the host key of the server.
+     * @param channelExecutor the executor of the SFTP channels.
+     * @param ioThreads       the IO threads of the server.
+     * @return the shared server.
+     * @throws IOException if the server cannot be started.
+     */
+    static synchronized SharedSftpServer of(final HostKey hostKey,
+                                            final ChannelExecutor channelExecutor,
+                                            final IoThreads ioThreads) throws IOException {
+        final List<Object> key = List.of(hostKey, channelExecutor, ioThreads);
+        SharedSftpServer sharedServer = SERVERS.get(key);
+        if (sharedServer == null) {
+            sharedServer = new SharedSftpServer(hostKey, channelExecutor, ioThreads);
+            SERVERS.put(key, sharedServer);
+            Runtime.getRuntime().addShutdownHook(new Thread(sharedServer::stop, "SharedSftpServer-shutdown"));
+        }
+        return sharedServer;
+    }
+
+    /**
+     * Leases a filesystem of this server to a test.
+     *
+     * @param fileSystem    the filesystem of the test.
+     * @param authenticator the users of the test.
+     * @param networkShaper returns the shaper of the network of the test or {@code null} if it is not shaped.
+     * @param statistics    the statistics of the test.
+     * @param recording     returns the trace recording of the test or {@code null} if it is not recorded.
+     * @param activity      the file activity of the test.
+     * @return the lease, which has to be closed at the end of the test.
+     */
+    Lease lease(final FileSystem fileSystem,
+                final InMemoryAuthenticator authenticator,
+                final Supplier<NetworkShaper> networkShaper,
+                final SftpStatistics statistics,
+                final Supplier<TraceRecording> recording,
+                final FileActivity activity) {
+        final Lease lease = new Lease("fake-sftp-" + this.leaseCounter.incrementAndGet(), fileSystem, authenticator,
+            networkShaper, statistics, recording, activity);
+        try {
+            lease.addUsername(lease.getUsername());
+            authenticator.getUsernames().forEach(lease::addUsername);
+        } catch (final IllegalStateException e) {
+            lease.close();
+            throw e;
+        }
+        return lease;
+    }
+
+    private void stop() {
+        try {
+            this.server.stop(true);
+        } catch (final IOException e) {
+            log.warn("The shared SFTP server cannot be stopped.", e);
+        }
+    }
+
+    /**
+     * The filesystem and the users of a single test.
+     */
+    final class Lease implements AutoCloseable {
+
+        @Getter
+        private final String username;
+        private final FileSystem fileSystem;
+        private final InMemoryAuthenticator authenticator;
+        private final Supplier<NetworkShaper> networkShaper;
+        private final SftpStatistics statistics;
+        private final Supplier<TraceRecording> recording;
+        private final FileActivity activity;
+        private final Set<String> usernames = ConcurrentHashMap.newKeySet();
+
+        private Lease(final String username,
+                      final FileSystem fileSystem,
+                      final InMemoryAuthenticator authenticator,
+                      final Supplier<NetworkShaper> networkShaper,
+                      final SftpStatistics statistics,
+                      final Supplier<TraceRecording> recording,
+                      final FileActivity activity) {
+            this.username = username;
+            this.fileSystem = fileSystem;
+            this.authenticator = authenticator;
+            this.networkShaper = networkShaper;
+            this.statistics = statistics;
+            this.recording = recording;
+            this.activity = activity;
+        }
+
+        /**
+         * Returns the shared server.
+         *
+         * @return the server.
+         */
+        SshServer getServer() {
+            return SharedSftpServer.this.server;
+        }
+
+        /**
+         * Authenticates a user of this lease by password. The username of the lease is accepted with any password,
+         * even if the test has added users.
+         *
+         * @param user    the username.
+         * @param pass    the password.
+         * @param session the session.
+         * @return {@code true} if the user is authenticated.
+         * @throws PasswordChangeRequiredException if the authenticator requires a new password.
+         * @throws AsyncAuthException              if the authenticator authenticates asynchronously.
+         */
+        boolean authenticate(final String user, final String pass, final ServerSession session)
+        throws PasswordChangeRequiredException, AsyncAuthException {
+            return this.username.equals(user) || this.authenticator.authenticate(user, pass, session);
+        }
+
+        /**
+         * Authenticates a user of this lease by public key. The username of the lease is accepted with any key, even
+         * if the test has added users.
+         *
+         * @param user    the username.
+         * @param key     the public key.
+         * @param session the session.
+         * @return {@code true} if the user is authenticated.
+         * @throws AsyncAuthException if the authenticator authenticates asynchronously.
+         */
+        boolean authenticate(final String user, final PublicKey key, final ServerSession session)
+        throws AsyncAuthException {
+            return this.username.equals(user) || this.authenticator.authenticate(user, key, session);
+        }
+
+        /**
+         * Routes the sessions of a user to the filesystem of this lease.
+         *
+         * @param user the username.
+         * @throws IllegalStateException if the user is already used by another test.
+         */
+        void addUsername(final String user) {
+            SharedSftpServer.this.fileSystemFactory.addRoute(user, this.fileSystem);
+            SharedSftpServer.this.leasesByUsername.put(user, this);
+            this.usernames.add(user);
+        }
+
+        @Override
+        public void close() {
+            for (final String user : this.usernames) {
+                SharedSftpServer.this.leasesByUsername.remove(user);
+                SharedSftpServer.this.fileSystemFactory.removeRoute(user);
+            }
+            this.usernames.clear();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The format of the snapshots of a filesystem.
+ * <p>A snapshot starts with a header, which contains a magic number, a version and the length of the metadata. The
+ * metadata lists every directory, file and symbolic link in pre-order with its attributes. The content of the files
+ * follows the metadata. It starts at a multiple of the page size and every file starts at a multiple of 8, so that the
+ * content can be memory-mapped when the snapshot is loaded instead of being copied to the heap.
+ */
+final class Snapshot {
+
+    private static final int MAGIC = 0x46534E50;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 16;
+    private static final int CONTENT_ALIGNMENT = 4096;
+    private static final int FILE_ALIGNMENT = 8;
+
+    private static final int DIRECTORY = 1;
+    private static final int FILE = 2;
+    private static final int SYMBOLIC_LINK = 3;
+
+    private static final PosixFilePermission[] PERMISSIONS = PosixFilePermission.values();
+
+    private Snapshot() {
+    }
+
+    /**
+     * Writes a snapshot of all files and directories of a filesystem.
+     *
+     * @param fileSystem the filesystem.
+     * @param output     the stream that the snapshot is written to. It is flushed but not closed.
+     * @throws IOException if the filesystem cannot be read or the snapshot cannot be written.
+     */
+    static void save(final FileSystem fileSystem, final OutputStream output) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        for (final Path root : fileSystem.getRootDirectories()) {
+            Files.walkFileTree(root, new EntryCollector(root, entries));
+        }
+
+        final ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+        final DataOutputStream metadataOutput = new DataOutputStream(metadata);
+        metadataOutput.writeInt(entries.size());
+        long contentLength = 0;
+        for (final Entry entry : entries) {
+            if (entry.type == FILE) {
+                entry.offset = contentLength;
+                contentLength = align(contentLength + entry.size, FILE_ALIGNMENT);
+            }
+            entry.writeTo(metadataOutput);
+        }
+
+        final DataOutputStream snapshotOutput = new DataOutputStream(new BufferedOutputStream(output, 64 * 1024));
+        snapshotOutput.writeInt(MAGIC);
+        snapshotOutput.writeInt(VERSION);
+        snapshotOutput.writeLong(metadata.size());
+        metadata.writeTo(snapshotOutput);
+        writeZeros(snapshotOutput, align(HEADER_LENGTH + metadata.size(), CONTENT_ALIGNMENT)
+            - HEADER_LENGTH - metadata.size());
+
+        final byte[] buffer = new byte[64 * 1024];
+        long written = 0;
+        for (final Entry entry : entries) {
+            if (entry.type == FILE) {
+                writeZeros(snapshotOutput, entry.offset - written);
+                writeContent(entry, snapshotOutput, buffer);
+                written = entry.offset + entry.size;
+            }
+        }
+        snapshotOutput.flush();
+    }
+
+    /**
+     * Loads a snapshot into a filesystem. The content of the files is memory-mapped, so the snapshot file must not be
+     * modified while the files are in use.
+     *
+     * @param file            the snapshot file.
+     * @param fileSystem      the filesystem. It should be empty.
+     * @param contentProvider the provider that stores the mapped content of the files of the filesystem.
+     * @throws IOException if the snapshot cannot be read or is malformed or if the files cannot be written.
+     */
+    static void load(final Path file,
+                     final FileSystem fileSystem,
+                     final ContentFileSystemProvider contentProvider) throws IOException {
+        final List<Entry> entries;
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            readFully(channel, header, 0, file);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("The file " + file + " is not a snapshot.");
+            }
+            final int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("The version " + version + " of the snapshot " + file + " is not supported.");
+            }
+            final long metadataLength = header.getLong();
+            if (metadataLength < 0 || metadataLength > Math.min(Integer.MAX_VALUE, channel.size() - HEADER_LENGTH)) {
+                throw new IOException("The snapshot " + file + " is truncated.");
+            }
+
+            final ByteBuffer metadata = ByteBuffer.allocate((int) metadataLength);
+            readFully(channel, metadata, HEADER_LENGTH, file);
+            entries = readEntries(new DataInputStream(new ByteArrayInputStream(metadata.array())), file);
+
+            final long contentStart = align(HEADER_LENGTH + metadataLength, CONTENT_ALIGNMENT);
+            for (final Entry entry : entries) {
+                final Path path = fileSystem.getPath(entry.path);
+                switch (entry.type) {
+                    case DIRECTORY:
+                        Files.createDirectory(path);
+                        break;
+                    case FILE:
+                        Files.write(path, new byte[0]);
+                        if (entry.size > 0) {
+                            if (entry.offset < 0 || contentStart + entry.offset + entry.size > channel.size()) {
+                                throw new IOException("The snapshot " + file + " is truncated.");
+                            }
+                            contentProvider.attach(path,
+                                new MappedContent(channel, contentStart + entry.offset, entry.size));
+                        }
+                        break;
+                    default:
+                        Files.createSymbolicLink(path, fileSystem.getPath(entry.target));
+                        break;
+                }
+            }
+        }
+
+        // the attributes of a directory are set after its children have been created, which modifies its times
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            final Entry entry = entries.get(i);
+            if (entry.type != SYMBOLIC_LINK) {
+                entry.restoreAttributes(fileSystem.getPath(entry.path));
+            }
+        }
+    }
+
+    private static List<Entry> readEntries(final DataInputStream input, final Path file) throws IOException {
+        try {
+            final int count = input.readInt();
+            final List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(count, 1 << 16)));
+            for (int i = 0; i < count; i++) {
+                entries.add(Entry.readFrom(input, file));
+            }
+            return entries;
+        } catch (final EOFException e) {
+            throw new IOException("The snapshot " + file + " is truncated.", e);
+        }
+    }
+
+    private static void writeContent(final Entry entry,
+                                     final OutputStream output,
+                                     final byte[] buffer) throws IOException {
+        long remaining = entry.size;
+        try (InputStream input = Files.newInputStream(entry.source)) {
+            while (remaining > 0) {
+                final int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    break;
+                }
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+        // the file has been truncated since its size was read, so the snapshot keeps the size
+        writeZeros(output, remaining);
+    }
+
+    private static void writeZeros(final OutputStream output, final long count) throws IOException {
+        for (long i = 0; i < count; i++) {
+            output.write(0);
+        }
+    }
+
+    private static void readFully(final FileChannel channel,
+                                  final ByteBuffer target,
+                                  final long position,
+                                  final Path file) throws IOException {
+        long current = position;
+        while (target.hasRemaining()) {
+            final int read = channel.read(target, current);
+            if (read < 0) {
+                throw new IOException("The snapshot " + file + " is truncated.");
+            }
+            current += read;
+        }
+    }
+
+    private static long align(final long value, final int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    private static final class EntryCollector extends SimpleFileVisitor<Path> {
+
+        private final Path root;
+        private final List<Entry> entries;
+
+        EntryCollector(final Path root, final List<Entry> entries) {
+            this.root = root;
+            this.entries = entries;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+            if (!dir.equals(this.root)) {
+                this.entries.add(Entry.of(dir, DIRECTORY, attrs));
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+            final Entry entry = Entry.of(file, attrs.isSymbolicLink() ? SYMBOLIC_LINK : FILE, attrs);
+            if (entry.type == SYMBOLIC_LINK) {
+                entry.target = Files.readSymbolicLink(file).toString();
+            }
+            this.entries.add(entry);
+            return FileVisitResult.CONTINUE;
+        }
+    }
+
+    private static final class Entry {
+
+        private int type;
+        private String path;
+        private Path source;
+        private int permissions = -1;
+        private long creationTime;
+        private long lastModifiedTime;
+        private long lastAccessTime;
+        private long size;
+        private long offset;
+        private String target;
+
+        static Entry of(final Path path, final int type, final BasicFileAttributes attributes) throws IOException {
+            final Entry entry = new Entry();
+            entry.type = type;
+            entry.path = path.toString();
+            entry.source = path;
+            entry.creationTime = attributes.creationTime().to(TimeUnit.NANOSECONDS);
+            entry.lastModifiedTime = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            entry.lastAccessTime = attributes.lastAccessTime().to(TimeUnit.NANOSECONDS);
+            entry.size = type == FILE ? attributes.size() : 0;
+            if (type != SYMBOLIC_LINK) {
+                entry.permissions = readPermissions(path);
+            }
+            return entry;
+        }
+
+        static Entry readFrom(final DataInputStream input, final Path file) throws IOException {
+            final Entry entry = new Entry();
+            entry.type = input.readUnsignedByte();
+            if (entry.type != DIRECTORY && entry.type != FILE && entry.type != SYMBOLIC_LINK) {
+                throw new IOException("The snapshot " + file + " contains an entry of the unknown type "
+                    + entry.type + ".");
+            }
+            entry.path = input.readUTF();
+            entry.permissions = input.readShort();
+            entry.creationTime = input.readLong();
+            entry.lastModifiedTime = input.readLong();
+            entry.lastAccessTime = input.readLong();
+            if (entry.type == FILE) {
+                entry.size = input.readLong();
+                entry.offset = input.readLong();
+                if (entry.size < 0) {
+                    throw new IOException("The snapshot " + file + " contains a file with a negative size.");
+                }
+            } else if (entry.type == SYMBOLIC_LINK) {
+                entry.target = input.readUTF();
+            }
+            return entry;
+        }
+
+        void writeTo(final DataOutputStream output) throws IOException {
+            output.writeByte(this.type);
+            output.writeUTF(this.path);
+            output.writeShort(this.permissions);
+            output.writeLong(this.creationTime);
+            output.writeLong(this.lastModifiedTime);
+            output.writeLong(this.lastAccessTime);
+            if (this.type == FILE) {
+                output.writeLong(this.size);
+                output.writeLong(this.offset);
+            } else if (this.type == SYMBOLIC_LINK) {
+                output.writeUTF(this.target);
+            }
+        }
+
+        void restoreAttributes(final Path path) throws IOException {
+            if (this.permissions >= 0) {
+                final Set<PosixFilePermission> permissionSet = EnumSet.noneOf(PosixFilePermission.class);
+                for (final PosixFilePermission permission : PERMISSIONS) {
+                    if ((this.permissions & (1 << permission.ordinal())) != 0) {
+                        permissionSet.add(permission);
+                    }
+                }
+                Files.setPosixFilePermissions(path, permissionSet);
+            }
+            Files.getFileAttributeView(path, BasicFileAttributeView.class, NOFOLLOW_LINKS).setTimes(
+                FileTime.from(this.lastModifiedTime, TimeUnit.NANOSECONDS),
+                FileTime.from(this.lastAccessTime, TimeUnit.NANOSECONDS),
+                FileTime.from(this.creationTime, TimeUnit.NANOSECONDS));
+        }
+
+        private static int readPermissions(final Path path) throws IOException {
+            try {
+                int mask = 0;
+                for (final PosixFilePermission permission : Files.getPosixFilePermissions(path, NOFOLLOW_LINKS)) {
+                    mask |= 1 << permission.ordinal();
+                }
+                return mask;
+            } catch (final UnsupportedOperationException e) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.server.SshServer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of SFTP servers that have been started in the background and wait for a test. Tests with the lifecycle
+ * {@link ServerLifecycle#PER_TEST} lease a started server instead of starting one, so they do not wait for the server.
+ * After a lease the pool starts a replacement on a background thread while the test runs.
+ * <p>The pool keeps separate servers for every combination of {@link HostKey}, {@link ChannelExecutor} and
+ * {@link IoThreads}. The first lease of a combination starts the server itself (a cold start), because nothing has been
+ * started for it yet. Servers that are not leased within the idle timeout are stopped and only replaced by the next
+ * lease.
+ * <p>A pool is usually stored in a static field and shared by the extensions of many test classes.
+ * <pre>
+ * static final StandbyPool STANDBY_POOL = StandbyPool.ofSize(2);
+ *
+ * &#064;RegisterExtension
+ * final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension()
+ *     .setStandbyPool(STANDBY_POOL);
+ * </pre>
+ */
+@Slf4j
+public final class StandbyPool implements AutoCloseable {
+
+    /**
+     * The number of idle servers per host key, channel executor and IO threads.
+     */
+    @Getter
+    private final int size;
+
+    /**
+     * The time after which an idle server is stopped. The default is one minute.
+     */
+    @Getter
+    private Duration idleTimeout = Duration.ofMinutes(1);
+
+    /**
+     * Whether the idle servers are stopped when the JVM exits. The default is {@code true}.
+     */
+    @Getter
+    private boolean stopOnShutdown = true;
+
+    private final Map<List<Object>, Deque<StandbyServer>> idleServers = new HashMap<>();
+    private final AtomicLong warmLeases = new AtomicLong();
+    private final AtomicLong coldLeases = new AtomicLong();
+    private final AtomicLong failedStarts = new AtomicLong();
+    private final AtomicLong reapedServers = new AtomicLong();
+    private ScheduledExecutorService executor;
+    private boolean closed;
+
+    private StandbyPool(final int size) {
+        this.size = size;
+    }
+
+    /**
+     * Creates a pool that keeps a number of idle servers.
+     *
+     * @param size the number of idle servers per host key, channel executor and IO threads.
+     * @return the pool.
+     * @throws IllegalArgumentException if the size is not positive.
+     */
+    public static StandbyPool ofSize(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("The size of the pool must be positive.");
+        }
+        return new StandbyPool(size);
+    }
+
+    /**
+     * Set the time after which an idle server is stopped. Stopping idle servers releases their ports and threads
+     * when the tests that use the pool have finished.
+     *
+     * @param idleTimeout the timeout.
+     * @return the pool itself.
+     * @throws IllegalArgumentException if the timeout is not positive.
+     * @throws IllegalStateException    if a server has been leased already.
+     */
+    public synchronized StandbyPool setIdleTimeout(@NonNull final Duration idleTimeout) {
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("The idle timeout must be positive.");
+        }
+        this.verifyThatPoolIsUnused();
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    /**
+     * Set whether the idle servers are stopped when the JVM exits. Disable this if the pool is closed explicitly,
+     * e.g. by a JUnit extension of the test suite.
+     *
+     * @param stopOnShutdown {@code true} if a shutdown hook stops the idle servers.
+     * @return the pool itself.
+     * @throws IllegalStateException if a server has been leased already.
+     */
+    public synchronized StandbyPool setStopOnShutdown(final boolean stopOnShutdown) {
+        this.verifyThatPoolIsUnused();
+        this.stopOnShutdown = stopOnShutdown;
+        return this;
+    }
+
+    /**
+     * Returns how many leases have been served by an idle server.
+     *
+     * @return the report.
+     */
+    public synchronized StandbyReport getReport() {
+        final int idle = this.idleServers.values().stream().mapToInt(Deque::size).sum();
+        return new StandbyReport(this.warmLeases.get(), this.coldLeases.get(), this.failedStarts.get(),
+            this.reapedServers.get(), idle);
+    }
+
+    /**
+     * Stops all idle servers and the background thread. Leased servers are stopped by their tests. Leases after
+     * closing the pool start their server themselves.
+     */
+    @Override
+    public void close() {
+        final List<StandbyServer> serversToStop = new ArrayList<>();
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.idleServers.values().forEach(serversToStop::addAll);
+            this.idleServers.clear();
+            if (this.executor != null) {
+                this.executor.shutdownNow();
+            }
+        }
+        serversToStop.forEach(StandbyServer::stop);
+    }
+
+    /**
+     * Leases a started server to a test. If no idle server is available then a server is started by the calling
+     * thread. In both cases a replacement is started in the background.
+     *
+     * @param hostKey         the host key of the server.
+     * @param channelExecutor the executor of the SFTP channels.
+     * @param ioThreads       the IO threads of the server.
+     * @param tenant          the filesystem and the users of the test.
+     * @return the server, which has to be stopped by the test.
+     * @throws IOException if no server was idle and a server cannot be started.
+     */
+    SshServer lease(final HostKey hostKey,
+                    final ChannelExecutor channelExecutor,
+                    final IoThreads ioThreads,
+                    final StandbyServer.Tenant tenant) throws IOException {
+        final List<Object> key = List.of(hostKey, channelExecutor, ioThreads);
+        StandbyServer standbyServer;
+        synchronized (this) {
+            final Deque<StandbyServer> servers = this.idleServers.get(key);
+            standbyServer = servers != null ? servers.pollFirst() : null;
+            this.refill(key, hostKey, channelExecutor, ioThreads);
+        }
+
+        if (standbyServer != null) {
+            this.warmLeases.incrementAndGet();
+        } else {
+            this.coldLeases.incrementAndGet();
+            standbyServer = StandbyServer.start(hostKey, channelExecutor, ioThreads);
+        }
+        return standbyServer.assign(tenant);
+    }
+
+    private void refill(final List<Object> key,
+                        final HostKey hostKey,
+                        final ChannelExecutor channelExecutor,
+                        final IoThreads ioThreads) {
+        if (this.closed) {
+            return;
+        }
+        if (this.executor == null) {
+            this.startExecutor();
+        }
+        try {
+            this.executor.execute(() -> this.fill(key, hostKey, channelExecutor, ioThreads));
+        } catch (final RejectedExecutionException e) {
+            // the pool is being closed
+        }
+    }
+
+    private void fill(final List<Object> key,
+                      final HostKey hostKey,
+                      final ChannelExecutor channelExecutor,
+                      final IoThreads ioThreads) {
+        while (this.isMissingServers(key)) {
+            final StandbyServer standbyServer;
+            try {
+                standbyServer = StandbyServer.start(hostKey, channelExecutor, ioThreads);
+            } catch (final IOException | RuntimeException e) {
+                this.failedStarts.incrementAndGet();
+                log.warn("A standby SFTP server cannot be started.", e);
+                return;
+            }
+
+            synchronized (this) {
+                if (!this.closed) {
+                    this.idleServers.computeIfAbsent(key, k -> new ArrayDeque<>()).addLast(standbyServer);
+                    continue;
+                }
+            }
+            standbyServer.stop();
+            return;
+        }
+    }
+
+    private synchronized boolean isMissingServers(final List<Object> key) {
+        final Deque<StandbyServer> servers = this.idleServers.get(key);
+        return !this.closed && (servers == null || servers.size() < this.size);
+    }
+
+    private void reap() {
+        final long now = System.nanoTime();
+        final List<StandbyServer> serversToStop = new ArrayList<>();
+        synchronized (this) {
+            for (final Deque<StandbyServer> servers : this.idleServers.values()) {
+                final Iterator<StandbyServer> iterator = servers.iterator();
+                while (iterator.hasNext()) {
+                    final StandbyServer standbyServer = iterator.next();
+                    if (now - standbyServer.getIdleSince() >= this.idleTimeout.toNanos()) {
+                        iterator.remove();
+                        serversToStop.add(standbyServer);
+                    }
+                }
+            }
+        }
+        this.reapedServers.addAndGet(serversToStop.size());
+        serversToStop.forEach(StandbyServer::stop);
+    }
+
+    private void startExecutor() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "fake-sftp-standby");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long period = Math.max(this.idleTimeout.toMillis() / 2, 1);
+        this.executor.scheduleWithFixedDelay(this::reap, period, period, TimeUnit.MILLISECONDS);
+        if (this.stopOnShutdown) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close, "StandbyPool-shutdown"));
+        }
+    }
+
+    private void verifyThatPoolIsUnused() {
+        if (this.executor != null || this.closed) {
+            throw new IllegalStateException("The pool cannot be configured after it has been used.");
+        }
+    }
+}
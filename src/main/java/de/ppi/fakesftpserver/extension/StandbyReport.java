@@ -0,0 +1,46 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Locale;
+
+/**
+ * How often the leases of a {@link StandbyPool} have been served by a server that was started in advance.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class StandbyReport {
+
+    /**
+     * The number of leases that got an idle server.
+     */
+    private final long warmLeases;
+
+    /**
+     * The number of leases that had to start a server because no server was idle.
+     */
+    private final long coldLeases;
+
+    /**
+     * The number of servers that could not be started in the background.
+     */
+    private final long failedStarts;
+
+    /**
+     * The number of idle servers that have been stopped because they were not leased within the idle timeout.
+     */
+    private final long reapedServers;
+
+    /**
+     * The number of servers that are idle right now.
+     */
+    private final int idleServers;
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d warm and %d cold leases, %d idle servers, %d reaped, %d failed starts",
+            this.warmLeases, this.coldLeases, this.idleServers, this.reapedServers, this.failedStarts);
+    }
+}
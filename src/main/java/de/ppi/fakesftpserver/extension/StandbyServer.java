@@ -0,0 +1,127 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.common.session.SessionContext;
+import org.apache.sshd.server.SshServer;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.util.function.Supplier;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * An SFTP server of a {@link StandbyPool}, which is started before it is assigned to a test. All sessions are
+ * delegated to the tenant of the server. Sessions are rejected as long as the server has no tenant.
+ */
+@Slf4j
+final class StandbyServer {
+
+    @Getter
+    private final SshServer server;
+    private volatile Tenant tenant;
+
+    /**
+     * The time when the server has become idle, as returned by {@link System#nanoTime()}.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private long idleSince;
+
+    private StandbyServer(final HostKey hostKey, final ChannelExecutor channelExecutor, final IoThreads ioThreads) {
+        this.server = UnbindableSshServer.create();
+        this.server.setKeyPairProvider(hostKey.getKeyPairProvider());
+        ioThreads.configure(this.server);
+        this.server.setPasswordAuthenticator((user, pass, session) -> {
+            final Tenant currentTenant = this.tenant;
+            return currentTenant != null && currentTenant.authenticator.authenticate(user, pass, session);
+        });
+        this.server.setPublickeyAuthenticator((user, key, session) -> {
+            final Tenant currentTenant = this.tenant;
+            return currentTenant != null && currentTenant.authenticator.authenticate(user, key, session);
+        });
+        this.server.setSubsystemFactories(singletonList(new CustomSftpSubsystemFactory(channelExecutor,
+            session -> {
+                final Tenant currentTenant = this.tenant;
+                return currentTenant != null ? currentTenant.networkShaper.get() : null;
+            },
+            session -> {
+                final Tenant currentTenant = this.tenant;
+                return currentTenant != null ? currentTenant.statistics : null;
+            },
+            session -> {
+                final Tenant currentTenant = this.tenant;
+                return currentTenant != null ? currentTenant.recording.get() : null;
+            },
+            session -> {
+                final Tenant currentTenant = this.tenant;
+                return currentTenant != null ? currentTenant.activity : null;
+            })));
+        this.server.setFileSystemFactory(new VirtualFileSystemFactory() {
+            @Override
+            public FileSystem createFileSystem(final SessionContext session) throws IOException {
+                final Tenant currentTenant = StandbyServer.this.tenant;
+                if (currentTenant == null) {
+                    throw new IOException("No filesystem is available for user " + session.getUsername() + ".");
+                }
+                return currentTenant.fileSystem;
+            }
+        });
+    }
+
+    /**
+     * Starts a server on an auto-allocated port.
+     *
+     * @param hostKey         the host key of the server.
+     * @param channelExecutor the executor of the SFTP channels.
+     * @param ioThreads       the IO threads of the server.
+     * @return the started server without a tenant.
+     * @throws IOException if the server cannot be started.
+     */
+    static StandbyServer start(final HostKey hostKey, final ChannelExecutor channelExecutor, final IoThreads ioThreads)
+    throws IOException {
+        final StandbyServer standbyServer = new StandbyServer(hostKey, channelExecutor, ioThreads);
+        standbyServer.server.start();
+        standbyServer.idleSince = System.nanoTime();
+        return standbyServer;
+    }
+
+    /**
+     * Assigns the server to a test.
+     *
+     * @param newTenant the filesystem and the users of the test.
+     * @return the server.
+     */
+    SshServer assign(final Tenant newTenant) {
+        this.tenant = newTenant;
+        return this.server;
+    }
+
+    /**
+     * Stops the server immediately. Errors are logged, because idle servers are stopped in the background.
+     */
+    void stop() {
+        try {
+            this.server.stop(true);
+        } catch (final IOException e) {
+            log.warn("The standby SFTP server cannot be stopped.", e);
+        }
+    }
+
+    /**
+     * The filesystem and the users of the test that a server is assigned to.
+     */
+    @RequiredArgsConstructor
+    static final class Tenant {
+
+        private final FileSystem fileSystem;
+        private final InMemoryAuthenticator authenticator;
+        private final Supplier<NetworkShaper> networkShaper;
+        private final SftpStatistics statistics;
+        private final Supplier<TraceRecording> recording;
+        private final FileActivity activity;
+    }
+}
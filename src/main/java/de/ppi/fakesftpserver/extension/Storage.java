@@ -0,0 +1,51 @@
+package de.ppi.fakesftpserver.extension;
+
+/**
+ * Where the SFTP server stores the content of files. Directories and the attributes of files are always stored on the
+ * Java heap.
+ */
+public enum Storage {
+
+    /**
+     * The content is stored on the Java heap by the in-memory filesystem. This is the default.
+     */
+    HEAP {
+        @Override
+        FileContent createContent(final ContentStore store) {
+            return null;
+        }
+    },
+
+    /**
+     * The content is stored in direct buffers outside the Java heap, so large files do not cause garbage collection
+     * pauses. The amount of memory is limited by the JVM option {@code -XX:MaxDirectMemorySize}. Files are not
+     * limited to 16 MB like files on the heap.
+     */
+    OFF_HEAP {
+        @Override
+        FileContent createContent(final ContentStore store) {
+            return new OffHeapContent();
+        }
+    },
+
+    /**
+     * The content is stored outside the Java heap like {@link #OFF_HEAP}, but identical content is stored only once.
+     * Files that are uploaded with the same content share it until one of them is modified. This saves memory if many
+     * files have the same content, e.g. templates that are uploaded to many directories. The savings are reported by
+     * {@link FakeSftpServerExtension#getDeduplicationStatistics()}.
+     */
+    DEDUPLICATED {
+        @Override
+        FileContent createContent(final ContentStore store) {
+            return new DeduplicatedContent(store);
+        }
+    };
+
+    /**
+     * Creates empty content for a new file.
+     *
+     * @param store the store of the filesystem, which holds deduplicated content.
+     * @return the content or {@code null} if the content is stored by the in-memory filesystem.
+     */
+    abstract FileContent createContent(ContentStore store);
+}
@@ -0,0 +1,39 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.RequiredArgsConstructor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Content that is computed by a {@link ContentGenerator} whenever it is read. It takes no storage.
+ */
+@RequiredArgsConstructor
+final class SyntheticContent extends FileContent {
+
+    private final long size;
+    private final ContentGenerator generator;
+
+    @Override
+    long size() {
+        return this.size;
+    }
+
+    @Override
+    int read(final ByteBuffer target, final long position) {
+        if (position >= this.size) {
+            return -1;
+        }
+
+        final int length = (int) Math.min(target.remaining(), this.size - position);
+        final ByteBuffer window = target.duplicate();
+        window.limit(target.position() + length);
+        this.generator.generate(position, window);
+        target.position(target.position() + length);
+        return length;
+    }
+
+    @Override
+    FileContent copy() {
+        return this;
+    }
+}
@@ -0,0 +1,95 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes the servers and filesystems of finished tests in the background. The backlog is bounded: if too many
+ * resources wait for being closed then the test thread closes its resources itself. The resources that are still
+ * waiting when the JVM exits are closed by a shutdown hook.
+ */
+@Slf4j
+final class TeardownReaper {
+
+    private static final int BACKLOG = 16;
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+    private static final Object PENDING_LOCK = new Object();
+
+    // counts the resources that have not been closed yet, whether the reaper or the test thread closes them
+    private static long pendingTeardowns;
+
+    private TeardownReaper() {
+    }
+
+    /**
+     * Closes a resource in the background, or immediately if the backlog is full.
+     *
+     * @param resource the resource.
+     */
+    static void close(final AutoCloseable resource) {
+        synchronized (PENDING_LOCK) {
+            pendingTeardowns++;
+        }
+        EXECUTOR.execute(() -> {
+            try {
+                resource.close();
+            } catch (final Exception e) {
+                log.warn("A resource of a finished test cannot be closed.", e);
+            } finally {
+                synchronized (PENDING_LOCK) {
+                    pendingTeardowns--;
+                    PENDING_LOCK.notifyAll();
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits until all resources that have been handed to the reaper are closed, including those that are handed to it
+     * while waiting.
+     *
+     * @param timeout the maximum time to wait.
+     * @return {@code true} if all resources are closed, {@code false} if the timeout has elapsed before.
+     * @throws InterruptedException if the thread has been interrupted while waiting.
+     */
+    static boolean awaitPendingTeardowns(final Duration timeout) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (PENDING_LOCK) {
+            while (pendingTeardowns > 0) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(PENDING_LOCK, remaining);
+            }
+            return true;
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(BACKLOG), runnable -> {
+                final Thread thread = new Thread(runnable, "fake-sftp-teardown");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> drain(executor), "TeardownReaper-shutdown"));
+        return executor;
+    }
+
+    private static void drain(final ThreadPoolExecutor executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("The resources of finished tests have not been closed within {}.", SHUTDOWN_TIMEOUT);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
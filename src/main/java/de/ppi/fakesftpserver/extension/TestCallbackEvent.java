@@ -0,0 +1,54 @@
+package de.ppi.fakesftpserver.extension;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * JFR event of a callback of the extension before or after a test.
+ */
+@Name("de.ppi.fakesftpserver.TestCallback")
+@Label("Test Callback")
+@Description("The work of the extension before or after a test")
+@Category("Fake SFTP Server")
+class TestCallbackEvent extends Event {
+
+    @Label("Callback")
+    String callback;
+
+    @Label("Test")
+    String test;
+
+    @Label("Lifecycle")
+    String lifecycle;
+
+    /**
+     * Creates an event and starts its timing.
+     *
+     * @return the event.
+     */
+    static TestCallbackEvent start() {
+        final TestCallbackEvent event = new TestCallbackEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the timing and commits the event if it is recorded.
+     *
+     * @param callback         the callback, e.g. {@code beforeEach}.
+     * @param extensionContext the context of the test or {@code null}.
+     * @param lifecycle        the lifecycle of the server.
+     */
+    void finish(final String callback, final ExtensionContext extensionContext, final ServerLifecycle lifecycle) {
+        if (this.shouldCommit()) {
+            this.callback = callback;
+            this.test = extensionContext != null ? extensionContext.getUniqueId() : null;
+            this.lifecycle = lifecycle.name();
+            this.commit();
+        }
+    }
+}
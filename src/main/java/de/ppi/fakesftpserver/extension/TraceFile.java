@@ -0,0 +1,178 @@
+package de.ppi.fakesftpserver.extension;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The format of the files of a {@link TraceRecording}.
+ * <p>A file starts with a magic number and a version, followed by entries. A channel entry assigns a channel to a
+ * session. A request entry contains the fields of a {@link TraceRecord}; a bit mask tells which optional fields are
+ * present. Numbers are written as variable-length integers, so most requests take less than 20 bytes plus their paths.
+ */
+final class TraceFile {
+
+    private static final int MAGIC = 0x53465452;
+    private static final int VERSION = 1;
+
+    private static final int CHANNEL = 1;
+    private static final int REQUEST = 2;
+
+    private static final int HAS_PATH = 1;
+    private static final int HAS_TARGET = 1 << 1;
+    private static final int HAS_HANDLE = 1 << 2;
+    private static final int HAS_RANGE = 1 << 3;
+    private static final int HAS_FLAGS = 1 << 4;
+
+    private TraceFile() {
+    }
+
+    static void writeHeader(final DataOutput output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+    }
+
+    static void writeChannel(final DataOutput output, final int channel, final int session) throws IOException {
+        output.writeByte(CHANNEL);
+        writeVarLong(output, channel);
+        writeVarLong(output, session);
+    }
+
+    static void writeRequest(final DataOutput output, final TraceRecord record) throws IOException {
+        final int mask = (record.path != null ? HAS_PATH : 0)
+            | (record.target != null ? HAS_TARGET : 0)
+            | (record.handle >= 0 ? HAS_HANDLE : 0)
+            | (record.length != 0 || record.offset != 0 ? HAS_RANGE : 0)
+            | (record.flags != 0 ? HAS_FLAGS : 0);
+        output.writeByte(REQUEST);
+        writeVarLong(output, record.time);
+        writeVarLong(output, record.channel);
+        output.writeByte(record.type);
+        writeVarLong(output, record.nanos);
+        output.writeByte(mask);
+        if (record.path != null) {
+            writeString(output, record.path);
+        }
+        if (record.target != null) {
+            writeString(output, record.target);
+        }
+        if (record.handle >= 0) {
+            writeVarLong(output, record.handle);
+        }
+        if ((mask & HAS_RANGE) != 0) {
+            writeVarLong(output, record.offset);
+            writeVarLong(output, Integer.toUnsignedLong(record.length));
+        }
+        if (record.flags != 0) {
+            writeVarLong(output, Integer.toUnsignedLong(record.flags));
+        }
+    }
+
+    /**
+     * Reads the requests of a trace file.
+     *
+     * @param file the file.
+     * @return the requests in the order of the file, which is the order in which their responses were ready.
+     * @throws IOException if the file cannot be read or is not a trace file.
+     */
+    static List<TraceRecord> read(final Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file);
+             DataInputStream input = new DataInputStream(new BufferedInputStream(in))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("The file " + file + " is not a trace of SFTP requests.");
+            }
+            final int version = input.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("The version " + version + " of the trace " + file + " is not supported.");
+            }
+
+            final Map<Integer, Integer> sessionsByChannel = new HashMap<>();
+            final List<TraceRecord> records = new ArrayList<>();
+            int kind;
+            while ((kind = input.read()) >= 0) {
+                if (kind == CHANNEL) {
+                    sessionsByChannel.put((int) readVarLong(input), (int) readVarLong(input));
+                } else if (kind == REQUEST) {
+                    final TraceRecord record = readRequest(input);
+                    record.session = sessionsByChannel.getOrDefault(record.channel, 0);
+                    records.add(record);
+                } else {
+                    throw new IOException("The trace " + file + " is corrupt.");
+                }
+            }
+            return records;
+        } catch (final EOFException e) {
+            throw new IOException("The trace " + file + " is truncated.", e);
+        }
+    }
+
+    private static TraceRecord readRequest(final DataInput input) throws IOException {
+        final TraceRecord record = new TraceRecord();
+        record.time = readVarLong(input);
+        record.channel = (int) readVarLong(input);
+        record.type = input.readUnsignedByte();
+        record.nanos = readVarLong(input);
+        final int mask = input.readUnsignedByte();
+        if ((mask & HAS_PATH) != 0) {
+            record.path = readString(input);
+        }
+        if ((mask & HAS_TARGET) != 0) {
+            record.target = readString(input);
+        }
+        if ((mask & HAS_HANDLE) != 0) {
+            record.handle = (int) readVarLong(input);
+        }
+        if ((mask & HAS_RANGE) != 0) {
+            record.offset = readVarLong(input);
+            record.length = (int) readVarLong(input);
+        }
+        if ((mask & HAS_FLAGS) != 0) {
+            record.flags = (int) readVarLong(input);
+        }
+        return record;
+    }
+
+    private static void writeString(final DataOutput output, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final DataInput input) throws IOException {
+        final byte[] bytes = new byte[(int) readVarLong(input)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarLong(final DataOutput output, final long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            output.writeByte((int) (remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        output.writeByte((int) remaining);
+    }
+
+    private static long readVarLong(final DataInput input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            final int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("A number of the trace is too long.");
+    }
+}
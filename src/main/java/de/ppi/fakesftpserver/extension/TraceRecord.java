@@ -0,0 +1,107 @@
+package de.ppi.fakesftpserver.extension;
+
+import org.apache.sshd.sftp.common.SftpConstants;
+
+/**
+ * A request in a trace of SFTP requests. The fields that a request does not have keep their default values.
+ */
+final class TraceRecord {
+
+    /**
+     * The time of the arrival of the request since the start of the recording in nanoseconds.
+     */
+    long time;
+
+    /**
+     * The number of the session in the trace.
+     */
+    int session;
+
+    /**
+     * The number of the channel in the trace.
+     */
+    int channel;
+
+    /**
+     * The type of the request in the SFTP protocol.
+     */
+    int type;
+
+    /**
+     * The time from taking the request until its response was ready in nanoseconds.
+     */
+    long nanos;
+
+    /**
+     * The path of a request that has a path.
+     */
+    String path;
+
+    /**
+     * The second path of a rename or link request.
+     */
+    String target;
+
+    /**
+     * The number of the handle that a request opens or uses, or {@code -1}. The numbers are unique per channel.
+     */
+    int handle = -1;
+
+    /**
+     * The offset of a read or write request.
+     */
+    long offset;
+
+    /**
+     * The number of bytes of a read or write request.
+     */
+    int length;
+
+    /**
+     * The flags of an open request as in version 3 of the SFTP protocol ({@code SSH_FXF_READ}, ...).
+     */
+    int flags;
+
+    SftpOperation getOperation() {
+        return SftpOperation.of(this.type);
+    }
+
+    /**
+     * Converts the flags of an open request to the flags of version 3 of the SFTP protocol, so the trace does not
+     * depend on the version that the client has negotiated. The subsystem passes the flags of every version in the
+     * form of version 5.
+     *
+     * @param pflags the flags of the request.
+     * @param access the desired access of the request.
+     * @return the flags of version 3.
+     */
+    static int toVersion3Flags(final int pflags, final int access) {
+        int flags = 0;
+        if ((access & SftpConstants.ACE4_READ_DATA) != 0) {
+            flags |= SftpConstants.SSH_FXF_READ;
+        }
+        if ((access & (SftpConstants.ACE4_WRITE_DATA | SftpConstants.ACE4_APPEND_DATA)) != 0) {
+            flags |= SftpConstants.SSH_FXF_WRITE;
+        }
+        if ((pflags & SftpConstants.SSH_FXF_APPEND_DATA) != 0) {
+            flags |= SftpConstants.SSH_FXF_APPEND;
+        }
+        switch (pflags & SftpConstants.SSH_FXF_ACCESS_DISPOSITION) {
+            case SftpConstants.SSH_FXF_CREATE_NEW:
+                flags |= SftpConstants.SSH_FXF_CREAT | SftpConstants.SSH_FXF_EXCL;
+                break;
+            case SftpConstants.SSH_FXF_CREATE_TRUNCATE:
+                flags |= SftpConstants.SSH_FXF_CREAT | SftpConstants.SSH_FXF_TRUNC;
+                break;
+            case SftpConstants.SSH_FXF_OPEN_OR_CREATE:
+                flags |= SftpConstants.SSH_FXF_CREAT;
+                break;
+            case SftpConstants.SSH_FXF_TRUNCATE_EXISTING:
+                flags |= SftpConstants.SSH_FXF_TRUNC;
+                break;
+            default:
+                break;
+        }
+        return flags;
+    }
+}
@@ -0,0 +1,130 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.common.AttributeRepository.AttributeKey;
+import org.apache.sshd.server.session.ServerSession;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A recording of the SFTP requests that clients send to the server (see
+ * {@link FakeSftpServerExtension#startRecording(Path)}). The recording writes the operation, the path, the offset and
+ * the length of every request and the time of its arrival to a compact trace file, which a {@link TraceReplayer} can
+ * send to a server again. The content of the files is not recorded.
+ * <p>The recording is finished when it is closed or at the end of the test.
+ */
+@Slf4j
+public final class TraceRecording implements Closeable {
+
+    private final AttributeKey<Integer> sessionNumberKey = new AttributeKey<>();
+    private final long start = System.nanoTime();
+
+    /**
+     * The trace file.
+     */
+    @Getter
+    private final Path file;
+
+    private final DataOutputStream output;
+    private int sessions;
+    private int channels;
+    private long requests;
+    private boolean closed;
+    private IOException failure;
+
+    TraceRecording(final Path file) throws IOException {
+        this.file = file;
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        TraceFile.writeHeader(this.output);
+    }
+
+    /**
+     * Returns the number of requests that have been recorded.
+     *
+     * @return the number of requests.
+     */
+    public synchronized long getRequestCount() {
+        return this.requests;
+    }
+
+    /**
+     * Finishes the recording and closes the trace file. Requests that are processed afterwards are not recorded.
+     *
+     * @throws IOException if the trace cannot be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.output.close();
+        } catch (final IOException e) {
+            if (this.failure == null) {
+                this.failure = e;
+            }
+        }
+        if (this.failure != null) {
+            throw this.failure;
+        }
+    }
+
+    synchronized boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Returns the time since the start of the recording.
+     *
+     * @param nanoTime a time of {@link System#nanoTime()}.
+     * @return the time since the start in nanoseconds.
+     */
+    long timeOf(final long nanoTime) {
+        return nanoTime - this.start;
+    }
+
+    /**
+     * Adds a channel to the recording.
+     *
+     * @param session the session of the channel.
+     * @return the number of the channel.
+     */
+    synchronized int addChannel(final ServerSession session) {
+        final int sessionNumber = session.computeAttributeIfAbsent(this.sessionNumberKey, key -> this.sessions++);
+        final int channel = this.channels++;
+        this.write(output -> TraceFile.writeChannel(output, channel, sessionNumber));
+        return channel;
+    }
+
+    synchronized void record(final TraceRecord record) {
+        if (this.write(output -> TraceFile.writeRequest(output, record))) {
+            this.requests++;
+        }
+    }
+
+    private boolean write(final Writer writer) {
+        if (this.closed || this.failure != null) {
+            return false;
+        }
+        try {
+            writer.write(this.output);
+            return true;
+        } catch (final IOException e) {
+            log.warn("The trace {} cannot be written. The recording is stopped.", this.file, e);
+            this.failure = e;
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream output) throws IOException;
+    }
+}
@@ -0,0 +1,302 @@
+package de.ppi.fakesftpserver.extension;
+
+import lombok.NonNull;
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.common.util.threads.CloseableExecutorService;
+import org.apache.sshd.common.util.threads.ThreadUtils;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.SftpClient.OpenMode;
+import org.apache.sshd.sftp.client.SftpClientFactory;
+import org.apache.sshd.sftp.common.SftpConstants;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the requests of a {@link TraceRecording} to the server of an extension again and compares the timing of the
+ * replay with the recording, e.g. for detecting performance regressions of a client between two builds.
+ * <pre>
+ * ReplayReport report = TraceReplayer.forServer(sftpServer)
+ *     .setSpeed(10)
+ *     .replay(Paths.get("client.trace"));
+ * System.out.println(report);
+ * </pre>
+ * <p>Every recorded session and channel is opened again, and every channel sends its requests in its own thread at
+ * the recorded times, divided by the speed. A channel waits for the response of a request before it sends the next
+ * request, so requests that the recorded client has pipelined are sent one after the other. The written data differs
+ * from the recorded data because the trace does not contain the content of the files.
+ */
+public final class TraceReplayer {
+
+    private final FakeSftpServerExtension extension;
+    private final SftpClientConnector connector;
+    private double speed = 1;
+
+    private TraceReplayer(final FakeSftpServerExtension extension) {
+        this.extension = extension;
+        this.connector = new SftpClientConnector(extension, "localhost", 0);
+    }
+
+    /**
+     * Creates a replayer for the server of an extension. The port and, if the server is shared, the username are
+     * taken from the extension when the trace is replayed, so it has to be replayed within a test.
+     *
+     * @param extension the extension.
+     * @return the replayer.
+     */
+    public static TraceReplayer forServer(@NonNull final FakeSftpServerExtension extension) {
+        return new TraceReplayer(extension);
+    }
+
+    /**
+     * Sets the credentials of the sessions. By default, the replayer logs in as {@code user} (or with the lease
+     * username of a shared server) and the password {@code password}.
+     *
+     * @param username the username.
+     * @param password the password.
+     * @return the replayer itself.
+     */
+    public TraceReplayer setCredentials(@NonNull final String username, @NonNull final String password) {
+        this.connector.setCredentials(username, password);
+        return this;
+    }
+
+    /**
+     * Sets the factor by which the replay is faster than the recording. The default is 1, i.e. the requests are sent
+     * at the recorded times. With {@link Double#POSITIVE_INFINITY} every channel sends its requests as fast as
+     * possible.
+     *
+     * @param speed the speed.
+     * @return the replayer itself.
+     * @throws IllegalArgumentException if the speed is not positive.
+     */
+    public TraceReplayer setSpeed(final double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("The speed must be positive.");
+        }
+        this.speed = speed;
+        return this;
+    }
+
+    /**
+     * Replays a trace. The statistics of the extension are reset before the replay.
+     *
+     * @param trace the trace file.
+     * @return the comparison of the replay with the recording.
+     * @throws IOException          if the trace cannot be read or if a session or channel cannot be opened.
+     * @throws InterruptedException if the thread is interrupted while waiting for the channels.
+     */
+    public ReplayReport replay(@NonNull final Path trace) throws IOException, InterruptedException {
+        final List<TraceRecord> records = TraceFile.read(trace);
+        records.sort(Comparator.comparingLong(record -> record.time));
+        final ReplayReport report = new ReplayReport(this.speed, this.extension.getStatistics());
+        final Map<Integer, List<TraceRecord>> recordsByChannel = new LinkedHashMap<>();
+        long end = 0;
+        for (final TraceRecord record : records) {
+            report.recordRecorded(record);
+            recordsByChannel.computeIfAbsent(record.channel, key -> new ArrayList<>()).add(record);
+            end = Math.max(end, record.time + record.nanos);
+        }
+        if (records.isEmpty()) {
+            return report;
+        }
+        final long origin = records.get(0).time;
+        report.setRecordedDuration(Duration.ofNanos(end - origin));
+
+        try (SshClient client = SftpClientConnector.startClient()) {
+            final Map<Integer, ClientSession> sessions = new HashMap<>();
+            final List<Worker> workers = new ArrayList<>();
+            for (final List<TraceRecord> recordsOfChannel : recordsByChannel.values()) {
+                final int session = recordsOfChannel.get(0).session;
+                ClientSession clientSession = sessions.get(session);
+                if (clientSession == null) {
+                    clientSession = this.connector.connect(client);
+                    sessions.put(session, clientSession);
+                }
+                workers.add(new Worker(SftpClientFactory.instance().createSftpClient(clientSession),
+                    recordsOfChannel, report, origin));
+            }
+
+            this.extension.getStatistics().reset();
+            final CloseableExecutorService executor = ThreadUtils.newFixedThreadPool("fake-sftp-replay", workers.size());
+            try {
+                final long start = System.nanoTime();
+                final List<Future<?>> futures = new ArrayList<>();
+                for (final Worker worker : workers) {
+                    futures.add(executor.submit(() -> worker.run(start)));
+                }
+                for (final Future<?> future : futures) {
+                    awaitWorker(future);
+                }
+                report.setReplayedDuration(Duration.ofNanos(System.nanoTime() - start));
+            } finally {
+                executor.shutdownNow();
+                for (final Worker worker : workers) {
+                    worker.channel.close();
+                }
+            }
+        }
+        return report;
+    }
+
+    private static void awaitWorker(final Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
+    private static Set<OpenMode> toOpenModes(final int flags) {
+        final Set<OpenMode> modes = EnumSet.noneOf(OpenMode.class);
+        if ((flags & SftpConstants.SSH_FXF_READ) != 0) {
+            modes.add(OpenMode.Read);
+        }
+        if ((flags & SftpConstants.SSH_FXF_WRITE) != 0) {
+            modes.add(OpenMode.Write);
+        }
+        if ((flags & SftpConstants.SSH_FXF_APPEND) != 0) {
+            modes.add(OpenMode.Append);
+        }
+        if ((flags & SftpConstants.SSH_FXF_CREAT) != 0) {
+            modes.add(OpenMode.Create);
+        }
+        if ((flags & SftpConstants.SSH_FXF_TRUNC) != 0) {
+            modes.add(OpenMode.Truncate);
+        }
+        if ((flags & SftpConstants.SSH_FXF_EXCL) != 0) {
+            modes.add(OpenMode.Exclusive);
+        }
+        return modes;
+    }
+
+    /**
+     * Sends the requests of a recorded channel.
+     */
+    private final class Worker {
+
+        private final SftpClient channel;
+        private final List<TraceRecord> records;
+        private final ReplayReport report;
+        private final long origin;
+        private final Map<Integer, SftpClient.Handle> handles = new HashMap<>();
+        private byte[] buffer = new byte[0];
+
+        Worker(final SftpClient channel, final List<TraceRecord> records, final ReplayReport report, final long origin) {
+            this.channel = channel;
+            this.records = records;
+            this.report = report;
+            this.origin = origin;
+        }
+
+        void run(final long start) {
+            for (final TraceRecord record : this.records) {
+                final long delay = start + (long) ((record.time - this.origin) / TraceReplayer.this.speed)
+                    - System.nanoTime();
+                if (delay > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+
+                final SftpOperation operation = record.getOperation();
+                try {
+                    if (this.send(record)) {
+                        this.report.recordReplayed(operation);
+                    } else {
+                        this.report.recordSkipped();
+                    }
+                } catch (final IOException e) {
+                    this.report.recordError(operation);
+                }
+            }
+        }
+
+        private boolean send(final TraceRecord record) throws IOException {
+            switch (record.getOperation()) {
+                case OPEN:
+                    this.handles.put(record.handle, this.channel.open(record.path, toOpenModes(record.flags)));
+                    return true;
+                case OPENDIR:
+                    this.handles.put(record.handle, this.channel.openDir(record.path));
+                    return true;
+                case CLOSE:
+                    this.channel.close(this.handle(record));
+                    this.handles.remove(record.handle);
+                    return true;
+                case READ:
+                    this.channel.read(this.handle(record), record.offset, this.buffer(record.length), 0,
+                        record.length);
+                    return true;
+                case WRITE:
+                    this.channel.write(this.handle(record), record.offset, this.buffer(record.length), 0,
+                        record.length);
+                    return true;
+                case READDIR:
+                    this.channel.readDir(this.handle(record));
+                    return true;
+                case FSTAT:
+                    this.channel.stat(this.handle(record));
+                    return true;
+                case STAT:
+                    this.channel.stat(record.path);
+                    return true;
+                case LSTAT:
+                    this.channel.lstat(record.path);
+                    return true;
+                case REALPATH:
+                    this.channel.canonicalPath(record.path);
+                    return true;
+                case MKDIR:
+                    this.channel.mkdir(record.path);
+                    return true;
+                case RMDIR:
+                    this.channel.rmdir(record.path);
+                    return true;
+                case REMOVE:
+                    this.channel.remove(record.path);
+                    return true;
+                case RENAME:
+                    this.channel.rename(record.path, record.target);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private SftpClient.Handle handle(final TraceRecord record) throws IOException {
+            final SftpClient.Handle handle = this.handles.get(record.handle);
+            if (handle == null) {
+                throw new IOException("The handle " + record.handle + " has not been opened.");
+            }
+            return handle;
+        }
+
+        private byte[] buffer(final int length) {
+            if (this.buffer.length < length) {
+                this.buffer = new byte[length];
+            }
+            return this.buffer;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.ppi.fakesftpserver.extension;
+
+import org.apache.sshd.common.io.IoAcceptor;
+import org.apache.sshd.server.ServerBuilder;
+import org.apache.sshd.server.SshServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * SshServer, whose port can be released before the server is stopped or moved while the server is running. Stopping
+ * a server closes all sessions, which takes much longer than releasing its port.
+ */
+class UnbindableSshServer extends SshServer {
+
+    /**
+     * Creates a server with the default configuration of {@link SshServer#setUpDefaultServer()}.
+     *
+     * @return the server.
+     */
+    static UnbindableSshServer create() {
+        return (UnbindableSshServer) ServerBuilder.builder().factory(UnbindableSshServer::new).build();
+    }
+
+    /**
+     * Stops accepting connections and releases the port. Sessions that have been accepted before are kept until the
+     * server is stopped.
+     */
+    void unbind() {
+        final IoAcceptor currentAcceptor = this.acceptor;
+        if (currentAcceptor != null) {
+            currentAcceptor.unbind();
+        }
+    }
+
+    /**
+     * Moves a running server to another port. The old port is released only after the server listens on the new port,
+     * so the server keeps its old port if the new port cannot be bound. Sessions that have been accepted before are
+     * kept.
+     *
+     * @param newPort the new port.
+     * @throws IOException           if the new port cannot be bound.
+     * @throws IllegalStateException if the server has not been started.
+     */
+    void rebind(final int newPort) throws IOException {
+        final IoAcceptor currentAcceptor = this.acceptor;
+        if (currentAcceptor == null) {
+            throw new IllegalStateException("The SFTP server has not been started.");
+        }
+        if (newPort == this.getPort()) {
+            return;
+        }
+
+        final Set<SocketAddress> oldAddresses = new HashSet<>(currentAcceptor.getBoundAddresses());
+        currentAcceptor.bind(new InetSocketAddress(newPort));
+        currentAcceptor.unbind(oldAddresses);
+        this.setPort(newPort);
+    }
+}
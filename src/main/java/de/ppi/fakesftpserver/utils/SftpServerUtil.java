@@ -2,14 +2,21 @@ package de.ppi.fakesftpserver.utils;
 
 import lombok.SneakyThrows;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 /**
  * Util-Methods for the Sftp-Fake-Server
  */
 public final class SftpServerUtil {
 
+    private static final int CHUNK_SIZE = 64 * 1024;
+
     private SftpServerUtil() {
         throw new UnsupportedOperationException("Util-Class can't be instantiated");
     }
@@ -26,4 +33,64 @@ public final class SftpServerUtil {
             Files.createDirectories(directory);
         }
     }
+
+    /**
+     * Compares the content of a file with the content of a stream. Both are read in chunks, so that neither is
+     * loaded into memory completely.
+     *
+     * @param path     the file.
+     * @param expected the expected content. It is read but not closed.
+     * @return {@code true} iff the file has exactly the content of the stream.
+     * @throws IOException if the file or the stream cannot be read.
+     */
+    public static boolean contentEquals(final Path path, final InputStream expected) throws IOException {
+        final byte[] actualChunk = new byte[CHUNK_SIZE];
+        final byte[] expectedChunk = new byte[CHUNK_SIZE];
+        try (InputStream actual = Files.newInputStream(path)) {
+            while (true) {
+                final int actualLength = actual.readNBytes(actualChunk, 0, CHUNK_SIZE);
+                final int expectedLength = expected.readNBytes(expectedChunk, 0, CHUNK_SIZE);
+                if (!Arrays.equals(actualChunk, 0, actualLength, expectedChunk, 0, expectedLength)) {
+                    return false;
+                }
+                if (actualLength < CHUNK_SIZE) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the SHA-256 hash of a file. The file is read in chunks, so that it is not loaded into memory
+     * completely.
+     *
+     * @param path the file.
+     * @return the hash as lower case hexadecimal string.
+     * @throws IOException if the file cannot be read.
+     */
+    public static String sha256(final Path path) throws IOException {
+        final MessageDigest digest = createSha256Digest();
+        final byte[] chunk = new byte[CHUNK_SIZE];
+        try (InputStream is = Files.newInputStream(path)) {
+            int length;
+            while ((length = is.read(chunk)) != -1) {
+                digest.update(chunk, 0, length);
+            }
+        }
+
+        final StringBuilder hash = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            hash.append(String.format("%02x", b));
+        }
+        return hash.toString();
+    }
+
+    private static MessageDigest createSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform has to support SHA-256
+            throw new IllegalStateException("SHA-256 is not supported.", e);
+        }
+    }
 }
@@ -100,8 +100,22 @@ final class AssertionHelperUtil {
         session.disconnect();
     }
 
+    static Session connectToServerAs(final FakeSftpServerExtension sftpServer,
+                                     final String username) throws JSchException {
+        final Session session = createSessionWithCredentials(username, FakeSftpServerExtensionTest.DUMMY_PASSWORD,
+            sftpServer.getPort());
+        session.connect(FakeSftpServerExtensionTest.TIMEOUT);
+        return session;
+    }
+
     private static Session createSessionWithCredentials(final String password, final int port) throws JSchException {
-        final Session session = JSCH.getSession(FakeSftpServerExtensionTest.DUMMY_USER, "127.0.0.1", port);
+        return createSessionWithCredentials(FakeSftpServerExtensionTest.DUMMY_USER, password, port);
+    }
+
+    private static Session createSessionWithCredentials(final String username,
+                                                        final String password,
+                                                        final int port) throws JSchException {
+        final Session session = JSCH.getSession(username, "127.0.0.1", port);
         session.setConfig("StrictHostKeyChecking", "no");
         session.setPassword(password);
         return session;
@@ -0,0 +1,94 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncTeardownTest {
+
+    private static final int PORT = 8397;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    void the_port_is_released_at_the_end_of_the_test() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension().setAsyncTeardown(true).setManualPort(PORT)) {
+            for (int i = 0; i < 3; i++) {
+                sftpServer.beforeEach(null);
+                sftpServer.putFile("/file.txt", "content " + i, UTF_8);
+                final Session session = AssertionHelperUtil.connectToServerAtPort(PORT);
+                final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+                assertThat(channel.stat("/file.txt").getSize()).isEqualTo(9);
+                channel.disconnect();
+                session.disconnect();
+                sftpServer.afterEach(null);
+
+                AssertionHelperUtil.assertConnectionToSftpServerNotPossible(PORT);
+            }
+        }
+    }
+
+    @Test
+    void the_sessions_of_a_finished_test_are_closed_in_the_background() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension().setAsyncTeardown(true)) {
+            sftpServer.beforeEach(null);
+            final Session session = AssertionHelperUtil.connectToServer(sftpServer);
+            final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+
+            sftpServer.afterEach(null);
+            assertThat(TeardownReaper.awaitPendingTeardowns(TIMEOUT)).isTrue();
+
+            final long deadline = System.nanoTime() + TIMEOUT.toNanos();
+            while (channel.isConnected() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(channel.isConnected()).isFalse();
+            session.disconnect();
+        }
+    }
+
+    @Test
+    void the_filesystem_is_closed_in_the_background() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension().setAsyncTeardown(true).setStorage(Storage.OFF_HEAP)) {
+            sftpServer.beforeEach(null);
+            sftpServer.putFile("/file.txt", "content", UTF_8);
+            sftpServer.afterEach(null);
+            assertThat(TeardownReaper.awaitPendingTeardowns(TIMEOUT)).isTrue();
+
+            sftpServer.beforeEach(null);
+            assertThat(sftpServer.existsFile("/file.txt")).isFalse();
+            sftpServer.afterEach(null);
+        }
+    }
+
+    @Test
+    void pending_teardowns_are_awaited_when_the_backlog_is_full() throws Exception {
+        final AtomicInteger closedResources = new AtomicInteger();
+        for (int i = 0; i < 40; i++) {
+            TeardownReaper.close(() -> {
+                Thread.sleep(5);
+                closedResources.incrementAndGet();
+            });
+        }
+
+        assertThat(TeardownReaper.awaitPendingTeardowns(TIMEOUT)).isTrue();
+        assertThat(closedResources).hasValue(40);
+    }
+
+    @Test
+    void the_teardown_cannot_be_changed_within_a_test() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension()) {
+            sftpServer.beforeEach(null);
+
+            assertThatThrownBy(() -> sftpServer.setAsyncTeardown(true))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("The teardown cannot be changed while the filesystem is in use.");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AwaitFileTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @RegisterExtension
+    private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension();
+
+    @Test
+    void awaiting_a_file_returns_when_its_upload_has_been_completed() throws Exception {
+        final CountDownLatch firstPartWritten = new CountDownLatch(1);
+        final CountDownLatch uploadMayFinish = new CountDownLatch(1);
+        final CompletableFuture<Void> upload = CompletableFuture.runAsync(() -> {
+            try {
+                final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+                final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+                try (OutputStream os = channel.put("/file.txt")) {
+                    os.write("first part, ".getBytes(UTF_8));
+                    os.flush();
+                    firstPartWritten.countDown();
+                    uploadMayFinish.await();
+                    os.write("second part".getBytes(UTF_8));
+                }
+                channel.disconnect();
+                session.disconnect();
+            } catch (final Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        firstPartWritten.await();
+        assertThat(this.sftpServer.awaitFile("/file.txt", Duration.ofMillis(100))).isFalse();
+        uploadMayFinish.countDown();
+
+        assertThat(this.sftpServer.awaitFile("/file.txt", TIMEOUT)).isTrue();
+        assertThat(this.sftpServer.getFileContent("/file.txt", UTF_8)).isEqualTo("first part, second part");
+        upload.get();
+    }
+
+    @Test
+    void awaiting_a_file_returns_when_a_file_has_been_renamed_to_it() throws Exception {
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.put(new ByteArrayInputStream("content".getBytes(UTF_8)), "/file.tmp");
+        final CompletableFuture<Boolean> awaited = CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.sftpServer.awaitFile("/file.txt", TIMEOUT);
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        channel.rename("/file.tmp", "/file.txt");
+
+        assertThat(awaited.get()).isTrue();
+        channel.disconnect();
+        session.disconnect();
+    }
+
+    @Test
+    void awaiting_a_file_that_exists_returns_immediately() throws Exception {
+        this.sftpServer.putFile("/directory/file.txt", "content", UTF_8);
+
+        assertThat(this.sftpServer.awaitFile("/directory/../directory/file.txt", Duration.ZERO)).isTrue();
+        assertThat(this.sftpServer.awaitFile("/directory", Duration.ZERO)).isFalse();
+    }
+
+    @Test
+    void awaiting_quiescence_returns_when_all_handles_have_been_closed() throws Exception {
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        final OutputStream os = channel.put("/file.txt");
+        os.write("content".getBytes(UTF_8));
+        os.flush();
+
+        assertThat(this.sftpServer.awaitQuiescence(Duration.ofMillis(100))).isFalse();
+        os.close();
+
+        assertThat(this.sftpServer.awaitQuiescence(TIMEOUT)).isTrue();
+        channel.disconnect();
+        session.disconnect();
+    }
+
+    @Test
+    void the_handles_of_a_closed_channel_are_closed() throws Exception {
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        final OutputStream os = channel.put("/file.txt");
+        os.write("content".getBytes(UTF_8));
+        os.flush();
+
+        session.disconnect();
+
+        assertThat(this.sftpServer.awaitQuiescence(TIMEOUT)).isTrue();
+        assertThat(this.sftpServer.awaitFile("/file.txt", TIMEOUT)).isTrue();
+    }
+
+    @Test
+    void a_file_cannot_be_awaited_outside_of_a_test() {
+        final FakeSftpServerExtension extension = new FakeSftpServerExtension();
+
+        assertThatThrownBy(() -> extension.awaitFile("/file.txt", TIMEOUT))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Failed to wait for file because test has not been started or is already finished.");
+    }
+}
@@ -0,0 +1,154 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BaseLayerTest {
+
+    private static final AtomicInteger LOAD_COUNT = new AtomicInteger();
+
+    private static final BaseLayer FIXTURE = BaseLayer.of("BaseLayerTest", fileSystem -> {
+        LOAD_COUNT.incrementAndGet();
+        Files.createDirectories(fileSystem.getPath("/fixture/sub"));
+        Files.write(fileSystem.getPath("/fixture/a.txt"), "content of a".getBytes(UTF_8));
+        Files.write(fileSystem.getPath("/fixture/sub/b.txt"), "content of b".getBytes(UTF_8));
+    });
+
+    @RegisterExtension
+    private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension()
+        .setBaseLayer(FIXTURE);
+
+    @Test
+    void files_of_the_base_layer_can_be_downloaded() throws Exception {
+        assertThat(AssertionHelperUtil.downloadFile(this.sftpServer, "/fixture/a.txt"))
+            .isEqualTo("content of a".getBytes(UTF_8));
+        assertThat(this.sftpServer.getFileContent("/fixture/sub/b.txt", UTF_8)).isEqualTo("content of b");
+    }
+
+    @Test
+    void a_base_layer_is_loaded_only_once() {
+        final BaseLayer sameLayer = BaseLayer.of("BaseLayerTest", fileSystem -> LOAD_COUNT.incrementAndGet());
+
+        assertThat(sameLayer).isSameAs(FIXTURE);
+        assertThat(LOAD_COUNT).hasValue(1);
+    }
+
+    @Test
+    void modifications_do_not_change_the_base_layer() throws Exception {
+        this.sftpServer.putFile("/fixture/a.txt", "modified content", UTF_8);
+        this.sftpServer.deleteAllFilesAndDirectories();
+
+        try (var otherServer = new FakeSftpServerExtension().setBaseLayer(FIXTURE)) {
+            otherServer.beforeEach(null);
+
+            assertThat(this.sftpServer.existsFile("/fixture/a.txt")).isFalse();
+            assertThat(otherServer.getFileContent("/fixture/a.txt", UTF_8)).isEqualTo("content of a");
+        }
+    }
+
+    @Test
+    void a_file_of_the_base_layer_can_be_overwritten() throws Exception {
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.put(new ByteArrayInputStream("modified content".getBytes(UTF_8)), "/fixture/sub/b.txt");
+        channel.disconnect();
+        session.disconnect();
+
+        assertThat(this.sftpServer.getFileContent("/fixture/sub/b.txt", UTF_8)).isEqualTo("modified content");
+    }
+
+    @Test
+    void directories_list_the_files_of_both_layers() throws Exception {
+        this.sftpServer.putFile("/fixture/c.txt", "content of c", UTF_8);
+
+        assertThat(listNames("/fixture")).containsExactlyInAnyOrder("a.txt", "c.txt", "sub");
+    }
+
+    @Test
+    void a_deleted_file_of_the_base_layer_does_not_exist() throws Exception {
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.rm("/fixture/a.txt");
+        channel.disconnect();
+        session.disconnect();
+
+        assertThat(this.sftpServer.existsFile("/fixture/a.txt")).isFalse();
+        assertThat(listNames("/fixture")).containsExactly("sub");
+    }
+
+    @Test
+    void a_directory_of_the_base_layer_can_be_renamed() throws Exception {
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.rename("/fixture/sub", "/renamed");
+        channel.disconnect();
+        session.disconnect();
+
+        assertThat(this.sftpServer.existsFile("/fixture/sub/b.txt")).isFalse();
+        assertThat(this.sftpServer.getFileContent("/renamed/b.txt", UTF_8)).isEqualTo("content of b");
+    }
+
+    @Test
+    void modifications_of_the_base_layer_can_be_rolled_back() throws Exception {
+        final Checkpoint checkpoint = this.sftpServer.checkpoint();
+        this.sftpServer.putFile("/fixture/a.txt", "modified content", UTF_8);
+        this.sftpServer.deleteAllFilesAndDirectories();
+
+        this.sftpServer.rollback(checkpoint);
+
+        assertThat(this.sftpServer.getFileContent("/fixture/a.txt", UTF_8)).isEqualTo("content of a");
+        assertThat(this.sftpServer.getFileContent("/fixture/sub/b.txt", UTF_8)).isEqualTo("content of b");
+    }
+
+    @Test
+    void a_shared_server_drops_the_writable_layer_after_each_test() throws Exception {
+        try (var sharedServer = new FakeSftpServerExtension()
+            .setLifecycle(ServerLifecycle.PER_CLASS)
+            .setBaseLayer(FIXTURE)) {
+            sharedServer.beforeAll(null);
+            sharedServer.beforeEach(null);
+            sharedServer.putFile("/fixture/a.txt", "modified content", UTF_8);
+            sharedServer.putFile("/test.txt", "test", UTF_8);
+
+            sharedServer.afterEach(null);
+
+            assertThat(sharedServer.getFileContent("/fixture/a.txt", UTF_8)).isEqualTo("content of a");
+            assertThat(sharedServer.existsFile("/test.txt")).isFalse();
+        }
+    }
+
+    @Test
+    void a_base_layer_cannot_be_set_within_a_test() {
+        assertThatThrownBy(() -> this.sftpServer.setBaseLayer(FIXTURE))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("The base layer cannot be changed while the filesystem is in use.");
+    }
+
+    private List<String> listNames(final String directory) throws Exception {
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        try {
+            final Vector<ChannelSftp.LsEntry> entries = channel.ls(directory);
+            return entries.stream()
+                .map(ChannelSftp.LsEntry::getFilename)
+                .filter(name -> !".".equals(name) && !"..".equals(name))
+                .collect(Collectors.toList());
+        } finally {
+            channel.disconnect();
+            session.disconnect();
+        }
+    }
+}
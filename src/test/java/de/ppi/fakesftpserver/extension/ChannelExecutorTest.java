@@ -0,0 +1,88 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChannelExecutorTest {
+
+    private static final int JAVA_WITH_VIRTUAL_THREADS = 21;
+
+    @Test
+    void the_shared_pool_keeps_processing_channels_of_several_servers_after_channels_have_been_closed()
+    throws Exception {
+        try (var firstServer = new FakeSftpServerExtension().setChannelExecutor(ChannelExecutor.sharedPool(2));
+             var secondServer = new FakeSftpServerExtension().setChannelExecutor(ChannelExecutor.sharedPool(2))) {
+            firstServer.beforeEach(null);
+            secondServer.beforeEach(null);
+
+            for (int i = 0; i < 3; i++) {
+                uploadFile(firstServer, "/first-" + i + ".txt");
+                uploadFile(secondServer, "/second-" + i + ".txt");
+            }
+
+            assertThat(firstServer.getFileContent("/first-2.txt", UTF_8)).isEqualTo("content");
+            assertThat(secondServer.getFileContent("/second-2.txt", UTF_8)).isEqualTo("content");
+        }
+    }
+
+    @Test
+    void the_shared_server_can_use_a_shared_pool() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension()
+            .setLifecycle(ServerLifecycle.SHARED)
+            .setChannelExecutor(ChannelExecutor.sharedPool(2))) {
+            sftpServer.beforeEach(null);
+
+            final Session session = AssertionHelperUtil.connectToServerAs(sftpServer, sftpServer.getLeaseUsername());
+            final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+            channel.put(new ByteArrayInputStream("content".getBytes(UTF_8)), "/file.txt");
+            channel.disconnect();
+            session.disconnect();
+
+            assertThat(sftpServer.getFileContent("/file.txt", UTF_8)).isEqualTo("content");
+        }
+    }
+
+    @Test
+    void virtual_threads_are_used_on_java_21_and_rejected_on_older_versions() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension().setChannelExecutor(ChannelExecutor.virtualThreads())) {
+            if (Runtime.version().feature() >= JAVA_WITH_VIRTUAL_THREADS) {
+                sftpServer.beforeEach(null);
+                uploadFile(sftpServer, "/file.txt");
+                assertThat(sftpServer.getFileContent("/file.txt", UTF_8)).isEqualTo("content");
+            } else {
+                assertThatThrownBy(() -> sftpServer.beforeEach(null))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("Virtual threads require Java 21 or later.");
+            }
+        }
+    }
+
+    @Test
+    void executors_with_the_same_configuration_are_equal() {
+        assertThat(ChannelExecutor.sharedPool(4)).isEqualTo(ChannelExecutor.sharedPool(4));
+        assertThat(ChannelExecutor.sharedPool(4)).isNotEqualTo(ChannelExecutor.sharedPool(8));
+        assertThat(ChannelExecutor.perChannel()).isEqualTo(ChannelExecutor.perChannel());
+    }
+
+    @Test
+    void the_number_of_threads_of_a_pool_must_be_positive() {
+        assertThatThrownBy(() -> ChannelExecutor.sharedPool(0))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("The number of threads must be positive.");
+    }
+
+    private static void uploadFile(final FakeSftpServerExtension sftpServer, final String path) throws Exception {
+        final Session session = AssertionHelperUtil.connectToServer(sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.put(new ByteArrayInputStream("content".getBytes(UTF_8)), path);
+        channel.disconnect();
+        session.disconnect();
+    }
+}
@@ -0,0 +1,143 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CheckpointTest {
+
+    @RegisterExtension
+    private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension();
+
+    @Test
+    void modified_files_are_restored() throws Exception {
+        this.sftpServer.putFile("/fixture/file.txt", "original content", UTF_8);
+        final Checkpoint checkpoint = this.sftpServer.checkpoint();
+
+        this.sftpServer.putFile("/fixture/file.txt", "modified content", UTF_8);
+        this.sftpServer.rollback(checkpoint);
+
+        assertThat(this.sftpServer.getFileContent("/fixture/file.txt", UTF_8)).isEqualTo("original content");
+    }
+
+    @Test
+    void created_files_and_directories_are_deleted() throws Exception {
+        final Checkpoint checkpoint = this.sftpServer.checkpoint();
+
+        this.sftpServer.putFile("/dummy_directory/dummy_file.txt", "dummy content", UTF_8);
+        this.sftpServer.rollback(checkpoint);
+
+        AssertionHelperUtil.assertFileDoesNotExist(this.sftpServer, "/dummy_directory/dummy_file.txt");
+        AssertionHelperUtil.assertDirectoryDoesNotExist(this.sftpServer);
+    }
+
+    @Test
+    void deleted_files_and_directories_are_restored() throws Exception {
+        this.sftpServer.putFile("/fixture/a/file.txt", "content of a", UTF_8);
+        this.sftpServer.putFile("/fixture/b/file.txt", "content of b", UTF_8);
+        final Checkpoint checkpoint = this.sftpServer.checkpoint();
+
+        this.sftpServer.deleteAllFilesAndDirectories();
+        this.sftpServer.rollback(checkpoint);
+
+        assertThat(this.sftpServer.getFileContent("/fixture/a/file.txt", UTF_8)).isEqualTo("content of a");
+        assertThat(this.sftpServer.getFileContent("/fixture/b/file.txt", UTF_8)).isEqualTo("content of b");
+    }
+
+    @Test
+    void changes_by_sftp_clients_are_rolled_back() throws Exception {
+        this.sftpServer.putFile("/fixture/file.txt", "original content", UTF_8);
+        final Checkpoint checkpoint = this.sftpServer.checkpoint();
+
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.rename("/fixture", "/renamed");
+        channel.rm("/renamed/file.txt");
+        channel.disconnect();
+        session.disconnect();
+        this.sftpServer.rollback(checkpoint);
+
+        assertThat(this.sftpServer.getFileContent("/fixture/file.txt", UTF_8)).isEqualTo("original content");
+        assertThat(this.sftpServer.existsFile("/renamed/file.txt")).isFalse();
+    }
+
+    @Test
+    void a_huge_synthetic_file_is_restored_without_reading_its_content() throws Exception {
+        this.sftpServer.putSyntheticFile("/file.bin", 1L << 40, ContentGenerator.pattern(new byte[]{1, 2, 3}));
+        final Checkpoint checkpoint = this.sftpServer.checkpoint();
+
+        this.sftpServer.putFile("/file.bin", "modified content", UTF_8);
+        this.sftpServer.rollback(checkpoint);
+
+        assertThat(this.sftpServer.size("/file.bin")).isEqualTo(1L << 40);
+    }
+
+    @Test
+    void a_checkpoint_can_be_rolled_back_multiple_times() throws Exception {
+        final Checkpoint checkpoint = this.sftpServer.checkpoint();
+
+        this.sftpServer.putFile("/first.txt", "first", UTF_8);
+        this.sftpServer.rollback(checkpoint);
+        this.sftpServer.putFile("/second.txt", "second", UTF_8);
+        this.sftpServer.rollback(checkpoint);
+
+        assertThat(this.sftpServer.existsFile("/first.txt")).isFalse();
+        assertThat(this.sftpServer.existsFile("/second.txt")).isFalse();
+    }
+
+    @Test
+    void a_rollback_to_an_earlier_checkpoint_discards_later_checkpoints() throws Exception {
+        final Checkpoint first = this.sftpServer.checkpoint();
+        this.sftpServer.putFile("/file.txt", "first", UTF_8);
+        final Checkpoint second = this.sftpServer.checkpoint();
+        this.sftpServer.putFile("/file.txt", "second", UTF_8);
+
+        this.sftpServer.rollback(first);
+
+        assertThat(this.sftpServer.existsFile("/file.txt")).isFalse();
+        assertThatThrownBy(() -> this.sftpServer.rollback(second))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void a_later_checkpoint_can_be_rolled_back_separately() throws Exception {
+        this.sftpServer.checkpoint();
+        this.sftpServer.putFile("/file.txt", "first", UTF_8);
+        final Checkpoint second = this.sftpServer.checkpoint();
+        this.sftpServer.putFile("/file.txt", "second", UTF_8);
+
+        this.sftpServer.rollback(second);
+
+        assertThat(this.sftpServer.getFileContent("/file.txt", UTF_8)).isEqualTo("first");
+    }
+
+    @Test
+    void a_shared_server_is_reset_to_its_first_checkpoint() throws Exception {
+        try (var sharedServer = new FakeSftpServerExtension().setLifecycle(ServerLifecycle.PER_CLASS)) {
+            sharedServer.beforeAll(null);
+            sharedServer.beforeEach(null);
+            sharedServer.putFile("/fixture.txt", "fixture", UTF_8);
+            sharedServer.checkpoint();
+            sharedServer.putFile("/test.txt", "test", UTF_8);
+
+            sharedServer.afterEach(null);
+
+            assertThat(sharedServer.getFileContent("/fixture.txt", UTF_8)).isEqualTo("fixture");
+            assertThat(sharedServer.existsFile("/test.txt")).isFalse();
+        }
+    }
+
+    @Test
+    void cannot_be_created_before_the_test_is_started() {
+        final var sftpServer = new FakeSftpServerExtension();
+
+        assertThatThrownBy(sftpServer::checkpoint)
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Failed to create checkpoint because test has not been started or is already finished.");
+    }
+}
@@ -0,0 +1,105 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeduplicatedStorageTest {
+
+    private static final byte[] TEMPLATE = "content of the template".getBytes(UTF_8);
+
+    @RegisterExtension
+    private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension()
+        .setStorage(Storage.DEDUPLICATED);
+
+    @Test
+    void files_with_identical_content_share_it() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            this.sftpServer.putFile("/directory" + i + "/template.txt", TEMPLATE);
+        }
+        this.sftpServer.putFile("/other.txt", "other", UTF_8);
+
+        final DeduplicationStatistics statistics = this.sftpServer.getDeduplicationStatistics();
+        assertThat(statistics.getFileCount()).isEqualTo(11);
+        assertThat(statistics.getContentCount()).isEqualTo(2);
+        assertThat(statistics.getStoredBytes()).isEqualTo(TEMPLATE.length + 5);
+        assertThat(statistics.getSavedBytes()).isEqualTo(9L * TEMPLATE.length);
+        assertThat(this.sftpServer.getFileContent("/directory7/template.txt")).isEqualTo(TEMPLATE);
+    }
+
+    @Test
+    void modifying_a_file_does_not_modify_the_files_that_share_its_content() throws Exception {
+        this.sftpServer.putFile("/first.txt", TEMPLATE);
+        this.sftpServer.putFile("/second.txt", TEMPLATE);
+
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.put(new ByteArrayInputStream(" appended".getBytes(UTF_8)), "/second.txt", ChannelSftp.APPEND);
+        channel.disconnect();
+        session.disconnect();
+
+        assertThat(this.sftpServer.getFileContent("/first.txt")).isEqualTo(TEMPLATE);
+        assertThat(this.sftpServer.getFileContent("/second.txt", UTF_8))
+            .isEqualTo("content of the template appended");
+        assertThat(this.sftpServer.getDeduplicationStatistics().getContentCount()).isEqualTo(2);
+    }
+
+    @Test
+    void content_is_freed_when_its_last_file_is_deleted() throws Exception {
+        this.sftpServer.putFile("/first.txt", TEMPLATE);
+        this.sftpServer.putFile("/second.txt", TEMPLATE);
+
+        this.sftpServer.deleteAllFilesAndDirectories();
+
+        final DeduplicationStatistics statistics = this.sftpServer.getDeduplicationStatistics();
+        assertThat(statistics.getFileCount()).isZero();
+        assertThat(statistics.getStoredBytes()).isZero();
+    }
+
+    @Test
+    void a_rollback_restores_the_content_of_a_file() throws Exception {
+        this.sftpServer.putFile("/file.txt", TEMPLATE);
+        final Checkpoint checkpoint = this.sftpServer.checkpoint();
+        this.sftpServer.putFile("/file.txt", "modified content", UTF_8);
+
+        this.sftpServer.rollback(checkpoint);
+
+        assertThat(this.sftpServer.getFileContent("/file.txt")).isEqualTo(TEMPLATE);
+    }
+
+    @Test
+    void the_copy_of_a_file_for_a_checkpoint_is_counted_until_the_rollback() throws Exception {
+        this.sftpServer.putFile("/file.txt", TEMPLATE);
+        final Checkpoint checkpoint = this.sftpServer.checkpoint();
+        this.sftpServer.putFile("/file.txt", "modified content", UTF_8);
+
+        final DeduplicationStatistics statistics = this.sftpServer.getDeduplicationStatistics();
+        assertThat(statistics.getFileCount()).isEqualTo(2);
+        assertThat(statistics.getContentCount()).isEqualTo(2);
+
+        this.sftpServer.rollback(checkpoint);
+
+        final DeduplicationStatistics statisticsAfterRollback = this.sftpServer.getDeduplicationStatistics();
+        assertThat(statisticsAfterRollback.getFileCount()).isEqualTo(1);
+        assertThat(statisticsAfterRollback.getContentCount()).isEqualTo(1);
+        assertThat(statisticsAfterRollback.getStoredBytes()).isEqualTo(TEMPLATE.length);
+    }
+
+    @Test
+    void a_file_that_is_uploaded_again_with_the_same_content_shares_it_again() throws Exception {
+        this.sftpServer.putFile("/first.txt", TEMPLATE);
+        this.sftpServer.putFile("/second.txt", "draft", UTF_8);
+
+        this.sftpServer.putFile("/second.txt", TEMPLATE);
+
+        final DeduplicationStatistics statistics = this.sftpServer.getDeduplicationStatistics();
+        assertThat(statistics.getFileCount()).isEqualTo(2);
+        assertThat(statistics.getContentCount()).isEqualTo(1);
+    }
+}
@@ -10,7 +10,13 @@ import org.junit.jupiter.api.extension.RegisterExtension;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.security.MessageDigest;
 import java.util.List;
+import java.util.Random;
 
 import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -208,6 +214,54 @@ public class FakeSftpServerExtensionTest {
             .hasMessage("Failed to download file because test has not been started or is already finished.");
     }
 
+    @Test
+    void a_large_file_can_be_compared_with_a_stream() throws Exception {
+        final byte[] content = createLargeContent();
+        this.sftpServer.putFile("/dummy_file.bin", content);
+        final byte[] otherContent = content.clone();
+        otherContent[otherContent.length - 1]++;
+
+        assertThat(this.sftpServer.contentEquals("/dummy_file.bin", new ByteArrayInputStream(content))).isTrue();
+        assertThat(this.sftpServer.contentEquals("/dummy_file.bin", new ByteArrayInputStream(otherContent))).isFalse();
+        assertThat(this.sftpServer.contentEquals("/dummy_file.bin",
+            new ByteArrayInputStream(content, 0, content.length - 1))).isFalse();
+    }
+
+    @Test
+    void the_hash_and_the_size_of_a_file_can_be_retrieved() throws Exception {
+        final byte[] content = createLargeContent();
+        this.sftpServer.putFile("/dummy_file.bin", content);
+
+        final byte[] expectedHash = MessageDigest.getInstance("SHA-256").digest(content);
+        assertThat(this.sftpServer.sha256("/dummy_file.bin")).isEqualTo(String.format("%064x",
+            new BigInteger(1, expectedHash)));
+        assertThat(this.sftpServer.size("/dummy_file.bin")).isEqualTo(content.length);
+    }
+
+    @Test
+    void a_file_can_be_read_as_stream_and_as_channel() throws Exception {
+        this.sftpServer.putFile("/dummy_file.bin", DUMMY_CONTENT);
+
+        try (InputStream is = this.sftpServer.openFile("/dummy_file.bin")) {
+            assertThat(is.readAllBytes()).isEqualTo(DUMMY_CONTENT);
+        }
+        try (SeekableByteChannel channel = this.sftpServer.openChannel("/dummy_file.bin")) {
+            final ByteBuffer buffer = ByteBuffer.allocate(2);
+            channel.position(4).read(buffer);
+            assertThat(buffer.array()).containsExactly(2, 4);
+        }
+    }
+
+    @Test
+    void a_file_cannot_be_opened_before_the_test_is_started() {
+        final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension();
+        final Throwable exception = exceptionThrownBy(() -> sftpServer.openFile("/dummy_file.bin"));
+
+        assertThat(exception)
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Failed to open file because test has not been started or is already finished.");
+    }
+
     @Test
     void exists_returns_true_for_a_file_that_exists_on_the_server() throws Exception {
         AssertionHelperUtil.uploadFile(this.sftpServer, "/dummy_directory/dummy_file.bin", DUMMY_CONTENT);
@@ -283,13 +337,46 @@ public class FakeSftpServerExtensionTest {
             .hasMessage("Port cannot be set to " + port + " because only ports between 1 and 65535 are valid."));
     }
 
+    @Test
+    void open_sessions_and_files_are_kept_when_the_port_is_changed_during_the_test() throws Exception {
+        this.sftpServer.putFile("/file.txt", "content", UTF_8);
+        final int oldPort = this.sftpServer.getPort();
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+
+        this.sftpServer.setManualPort(DUMMY_PORT);
+
+        assertThat(this.sftpServer.getPort()).isEqualTo(DUMMY_PORT);
+        assertThat(channel.stat("/file.txt").getSize()).isEqualTo(7);
+        final Session newSession = AssertionHelperUtil.connectToServerAtPort(DUMMY_PORT);
+        final ChannelSftp newChannel = AssertionHelperUtil.connectSftpChannel(newSession);
+        assertThat(newChannel.stat("/file.txt").getSize()).isEqualTo(7);
+        AssertionHelperUtil.assertConnectionToSftpServerNotPossible(oldPort);
+        newSession.disconnect();
+        session.disconnect();
+    }
+
+    @Test
+    void the_server_keeps_its_port_if_the_new_port_cannot_be_bound() throws Exception {
+        final int oldPort = this.sftpServer.getPort();
+        try (ServerSocket occupiedPort = new ServerSocket(0)) {
+            assertThatThrownBy(() -> this.sftpServer.setManualPort(occupiedPort.getLocalPort()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("The SFTP server cannot be moved to port " + occupiedPort.getLocalPort() + ".");
+        }
+
+        assertThat(this.sftpServer.getPort()).isEqualTo(oldPort);
+        assertThat(this.sftpServer.getManualPort()).isNull();
+        assertDoesNotThrow(() -> AssertionHelperUtil.connectToServerAtPort(oldPort).disconnect());
+    }
+
     @Test
     void the_port_can_be_set_to_1() {
         // test must run as root to use a port <1024
         // this code should not run as root
         assertThatThrownBy(() -> this.sftpServer.setManualPort(1))
             .isInstanceOf(IllegalStateException.class)
-            .hasMessage("The SFTP server cannot be restarted.");
+            .hasMessage("The SFTP server cannot be moved to port 1.");
     }
 
     @Test
@@ -353,4 +440,11 @@ public class FakeSftpServerExtensionTest {
     void works_on_an_empty_filesystem() {
         assertDoesNotThrow(this.sftpServer::deleteAllFilesAndDirectories);
     }
+
+    private static byte[] createLargeContent() {
+        // larger than a single chunk of the streaming methods
+        final byte[] content = new byte[200_000];
+        new Random(0).nextBytes(content);
+        return content;
+    }
 }
@@ -0,0 +1,125 @@
+package de.ppi.fakesftpserver.extension;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FixtureImportTest {
+
+    private static final int LARGE_SIZE = 3 * 1024 * 1024;
+
+    @RegisterExtension
+    private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void a_directory_with_many_files_is_imported() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            final Path subdirectory = Files.createDirectories(this.directory.resolve("dir" + i % 10));
+            Files.writeString(subdirectory.resolve("file" + i + ".txt"), "content " + i);
+        }
+        Files.createDirectories(this.directory.resolve("empty"));
+        Files.write(this.directory.resolve("large.bin"), ContentGenerator.seeded(1).newInputStream(LARGE_SIZE)
+            .readAllBytes());
+
+        this.sftpServer.importDirectory(this.directory, "/fixture");
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(this.sftpServer.getFileContent("/fixture/dir" + i % 10 + "/file" + i + ".txt", UTF_8))
+                .isEqualTo("content " + i);
+        }
+        assertThat(this.sftpServer.contentEquals("/fixture/large.bin",
+            ContentGenerator.seeded(1).newInputStream(LARGE_SIZE))).isTrue();
+        AssertionHelperUtil.assertEmptyDirectory(this.sftpServer, "/fixture/empty");
+    }
+
+    @Test
+    void a_zip_archive_is_extracted() throws Exception {
+        final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            zip.putNextEntry(new ZipEntry("directory/"));
+            zip.putNextEntry(new ZipEntry("directory/small.txt"));
+            zip.write("small".getBytes(UTF_8));
+            zip.putNextEntry(new ZipEntry("other/large.bin"));
+            ContentGenerator.seeded(2).newInputStream(LARGE_SIZE).transferTo(zip);
+            zip.putNextEntry(new ZipEntry("empty/"));
+        }
+
+        this.sftpServer.importZip(new ByteArrayInputStream(archive.toByteArray()), "/target");
+
+        assertThat(this.sftpServer.getFileContent("/target/directory/small.txt", UTF_8)).isEqualTo("small");
+        assertThat(this.sftpServer.contentEquals("/target/other/large.bin",
+            ContentGenerator.seeded(2).newInputStream(LARGE_SIZE))).isTrue();
+        AssertionHelperUtil.assertEmptyDirectory(this.sftpServer, "/target/empty");
+    }
+
+    @Test
+    void an_entry_outside_the_target_directory_is_rejected() throws Exception {
+        final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            zip.putNextEntry(new ZipEntry("../escaped.txt"));
+            zip.write("evil".getBytes(UTF_8));
+        }
+
+        assertThatThrownBy(() -> this.sftpServer.importZip(new ByteArrayInputStream(archive.toByteArray()), "/target"))
+            .isInstanceOf(IOException.class)
+            .hasMessage("The entry ../escaped.txt would be extracted outside of /target.");
+        assertThat(this.sftpServer.existsFile("/escaped.txt")).isFalse();
+    }
+
+    @Test
+    void a_directory_of_the_classpath_is_imported() throws Exception {
+        this.sftpServer.importClasspath("fixtures", "/classpath");
+
+        assertThat(this.sftpServer.getFileContent("/classpath/first.txt", UTF_8)).isEqualTo("first\n");
+        assertThat(this.sftpServer.getFileContent("/classpath/sub/second.txt", UTF_8)).isEqualTo("second\n");
+    }
+
+    @Test
+    void a_directory_of_a_jar_on_the_classpath_is_imported() throws Exception {
+        final Path jar = this.directory.resolve("fixtures.jar");
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream zip = new JarOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("jarred/"));
+            zip.putNextEntry(new ZipEntry("jarred/nested/"));
+            zip.putNextEntry(new ZipEntry("jarred/nested/file.txt"));
+            zip.write("from jar".getBytes(UTF_8));
+        }
+
+        final Thread thread = Thread.currentThread();
+        final ClassLoader previousClassLoader = thread.getContextClassLoader();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, null)) {
+            thread.setContextClassLoader(classLoader);
+            this.sftpServer.importClasspath("/jarred", "/classpath");
+        } finally {
+            thread.setContextClassLoader(previousClassLoader);
+        }
+
+        assertThat(this.sftpServer.getFileContent("/classpath/nested/file.txt", UTF_8)).isEqualTo("from jar");
+    }
+
+    @Test
+    void a_missing_directory_of_the_classpath_is_reported() {
+        assertThatThrownBy(() -> this.sftpServer.importClasspath("missing", "/classpath"))
+            .isInstanceOf(FileNotFoundException.class)
+            .hasMessage("The directory missing is not on the classpath.");
+    }
+}
@@ -0,0 +1,71 @@
+package de.ppi.fakesftpserver.extension;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlightRecorderEventTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void the_lifecycle_authentication_and_sftp_operations_are_recorded() throws Exception {
+        final List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(ServerPhaseEvent.class);
+            recording.enable(TestCallbackEvent.class);
+            recording.enable(AuthenticationEvent.class);
+            recording.enable(SftpOperationEvent.class);
+            recording.start();
+
+            try (var sftpServer = new FakeSftpServerExtension()) {
+                sftpServer.beforeEach(null);
+                AssertionHelperUtil.uploadFile(sftpServer, "/directory/file.bin", new byte[1000]);
+                sftpServer.afterEach(null);
+            }
+
+            recording.stop();
+            final Path file = this.directory.resolve("recording.jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+
+        assertThat(phases(events)).contains("build filesystem", "provide host key", "bind");
+        assertThat(eventsOfType(events, "de.ppi.fakesftpserver.TestCallback"))
+            .extracting(event -> event.getString("callback"))
+            .containsExactly("beforeEach", "afterEach");
+        assertThat(eventsOfType(events, "de.ppi.fakesftpserver.Authentication"))
+            .anySatisfy(event -> assertThat(event.getBoolean("successful")).isTrue());
+        assertThat(eventsOfType(events, "de.ppi.fakesftpserver.SftpOperation"))
+            .anySatisfy(event -> {
+                assertThat(event.getString("operation")).isEqualTo("MKDIR");
+                assertThat(event.getString("path")).isEqualTo("/directory");
+            })
+            .anySatisfy(event -> {
+                assertThat(event.getString("operation")).isEqualTo("WRITE");
+                assertThat(event.getString("path")).isEqualTo("/directory/file.bin");
+                assertThat(event.getLong("bytes")).isEqualTo(1000);
+            });
+    }
+
+    private static List<String> phases(final List<RecordedEvent> events) {
+        return eventsOfType(events, "de.ppi.fakesftpserver.ServerPhase").stream()
+            .map(event -> event.getString("phase"))
+            .collect(Collectors.toList());
+    }
+
+    private static List<RecordedEvent> eventsOfType(final List<RecordedEvent> events, final String name) {
+        return events.stream()
+            .filter(event -> event.getEventType().getName().equals(name))
+            .collect(Collectors.toList());
+    }
+}
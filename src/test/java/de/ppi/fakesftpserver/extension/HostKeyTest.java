@@ -0,0 +1,93 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HostKeyTest {
+
+    @Test
+    void all_servers_share_the_same_generated_host_key() throws Exception {
+        try (var firstServer = new FakeSftpServerExtension(); var secondServer = new FakeSftpServerExtension()) {
+            firstServer.beforeEach(null);
+            secondServer.beforeEach(null);
+
+            assertThat(readHostKey(firstServer)).isEqualTo(readHostKey(secondServer));
+        }
+    }
+
+    @Test
+    void a_client_can_connect_to_a_server_with_an_ec_host_key() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension().setHostKey(HostKey.ec())) {
+            sftpServer.beforeEach(null);
+
+            final Session session = AssertionHelperUtil.connectToServer(sftpServer);
+            assertThat(session.getHostKey().getType()).isEqualTo("ecdsa-sha2-nistp256");
+            session.disconnect();
+        }
+    }
+
+    @Test
+    void an_ed25519_host_key_can_be_generated() throws Exception {
+        assertThat(loadKeyPairs(HostKey.ed25519()))
+            .singleElement()
+            .extracting(keyPair -> keyPair.getPublic().getAlgorithm())
+            .isEqualTo("EdDSA");
+    }
+
+    @Test
+    void a_host_key_is_created_only_once() throws Exception {
+        assertThat(loadKeyPairs(HostKey.ec())).isEqualTo(loadKeyPairs(HostKey.ec()));
+    }
+
+    @Test
+    void a_host_key_can_be_loaded_from_the_classpath() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension().setHostKey(HostKey.fromClasspath("host_key_ecdsa"))) {
+            sftpServer.beforeEach(null);
+
+            final Session session = AssertionHelperUtil.connectToServer(sftpServer);
+            assertThat(session.getHostKey().getType()).isEqualTo("ecdsa-sha2-nistp256");
+            session.disconnect();
+        }
+    }
+
+    @Test
+    void a_host_key_can_be_loaded_from_a_file() throws Exception {
+        final Path keyFile = Path.of(HostKeyTest.class.getResource("/host_key_ecdsa").toURI());
+        final KeyPair keyPairFromFile = loadKeyPairs(HostKey.fromFile(keyFile)).get(0);
+        final KeyPair keyPairFromClasspath = loadKeyPairs(HostKey.fromClasspath("host_key_ecdsa")).get(0);
+
+        assertThat(keyPairFromFile.getPublic()).isEqualTo(keyPairFromClasspath.getPublic());
+    }
+
+    @Test
+    void a_missing_key_file_cannot_be_used() {
+        final HostKey hostKey = HostKey.fromClasspath("missing_host_key");
+
+        assertThatThrownBy(hostKey::getKeyPairProvider)
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageStartingWith("The host key");
+    }
+
+    private static String readHostKey(final FakeSftpServerExtension sftpServer) throws Exception {
+        final Session session = AssertionHelperUtil.connectToServer(sftpServer);
+        try {
+            return session.getHostKey().getKey();
+        } finally {
+            session.disconnect();
+        }
+    }
+
+    private static List<KeyPair> loadKeyPairs(final HostKey hostKey) throws Exception {
+        final List<KeyPair> keyPairs = new ArrayList<>();
+        hostKey.getKeyPairProvider().loadKeys(null).forEach(keyPairs::add);
+        return keyPairs;
+    }
+}
@@ -0,0 +1,72 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IoThreadsTest {
+
+    private static final int WORKERS = 2;
+
+    @Test
+    void servers_with_shared_io_threads_serve_their_own_files() throws Exception {
+        try (var firstServer = new FakeSftpServerExtension().setIoThreads(IoThreads.shared(WORKERS));
+             var secondServer = new FakeSftpServerExtension().setIoThreads(IoThreads.shared(WORKERS))) {
+            for (int i = 0; i < 2; i++) {
+                firstServer.beforeEach(null);
+                secondServer.beforeEach(null);
+                firstServer.putFile("/file.txt", "first", UTF_8);
+                secondServer.putFile("/file.txt", "second server", UTF_8);
+
+                assertThat(sizeOfFile(firstServer)).isEqualTo(5);
+                assertThat(sizeOfFile(secondServer)).isEqualTo(13);
+                firstServer.afterEach(null);
+                assertThat(sizeOfFile(secondServer)).isEqualTo(13);
+                secondServer.afterEach(null);
+            }
+        }
+
+        assertThat(Thread.getAllStackTraces().keySet())
+            .filteredOn(thread -> thread.getName().contains("fake-sftp-io"))
+            .hasSizeBetween(1, WORKERS);
+    }
+
+    @Test
+    void equal_io_threads_are_equal() {
+        assertThat(IoThreads.shared(WORKERS)).isEqualTo(IoThreads.shared(WORKERS));
+        assertThat(IoThreads.shared(WORKERS).withBackend(IoBackend.MINA)).isNotEqualTo(IoThreads.shared(WORKERS));
+        assertThat(IoThreads.perServer()).isNotEqualTo(IoThreads.shared(WORKERS));
+    }
+
+    @Test
+    void the_number_of_io_workers_must_be_positive() {
+        assertThatThrownBy(() -> IoThreads.shared(0))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("The number of IO workers must be positive.");
+    }
+
+    @Test
+    void a_backend_that_is_not_on_the_classpath_cannot_be_used() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension()
+            .setIoThreads(IoThreads.perServer().withBackend(IoBackend.MINA))) {
+            assertThatThrownBy(() -> sftpServer.beforeEach(null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("The IO backend MINA requires org.apache.sshd:sshd-mina on the classpath.");
+        }
+    }
+
+    private static long sizeOfFile(final FakeSftpServerExtension sftpServer) throws Exception {
+        final Session session = AssertionHelperUtil.connectToServer(sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        try {
+            return channel.stat("/file.txt").getSize();
+        } finally {
+            channel.disconnect();
+            session.disconnect();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LazyStartTest {
+
+    private static final int PORT = 8396;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void the_server_is_started_on_the_first_call_of_get_port() throws Exception {
+        final List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(ServerPhaseEvent.class);
+            recording.start();
+
+            try (var sftpServer = new FakeSftpServerExtension().setLazyStart(true)) {
+                for (int i = 0; i < 3; i++) {
+                    sftpServer.beforeEach(null);
+                    sftpServer.putFile("/file.txt", "content", UTF_8);
+                    assertThat(sftpServer.getFileContent("/file.txt", UTF_8)).isEqualTo("content");
+                    sftpServer.afterEach(null);
+                }
+
+                sftpServer.beforeEach(null);
+                sftpServer.putFile("/file.txt", "content", UTF_8);
+                final Session session = AssertionHelperUtil.connectToServer(sftpServer);
+                final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+                assertThat(channel.stat("/file.txt").getSize()).isEqualTo(7);
+                channel.disconnect();
+                session.disconnect();
+                sftpServer.afterEach(null);
+            }
+
+            recording.stop();
+            final Path file = this.directory.resolve("recording.jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+
+        assertThat(events)
+            .filteredOn(event -> event.getEventType().getName().equals("de.ppi.fakesftpserver.ServerPhase"))
+            .extracting(event -> event.getString("phase"))
+            .containsExactly("build filesystem", "build filesystem", "build filesystem", "build filesystem",
+                "provide host key", "bind");
+    }
+
+    @Test
+    void the_server_is_started_when_the_first_client_connects_to_the_manual_port() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension().setLazyStart(true).setManualPort(PORT)) {
+            sftpServer.beforeEach(null);
+            sftpServer.putFile("/file.txt", "content", UTF_8);
+
+            final Session firstSession = AssertionHelperUtil.connectToServerAtPort(PORT);
+            final ChannelSftp firstChannel = AssertionHelperUtil.connectSftpChannel(firstSession);
+            final Session secondSession = AssertionHelperUtil.connectToServerAtPort(PORT);
+            final ChannelSftp secondChannel = AssertionHelperUtil.connectSftpChannel(secondSession);
+
+            assertThat(firstChannel.stat("/file.txt").getSize()).isEqualTo(7);
+            assertThat(secondChannel.stat("/file.txt").getSize()).isEqualTo(7);
+            firstSession.disconnect();
+            secondSession.disconnect();
+            sftpServer.afterEach(null);
+        }
+
+        AssertionHelperUtil.assertConnectionToSftpServerNotPossible(PORT);
+    }
+
+    @Test
+    void the_port_can_be_changed_before_the_first_client_connects() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension().setLazyStart(true).setManualPort(PORT)) {
+            sftpServer.beforeEach(null);
+            sftpServer.setManualPort(PORT + 1);
+
+            AssertionHelperUtil.assertConnectionToSftpServerNotPossible(PORT);
+            final Session session = AssertionHelperUtil.connectToServerAtPort(PORT + 1);
+            session.disconnect();
+            sftpServer.afterEach(null);
+        }
+    }
+
+    @Test
+    void the_port_can_be_set_again_to_the_same_port_before_the_first_client_connects() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension().setLazyStart(true).setManualPort(PORT)) {
+            sftpServer.beforeEach(null);
+            sftpServer.setManualPort(PORT);
+
+            final Session session = AssertionHelperUtil.connectToServerAtPort(PORT);
+            session.disconnect();
+            sftpServer.afterEach(null);
+        }
+    }
+
+    @Test
+    void the_manual_port_is_released_if_no_client_has_connected() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension().setLazyStart(true).setManualPort(PORT)) {
+            sftpServer.beforeEach(null);
+            sftpServer.afterEach(null);
+        }
+
+        AssertionHelperUtil.assertConnectionToSftpServerNotPossible(PORT);
+    }
+
+    @Test
+    void the_lazy_start_cannot_be_changed_within_a_test() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension()) {
+            sftpServer.beforeEach(null);
+
+            assertThatThrownBy(() -> sftpServer.setLazyStart(true))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("The lazy start cannot be changed while the filesystem is in use.");
+        }
+    }
+}
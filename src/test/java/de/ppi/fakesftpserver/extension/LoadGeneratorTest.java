@@ -0,0 +1,114 @@
+package de.ppi.fakesftpserver.extension;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoadGeneratorTest {
+
+    @RegisterExtension
+    private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension();
+
+    @Test
+    void concurrent_channels_perform_the_configured_number_of_operations() throws Exception {
+        final LoadReport report = LoadGenerator.forServer(this.sftpServer)
+            .setSessions(2)
+            .setChannelsPerSession(2)
+            .setFileSizes(FileSizeDistribution.uniform(0, 50_000))
+            .setOperations(200)
+            .run();
+
+        assertThat(report.getTotalErrors()).isZero();
+        assertThat(report.getTotalCount()).isEqualTo(200);
+        for (final LoadOperation operation : LoadOperation.values()) {
+            assertThat(report.getCount(operation)).isPositive();
+            assertThat(report.getLatency(operation).getPercentile(99)).isPositive();
+        }
+        assertThat(report.getBytesUploaded()).isPositive();
+        assertThat(report.getBytesDownloaded()).isPositive();
+        assertThat(report.getOperationsPerSecond()).isPositive();
+        assertThat(this.sftpServer.getStatistics().getBytesWritten()).isEqualTo(report.getBytesUploaded());
+        assertThat(this.sftpServer.getStatistics().getBytesRead()).isEqualTo(report.getBytesDownloaded());
+        assertThat(report.toString()).contains("UPLOAD", "p99 (ms)");
+    }
+
+    @Test
+    void the_uploaded_files_are_placed_in_a_directory_per_channel() throws Exception {
+        final LoadReport report = LoadGenerator.forServer(this.sftpServer)
+            .setChannelsPerSession(2)
+            .setOperationWeight(LoadOperation.DOWNLOAD, 0)
+            .setOperationWeight(LoadOperation.LIST, 0)
+            .setOperationWeight(LoadOperation.RENAME, 0)
+            .setFileSizes(FileSizeDistribution.fixed(1_000))
+            .setOperations(4)
+            .setDirectory("/target/load")
+            .run();
+
+        assertThat(report.getCount(LoadOperation.UPLOAD)).isEqualTo(4);
+        assertThat(report.getBytesUploaded()).isEqualTo(4_000);
+        // a channel may perform all operations before the other channel starts
+        int files = 0;
+        for (int worker = 0; worker < 2; worker++) {
+            for (int file = 0; file < 4; file++) {
+                if (this.sftpServer.existsFile("/target/load/worker-" + worker + "/file-" + file)) {
+                    files++;
+                }
+            }
+        }
+        assertThat(files).isEqualTo(4);
+    }
+
+    @Test
+    void the_generator_can_drive_a_server_by_host_and_port_for_a_duration() throws Exception {
+        this.sftpServer.addUser("load", "secret");
+
+        final LoadReport report = LoadGenerator.forServer("localhost", this.sftpServer.getPort())
+            .setCredentials("load", "secret")
+            .setOperations(Long.MAX_VALUE)
+            .setDuration(Duration.ofMillis(300))
+            .run();
+
+        assertThat(report.getTotalCount()).isPositive();
+        assertThat(report.getDuration()).isGreaterThanOrEqualTo(Duration.ofMillis(300));
+    }
+
+    @Test
+    void wrong_credentials_fail_the_run() {
+        this.sftpServer.addUser("load", "secret");
+
+        assertThatThrownBy(() -> LoadGenerator.forServer(this.sftpServer).setCredentials("load", "wrong").run())
+            .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void at_least_one_operation_must_have_a_positive_weight() {
+        final LoadGenerator generator = LoadGenerator.forServer(this.sftpServer);
+        for (final LoadOperation operation : LoadOperation.values()) {
+            generator.setOperationWeight(operation, 0);
+        }
+
+        assertThatThrownBy(generator::run)
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("The weight of at least one operation must be positive.");
+    }
+
+    @Test
+    void file_sizes_are_chosen_from_the_distribution() {
+        final Random random = new Random(0);
+
+        assertThat(FileSizeDistribution.fixed(7).nextSize(random)).isEqualTo(7);
+        for (int i = 0; i < 100; i++) {
+            assertThat(FileSizeDistribution.uniform(10, 20).nextSize(random)).isBetween(10L, 20L);
+            assertThat(FileSizeDistribution.choice(1, 1_000_000).nextSize(random)).isIn(1L, 1_000_000L);
+        }
+        assertThatThrownBy(() -> FileSizeDistribution.uniform(20, 10))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("The minimal size must be between 0 and the maximal size.");
+    }
+}
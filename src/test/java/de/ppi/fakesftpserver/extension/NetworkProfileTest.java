@@ -0,0 +1,120 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NetworkProfileTest {
+
+    private static final int KILOBYTE = 1024;
+
+    @RegisterExtension
+    private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension();
+
+    @Test
+    void every_request_is_delayed_by_the_latency() throws Exception {
+        this.sftpServer.setNetworkProfile(NetworkProfile.unlimited()
+            .withLatency(Duration.ofMillis(200))
+            .withJitter(Duration.ofMillis(50), 42));
+
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        final long start = System.nanoTime();
+        channel.stat("/");
+        channel.stat("/");
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        channel.disconnect();
+        session.disconnect();
+
+        assertThat(elapsed).isBetween(Duration.ofMillis(400), Duration.ofMillis(3000));
+    }
+
+    @Test
+    void a_download_is_limited_by_the_bandwidth_of_the_session() throws Exception {
+        this.sftpServer.putFile("/file.bin", new byte[64 * KILOBYTE]);
+        this.sftpServer.setNetworkProfile(NetworkProfile.unlimited().withSessionBandwidth(128 * KILOBYTE));
+
+        final long start = System.nanoTime();
+        final byte[] downloaded = AssertionHelperUtil.downloadFile(this.sftpServer, "/file.bin");
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(downloaded).hasSize(64 * KILOBYTE);
+        assertThat(elapsed).isGreaterThanOrEqualTo(Duration.ofMillis(500));
+    }
+
+    @Test
+    void an_upload_is_limited_by_the_bandwidth_of_the_session() throws Exception {
+        this.sftpServer.setNetworkProfile(NetworkProfile.unlimited().withSessionBandwidth(128 * KILOBYTE));
+
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        final long start = System.nanoTime();
+        channel.put(new ByteArrayInputStream(new byte[64 * KILOBYTE]), "/file.bin");
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        channel.disconnect();
+        session.disconnect();
+
+        assertThat(this.sftpServer.size("/file.bin")).isEqualTo(64 * KILOBYTE);
+        assertThat(elapsed).isGreaterThanOrEqualTo(Duration.ofMillis(500));
+    }
+
+    @Test
+    void concurrent_sessions_share_the_global_bandwidth() throws Exception {
+        this.sftpServer.putFile("/file.bin", new byte[32 * KILOBYTE]);
+        this.sftpServer.setNetworkProfile(NetworkProfile.unlimited().withGlobalBandwidth(128 * KILOBYTE));
+
+        final long start = System.nanoTime();
+        final CompletableFuture<byte[]> first = CompletableFuture.supplyAsync(this::downloadFile);
+        final CompletableFuture<byte[]> second = CompletableFuture.supplyAsync(this::downloadFile);
+        CompletableFuture.allOf(first, second).join();
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(elapsed).isGreaterThanOrEqualTo(Duration.ofMillis(500));
+    }
+
+    @Test
+    void the_network_is_not_shaped_anymore_after_it_has_been_reset() throws Exception {
+        this.sftpServer.setNetworkProfile(NetworkProfile.unlimited().withLatency(Duration.ofSeconds(10)));
+        this.sftpServer.setNetworkProfile(NetworkProfile.unlimited());
+
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        final long start = System.nanoTime();
+        channel.stat("/");
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        channel.disconnect();
+        session.disconnect();
+
+        assertThat(elapsed).isLessThan(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void the_latency_cannot_be_negative() {
+        assertThatThrownBy(() -> NetworkProfile.unlimited().withLatency(Duration.ofMillis(-1)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("The latency cannot be negative.");
+    }
+
+    @Test
+    void the_bandwidth_must_be_positive() {
+        assertThatThrownBy(() -> NetworkProfile.unlimited().withSessionBandwidth(0))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("The bandwidth must be positive.");
+    }
+
+    private byte[] downloadFile() {
+        try {
+            return AssertionHelperUtil.downloadFile(this.sftpServer, "/file.bin");
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OffHeapStorageTest {
+
+    private static final int LARGE_SIZE = 20 * 1024 * 1024 + 3;
+
+    @RegisterExtension
+    private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension()
+        .setStorage(Storage.OFF_HEAP);
+
+    @Test
+    void a_file_that_is_put_can_be_read() throws Exception {
+        this.sftpServer.putFile("/directory/file.txt", "dummy content", UTF_8);
+
+        assertThat(this.sftpServer.getFileContent("/directory/file.txt", UTF_8)).isEqualTo("dummy content");
+        assertThat(this.sftpServer.size("/directory/file.txt")).isEqualTo(13);
+    }
+
+    @Test
+    void a_file_larger_than_16_megabytes_can_be_uploaded_and_downloaded() throws Exception {
+        final ContentGenerator generator = ContentGenerator.seeded(3);
+
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        try (InputStream is = generator.newInputStream(LARGE_SIZE)) {
+            channel.put(is, "/large.bin");
+        }
+        final long size = channel.stat("/large.bin").getSize();
+        final boolean downloadedContentEquals;
+        try (InputStream downloaded = channel.get("/large.bin");
+             InputStream expected = generator.newInputStream(LARGE_SIZE)) {
+            downloadedContentEquals = IOUtils.contentEquals(downloaded, expected);
+        }
+        channel.disconnect();
+        session.disconnect();
+
+        assertThat(size).isEqualTo(LARGE_SIZE);
+        assertThat(downloadedContentEquals).isTrue();
+        try (InputStream expected = generator.newInputStream(LARGE_SIZE)) {
+            assertThat(this.sftpServer.contentEquals("/large.bin", expected)).isTrue();
+        }
+    }
+
+    @Test
+    void a_file_can_be_overwritten_and_appended() throws Exception {
+        this.sftpServer.putFile("/file.txt", "first content", UTF_8);
+
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.put(new ByteArrayInputStream("second".getBytes(UTF_8)), "/file.txt");
+        channel.put(new ByteArrayInputStream(" content".getBytes(UTF_8)), "/file.txt", ChannelSftp.APPEND);
+        channel.disconnect();
+        session.disconnect();
+
+        assertThat(this.sftpServer.getFileContent("/file.txt", UTF_8)).isEqualTo("second content");
+    }
+
+    @Test
+    void a_file_can_be_renamed_and_deleted() throws Exception {
+        this.sftpServer.putFile("/directory/file.txt", "dummy content", UTF_8);
+
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.rename("/directory", "/renamed");
+        channel.disconnect();
+        session.disconnect();
+
+        assertThat(this.sftpServer.getFileContent("/renamed/file.txt", UTF_8)).isEqualTo("dummy content");
+        this.sftpServer.deleteAllFilesAndDirectories();
+        assertThat(this.sftpServer.existsFile("/renamed/file.txt")).isFalse();
+    }
+
+    @Test
+    void a_rollback_restores_the_content_of_a_file() throws Exception {
+        this.sftpServer.putFile("/file.txt", "original content", UTF_8);
+        final Checkpoint checkpoint = this.sftpServer.checkpoint();
+        this.sftpServer.putFile("/file.txt", "modified content", UTF_8);
+        this.sftpServer.putFile("/other.txt", "other content", UTF_8);
+
+        this.sftpServer.rollback(checkpoint);
+
+        assertThat(this.sftpServer.getFileContent("/file.txt", UTF_8)).isEqualTo("original content");
+        assertThat(this.sftpServer.existsFile("/other.txt")).isFalse();
+    }
+
+    @Test
+    void the_storage_cannot_be_changed_within_a_test() {
+        assertThatThrownBy(() -> this.sftpServer.setStorage(Storage.HEAP))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("The storage cannot be changed while the filesystem is in use.");
+    }
+}
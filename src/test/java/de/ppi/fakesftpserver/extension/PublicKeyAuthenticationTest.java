@@ -0,0 +1,147 @@
+package de.ppi.fakesftpserver.extension;
+
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.common.config.keys.PublicKeyEntry;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.SftpClientFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PublicKeyAuthenticationTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @RegisterExtension
+    private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension();
+
+    private SshClient client;
+
+    @BeforeEach
+    void startClient() {
+        this.client = SftpClientConnector.startClient();
+    }
+
+    @AfterEach
+    void stopClient() {
+        this.client.stop();
+    }
+
+    @Test
+    void a_user_with_an_authorized_key_can_log_in() throws Exception {
+        final KeyPair keyPair = generateKeyPair();
+        this.sftpServer.addAuthorizedKey("alice", PublicKeyEntry.toString(keyPair.getPublic()) + " alice@host");
+        this.sftpServer.putFile("/file.txt", new byte[]{1, 2, 3});
+
+        try (ClientSession session = this.connect("alice", keyPair);
+             SftpClient sftp = SftpClientFactory.instance().createSftpClient(session)) {
+            assertThat(sftp.stat("/file.txt").getSize()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void a_key_that_has_not_been_added_is_rejected() throws Exception {
+        this.sftpServer.addPublicKey("alice", generateKeyPair().getPublic());
+
+        assertThatThrownBy(() -> this.connect("alice", generateKeyPair()))
+            .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void a_user_with_a_key_cannot_log_in_with_any_password() throws Exception {
+        this.sftpServer.addPublicKey("alice", generateKeyPair().getPublic());
+
+        AssertionHelperUtil.assertAuthenticationFails(() -> AssertionHelperUtil.connectToServer(this.sftpServer));
+    }
+
+    @Test
+    void a_user_can_have_several_keys_and_a_password() throws Exception {
+        final KeyPair first = generateKeyPair();
+        final KeyPair second = generateKeyPair();
+        this.sftpServer.addPublicKey("alice", first.getPublic())
+            .addPublicKey("alice", second.getPublic())
+            .addUser("alice", "password");
+
+        this.connect("alice", first).close();
+        this.connect("alice", second).close();
+        final LoadReport report = LoadGenerator.forServer(this.sftpServer)
+            .setCredentials("alice", "password")
+            .setOperations(1)
+            .run();
+        assertThat(report.getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    void a_key_user_of_a_shared_server_gets_the_filesystem_of_the_test() throws Exception {
+        final KeyPair keyPair = generateKeyPair();
+        try (var sharedServer = new FakeSftpServerExtension().setLifecycle(ServerLifecycle.SHARED)) {
+            sharedServer.beforeEach(null);
+            sharedServer.addPublicKey("key_user_of_shared_server", keyPair.getPublic());
+            sharedServer.putFile("/shared.txt", new byte[]{1});
+
+            try (ClientSession session = this.connect("key_user_of_shared_server", keyPair, sharedServer.getPort());
+                 SftpClient sftp = SftpClientFactory.instance().createSftpClient(session)) {
+                assertThat(sftp.stat("/shared.txt").getSize()).isEqualTo(1);
+            }
+        }
+    }
+
+    @Test
+    void an_invalid_authorized_key_is_rejected() {
+        assertThatThrownBy(() -> this.sftpServer.addAuthorizedKey("alice", "ssh-rsa no-base64"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("The authorized key of alice cannot be parsed.");
+    }
+
+    @Test
+    void many_users_can_be_added_while_users_log_in() throws Exception {
+        final InMemoryAuthenticator authenticator = new InMemoryAuthenticator();
+        final KeyPair keyPair = generateKeyPair();
+
+        IntStream.range(0, 20_000).parallel().forEach(i -> {
+            authenticator.putUser("user" + i, "password" + i);
+            authenticator.putPublicKey("user" + i, keyPair.getPublic());
+            assertThat(authenticator.authenticate("user" + i, "password" + i, null)).isTrue();
+            assertThat(authenticator.authenticate("user" + i, keyPair.getPublic(), null)).isTrue();
+            assertThat(authenticator.authenticate("user" + i, "wrong", null)).isFalse();
+        });
+
+        assertThat(authenticator.getUsernames()).hasSize(20_000);
+    }
+
+    private ClientSession connect(final String username, final KeyPair keyPair) throws IOException {
+        return this.connect(username, keyPair, this.sftpServer.getPort());
+    }
+
+    private ClientSession connect(final String username, final KeyPair keyPair, final int port) throws IOException {
+        final ClientSession session = this.client.connect(username, "localhost", port)
+            .verify(TIMEOUT)
+            .getSession();
+        session.addPublicKeyIdentity(keyPair);
+        try {
+            session.auth().verify(TIMEOUT);
+        } catch (final IOException e) {
+            session.close(true);
+            throw e;
+        }
+        return session;
+    }
+
+    private static KeyPair generateKeyPair() throws NoSuchAlgorithmException {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        return generator.generateKeyPair();
+    }
+}
@@ -0,0 +1,101 @@
+package de.ppi.fakesftpserver.extension;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ServerLifecycleTest {
+
+    @RegisterExtension
+    static final FakeSftpServerExtension SFTP_SERVER = new FakeSftpServerExtension()
+        .setLifecycle(ServerLifecycle.PER_CLASS);
+
+    @RegisterExtension
+    static final FakeSftpServerExtension RUN_SFTP_SERVER = new FakeSftpServerExtension()
+        .setLifecycle(ServerLifecycle.PER_RUN);
+
+    // the stores are closed after the afterAll callbacks, so the servers are still registered here
+    @RegisterExtension
+    static final AfterAllCallback STORE_CHECK = context -> {
+        final ExtensionContext.Namespace namespace = ExtensionContext.Namespace.create(FakeSftpServerExtension.class);
+        assertThat(context.getRoot().getStore(namespace).get(RUN_SFTP_SERVER)).isNotNull();
+        assertThat(context.getRoot().getStore(namespace).get(SFTP_SERVER)).isNull();
+        assertThat(context.getStore(namespace).get(SFTP_SERVER)).isNotNull();
+    };
+
+    private static int portOfFirstTest;
+
+    @Test
+    @Order(1)
+    void the_server_is_running_in_the_first_test() throws Exception {
+        portOfFirstTest = SFTP_SERVER.getPort();
+        SFTP_SERVER.putFile("/dummy_directory/dummy_file.txt", "dummy content", UTF_8);
+
+        assertDoesNotThrow(() -> AssertionHelperUtil.connectAndDisconnect(SFTP_SERVER));
+    }
+
+    @Test
+    @Order(2)
+    void the_server_is_reused_by_the_second_test() {
+        assertThat(SFTP_SERVER.getPort()).isEqualTo(portOfFirstTest);
+        assertDoesNotThrow(() -> AssertionHelperUtil.connectAndDisconnect(SFTP_SERVER));
+    }
+
+    @Test
+    @Order(3)
+    void the_filesystem_is_cleaned_between_tests() throws Exception {
+        AssertionHelperUtil.assertFileDoesNotExist(SFTP_SERVER, "/dummy_directory/dummy_file.txt");
+        AssertionHelperUtil.assertDirectoryDoesNotExist(SFTP_SERVER);
+    }
+
+    @Test
+    @Order(4)
+    void a_test_adds_a_user() {
+        SFTP_SERVER.addUser("added user", "password");
+
+        AssertionHelperUtil.assertAuthenticationFails(() -> AssertionHelperUtil.connectAndDisconnect(SFTP_SERVER));
+    }
+
+    @Test
+    @Order(5)
+    void the_user_that_has_been_added_by_the_previous_test_is_removed() {
+        assertDoesNotThrow(() -> AssertionHelperUtil.connectAndDisconnect(SFTP_SERVER));
+    }
+
+    @Test
+    @Order(6)
+    void the_server_of_the_test_run_is_running() {
+        assertDoesNotThrow(() -> AssertionHelperUtil.connectAndDisconnect(RUN_SFTP_SERVER));
+    }
+
+    @Test
+    @Order(7)
+    void a_reused_server_has_to_be_registered_in_a_static_field() throws Exception {
+        try (var sftpServer = new FakeSftpServerExtension().setLifecycle(ServerLifecycle.PER_RUN)) {
+            assertThatThrownBy(() -> sftpServer.beforeEach(null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("The extension with the lifecycle PER_RUN has to be registered in a static field.");
+        }
+    }
+
+    @Test
+    @Order(8)
+    void a_server_with_test_lifecycle_is_stopped_after_the_test() throws Exception {
+        final var sftpServer = new FakeSftpServerExtension();
+        sftpServer.beforeEach(null);
+        final int port = sftpServer.getPort();
+        sftpServer.afterEach(null);
+
+        AssertionHelperUtil.assertConnectionToSftpServerNotPossible(port);
+    }
+}
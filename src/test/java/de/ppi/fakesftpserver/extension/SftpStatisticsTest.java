@@ -0,0 +1,108 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SftpStatisticsTest {
+
+    private static final int SIZE = 100_000;
+
+    @RegisterExtension
+    private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension();
+
+    @Test
+    void requests_and_bytes_of_an_upload_and_a_download_are_counted() throws Exception {
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.put(new ByteArrayInputStream(new byte[SIZE]), "/file.bin");
+        channel.get("/file.bin", new ByteArrayOutputStream());
+        channel.stat("/file.bin");
+        channel.disconnect();
+        session.disconnect();
+
+        final SftpStatistics statistics = this.sftpServer.getStatistics();
+        assertThat(statistics.getCount(SftpOperation.OPEN)).isEqualTo(2);
+        assertThat(statistics.getCount(SftpOperation.CLOSE)).isEqualTo(2);
+        assertThat(statistics.getCount(SftpOperation.WRITE)).isPositive();
+        assertThat(statistics.getCount(SftpOperation.READ)).isPositive();
+        assertThat(statistics.getCount(SftpOperation.STAT)).isGreaterThanOrEqualTo(1);
+        assertThat(statistics.getBytesWritten()).isEqualTo(SIZE);
+        assertThat(statistics.getBytesRead()).isEqualTo(SIZE);
+        assertThat(statistics.getTotalCount()).isGreaterThan(statistics.getCount(SftpOperation.READ));
+    }
+
+    @Test
+    void the_latency_of_every_request_is_recorded() throws Exception {
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.mkdir("/directory");
+        channel.ls("/");
+        channel.disconnect();
+        session.disconnect();
+
+        final LatencyHistogram latency = this.sftpServer.getStatistics().getLatency(SftpOperation.MKDIR);
+        assertThat(latency.getCount()).isEqualTo(1);
+        assertThat(latency.getMax()).isPositive();
+        assertThat(latency.getPercentile(50)).isEqualTo(latency.getMax());
+        assertThat(this.sftpServer.getStatistics().getLatency(SftpOperation.READDIR).getCount()).isPositive();
+    }
+
+    @Test
+    void the_statistics_can_be_reset() throws Exception {
+        AssertionHelperUtil.uploadFile(this.sftpServer, "/file.txt", new byte[]{1, 2, 3});
+
+        this.sftpServer.getStatistics().reset();
+
+        assertThat(this.sftpServer.getStatistics().getTotalCount()).isZero();
+        assertThat(this.sftpServer.getStatistics().getBytesWritten()).isZero();
+        assertThat(this.sftpServer.getStatistics().getLatency(SftpOperation.OPEN).getMax()).isZero();
+    }
+
+    @Test
+    void the_shared_server_records_the_statistics_of_every_test_separately() throws Exception {
+        try (var firstServer = new FakeSftpServerExtension().setLifecycle(ServerLifecycle.SHARED);
+             var secondServer = new FakeSftpServerExtension().setLifecycle(ServerLifecycle.SHARED)) {
+            firstServer.beforeEach(null);
+            secondServer.beforeEach(null);
+
+            final Session session = AssertionHelperUtil.connectToServerAs(firstServer, firstServer.getLeaseUsername());
+            final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+            channel.mkdir("/directory");
+            channel.disconnect();
+            session.disconnect();
+
+            assertThat(firstServer.getStatistics().getCount(SftpOperation.MKDIR)).isEqualTo(1);
+            assertThat(secondServer.getStatistics().getTotalCount()).isZero();
+        }
+    }
+
+    @Test
+    void a_percentile_is_at_most_an_eighth_larger_than_the_exact_value() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat(histogram.getMean()).isEqualTo(Duration.ofNanos(500_500));
+        assertThat(histogram.getPercentile(50)).isBetween(Duration.ofNanos(500_000), Duration.ofNanos(562_500));
+        assertThat(histogram.getPercentile(99)).isBetween(Duration.ofNanos(990_000), Duration.ofNanos(1_000_000));
+        assertThat(histogram.getPercentile(100)).isEqualTo(Duration.ofNanos(1_000_000));
+    }
+
+    @Test
+    void a_percentile_must_be_between_0_and_100() {
+        assertThatThrownBy(() -> new LatencyHistogram().getPercentile(101))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("The percentile must be between 0 and 100.");
+    }
+}
@@ -0,0 +1,122 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SharedServerTest {
+
+    private final FakeSftpServerExtension firstServer = new FakeSftpServerExtension()
+        .setLifecycle(ServerLifecycle.SHARED);
+    private final FakeSftpServerExtension secondServer = new FakeSftpServerExtension()
+        .setLifecycle(ServerLifecycle.SHARED);
+
+    @BeforeEach
+    void startServers() throws Exception {
+        this.firstServer.beforeEach(null);
+        this.secondServer.beforeEach(null);
+    }
+
+    @AfterEach
+    void stopServers() throws Exception {
+        this.firstServer.afterEach(null);
+        this.secondServer.afterEach(null);
+    }
+
+    @Test
+    void all_tests_use_the_same_server() {
+        assertThat(this.firstServer.getPort()).isEqualTo(this.secondServer.getPort());
+    }
+
+    @Test
+    void every_test_has_its_own_filesystem() throws Exception {
+        this.firstServer.putFile("/dummy_file.txt", "first content", UTF_8);
+        this.secondServer.putFile("/dummy_file.txt", "second content", UTF_8);
+
+        assertThat(download(this.firstServer, this.firstServer.getLeaseUsername())).isEqualTo("first content");
+        assertThat(download(this.secondServer, this.secondServer.getLeaseUsername())).isEqualTo("second content");
+    }
+
+    @Test
+    void an_upload_is_only_visible_for_the_test_of_the_session() throws Exception {
+        final Session session = AssertionHelperUtil.connectToServerAs(this.firstServer,
+            this.firstServer.getLeaseUsername());
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.put(new ByteArrayInputStream("dummy content".getBytes(UTF_8)), "/dummy_file.txt");
+        channel.disconnect();
+        session.disconnect();
+
+        assertThat(this.firstServer.existsFile("/dummy_file.txt")).isTrue();
+        assertThat(this.secondServer.existsFile("/dummy_file.txt")).isFalse();
+    }
+
+    @Test
+    void added_users_are_routed_to_the_filesystem_of_the_test() throws Exception {
+        this.secondServer.addUser("shared_server_user", FakeSftpServerExtensionTest.DUMMY_PASSWORD);
+        this.secondServer.putFile("/dummy_file.txt", "dummy content", UTF_8);
+
+        assertThat(download(this.secondServer, "shared_server_user")).isEqualTo("dummy content");
+    }
+
+    @Test
+    void the_lease_username_can_be_used_after_a_user_has_been_added() throws Exception {
+        this.secondServer.addUser("shared_server_user", "password");
+        this.secondServer.putFile("/dummy_file.txt", "dummy content", UTF_8);
+
+        assertThat(download(this.secondServer, this.secondServer.getLeaseUsername())).isEqualTo("dummy content");
+    }
+
+    @Test
+    void a_user_cannot_be_used_by_two_tests_at_the_same_time() {
+        this.firstServer.addUser("shared_server_user", FakeSftpServerExtensionTest.DUMMY_PASSWORD);
+
+        assertThatThrownBy(() -> this.secondServer.addUser("shared_server_user", "password"))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("The user shared_server_user is already used by another test.");
+    }
+
+    @Test
+    void unknown_users_are_rejected() {
+        AssertionHelperUtil.assertAuthenticationFails(
+            () -> AssertionHelperUtil.connectToServerAs(this.firstServer, "unknown user"));
+    }
+
+    @Test
+    void the_port_of_the_shared_server_cannot_be_changed() {
+        assertThatThrownBy(() -> this.firstServer.setManualPort(1234))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("The port of the shared SFTP server cannot be changed.");
+    }
+
+    @Test
+    void the_shared_server_keeps_running_after_a_test() throws Exception {
+        final int port = this.firstServer.getPort();
+        this.firstServer.afterEach(null);
+
+        final Session session = AssertionHelperUtil.connectToServerAs(this.secondServer,
+            this.secondServer.getLeaseUsername());
+        assertThat(session.isConnected()).isTrue();
+        assertThat(this.secondServer.getPort()).isEqualTo(port);
+        session.disconnect();
+    }
+
+    private static String download(final FakeSftpServerExtension sftpServer, final String username) throws Exception {
+        final Session session = AssertionHelperUtil.connectToServerAs(sftpServer, username);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        try {
+            return IOUtils.toString(channel.get("/dummy_file.txt"), UTF_8);
+        } finally {
+            channel.disconnect();
+            session.disconnect();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnapshotTest {
+
+    private static final int LARGE_SIZE = 5 * 1024 * 1024;
+    private static final int MODIFICATION_TIME = 1_577_934_245;
+
+    @RegisterExtension
+    private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void the_files_and_directories_of_a_snapshot_are_loaded() throws Exception {
+        this.sftpServer.putFile("/data/file.txt", "content", UTF_8);
+        this.sftpServer.putFile("/data/empty.txt", new byte[0]);
+        this.sftpServer.createDirectory("/data/empty directory");
+        this.sftpServer.putSyntheticFile("/data/large.bin", LARGE_SIZE, ContentGenerator.seeded(7));
+        final Path snapshot = this.save();
+        this.sftpServer.putFile("/other.txt", "other", UTF_8);
+
+        this.sftpServer.loadSnapshot(snapshot);
+
+        assertThat(this.sftpServer.getFileContent("/data/file.txt", UTF_8)).isEqualTo("content");
+        assertThat(this.sftpServer.getFileContent("/data/empty.txt")).isEmpty();
+        assertThat(this.sftpServer.existsFile("/other.txt")).isFalse();
+        assertThat(this.sftpServer.contentEquals("/data/large.bin",
+            ContentGenerator.seeded(7).newInputStream(LARGE_SIZE))).isTrue();
+        AssertionHelperUtil.assertEmptyDirectory(this.sftpServer, "/data/empty directory");
+    }
+
+    @Test
+    void the_attributes_and_symbolic_links_of_a_snapshot_are_loaded() throws Exception {
+        this.sftpServer.putFile("/data/file.txt", "content", UTF_8);
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.chmod(0640, "/data/file.txt");
+        channel.setMtime("/data/file.txt", MODIFICATION_TIME);
+        channel.setMtime("/data", MODIFICATION_TIME);
+        channel.symlink("/data/file.txt", "/link");
+        final Path snapshot = this.save();
+
+        this.sftpServer.loadSnapshot(snapshot);
+
+        assertThat(channel.stat("/data/file.txt").getPermissions() & 0777).isEqualTo(0640);
+        assertThat(channel.stat("/data/file.txt").getMTime()).isEqualTo(MODIFICATION_TIME);
+        assertThat(channel.stat("/data").getMTime()).isEqualTo(MODIFICATION_TIME);
+        assertThat(channel.lstat("/link").isLink()).isTrue();
+        assertThat(channel.readlink("/link")).isEqualTo("/data/file.txt");
+        channel.disconnect();
+        session.disconnect();
+    }
+
+    @Test
+    void a_loaded_file_can_be_modified_and_downloaded() throws Exception {
+        this.sftpServer.putFile("/file.txt", "content", UTF_8);
+        final Path snapshot = this.save();
+        this.sftpServer.loadSnapshot(snapshot);
+
+        AssertionHelperUtil.uploadFile(this.sftpServer, "/file.txt", "modified".getBytes(UTF_8));
+        this.sftpServer.loadSnapshot(snapshot);
+
+        assertThat(this.sftpServer.getFileContent("/file.txt", UTF_8)).isEqualTo("content");
+    }
+
+    @Test
+    void the_content_of_a_snapshot_is_aligned_to_the_page_size() throws Exception {
+        this.sftpServer.putFile("/a.txt", "a", UTF_8);
+        this.sftpServer.putFile("/b.txt", "b", UTF_8);
+        final byte[] snapshot = Files.readAllBytes(this.save());
+
+        assertThat(snapshot).hasSize(4096 + 8 + 1);
+        assertThat(snapshot[4096]).isEqualTo((byte) 'a');
+        assertThat(snapshot[4096 + 8]).isEqualTo((byte) 'b');
+    }
+
+    @Test
+    void a_file_that_is_not_a_snapshot_is_rejected() throws Exception {
+        final Path file = Files.writeString(this.directory.resolve("file.txt"), "not a snapshot of a filesystem");
+
+        assertThatThrownBy(() -> this.sftpServer.loadSnapshot(file))
+            .isInstanceOf(IOException.class)
+            .hasMessage("The file " + file + " is not a snapshot.");
+    }
+
+    @Test
+    void a_snapshot_cannot_be_loaded_outside_of_a_test() {
+        final FakeSftpServerExtension extension = new FakeSftpServerExtension();
+
+        assertThatThrownBy(() -> extension.loadSnapshot(this.directory.resolve("snapshot.bin")))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Failed to load snapshot because test has not been started or is already finished.");
+    }
+
+    private Path save() throws IOException {
+        final Path snapshot = this.directory.resolve("snapshot.bin");
+        try (OutputStream output = Files.newOutputStream(snapshot)) {
+            this.sftpServer.saveSnapshot(output);
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,107 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StandbyPoolTest {
+
+    @Test
+    void the_first_lease_is_cold_and_further_leases_are_warm() throws Exception {
+        try (StandbyPool pool = StandbyPool.ofSize(1).setStopOnShutdown(false);
+             var sftpServer = new FakeSftpServerExtension().setStandbyPool(pool)) {
+            for (int i = 0; i < 3; i++) {
+                sftpServer.beforeEach(null);
+                sftpServer.putFile("/file.txt", "content " + i, UTF_8);
+                final Session session = AssertionHelperUtil.connectToServer(sftpServer);
+                final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+                assertThat(channel.stat("/file.txt").getSize()).isEqualTo(9);
+                channel.disconnect();
+                session.disconnect();
+                sftpServer.afterEach(null);
+                awaitIdleServers(pool, 1);
+            }
+
+            final StandbyReport report = pool.getReport();
+            assertThat(report.getColdLeases()).isEqualTo(1);
+            assertThat(report.getWarmLeases()).isEqualTo(2);
+            assertThat(report.getIdleServers()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void a_leased_server_authenticates_the_users_of_its_test() throws Exception {
+        try (StandbyPool pool = StandbyPool.ofSize(1).setStopOnShutdown(false);
+             var sftpServer = new FakeSftpServerExtension().setStandbyPool(pool)
+                 .addUser(FakeSftpServerExtensionTest.DUMMY_USER, "password")) {
+            sftpServer.beforeEach(null);
+
+            AssertionHelperUtil.assertAuthenticationFails(() -> AssertionHelperUtil
+                .createSessionWithCredentials(sftpServer, "wrong password")
+                .connect(FakeSftpServerExtensionTest.TIMEOUT));
+            final Session session = AssertionHelperUtil.createSessionWithCredentials(sftpServer, "password");
+            session.connect(FakeSftpServerExtensionTest.TIMEOUT);
+            session.disconnect();
+            sftpServer.afterEach(null);
+        }
+    }
+
+    @Test
+    void idle_servers_are_stopped_after_the_idle_timeout() throws Exception {
+        final int port;
+        try (StandbyPool pool = StandbyPool.ofSize(1).setStopOnShutdown(false)
+            .setIdleTimeout(Duration.ofMillis(200));
+             var sftpServer = new FakeSftpServerExtension().setStandbyPool(pool)) {
+            sftpServer.beforeEach(null);
+            sftpServer.afterEach(null);
+            awaitIdleServers(pool, 1);
+
+            final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (pool.getReport().getReapedServers() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertThat(pool.getReport().getReapedServers()).isEqualTo(1);
+            assertThat(pool.getReport().getIdleServers()).isZero();
+            sftpServer.beforeEach(null);
+            port = sftpServer.getPort();
+            assertThat(pool.getReport().getColdLeases()).isEqualTo(2);
+            sftpServer.afterEach(null);
+        }
+
+        AssertionHelperUtil.assertConnectionToSftpServerNotPossible(port);
+    }
+
+    @Test
+    void the_size_of_the_pool_must_be_positive() {
+        assertThatThrownBy(() -> StandbyPool.ofSize(0))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("The size of the pool must be positive.");
+    }
+
+    @Test
+    void the_pool_cannot_be_configured_after_it_has_been_used() throws Exception {
+        try (StandbyPool pool = StandbyPool.ofSize(1).setStopOnShutdown(false);
+             var sftpServer = new FakeSftpServerExtension().setStandbyPool(pool)) {
+            sftpServer.beforeEach(null);
+            sftpServer.afterEach(null);
+
+            assertThatThrownBy(() -> pool.setIdleTimeout(Duration.ofSeconds(1)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("The pool cannot be configured after it has been used.");
+        }
+    }
+
+    private static void awaitIdleServers(final StandbyPool pool, final int idleServers) throws InterruptedException {
+        final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (pool.getReport().getIdleServers() < idleServers && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
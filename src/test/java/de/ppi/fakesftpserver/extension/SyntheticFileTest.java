@@ -0,0 +1,110 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SyntheticFileTest {
+
+    private static final long ONE_TERABYTE = 1L << 40;
+
+    @RegisterExtension
+    private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension();
+
+    @Test
+    void a_synthetic_file_can_be_downloaded() throws Exception {
+        final ContentGenerator generator = ContentGenerator.seeded(42);
+        this.sftpServer.putSyntheticFile("/directory/file.bin", 1_000_003, generator);
+
+        final byte[] downloaded = AssertionHelperUtil.downloadFile(this.sftpServer, "/directory/file.bin");
+
+        assertThat(downloaded).hasSize(1_000_003);
+        assertThat(IOUtils.contentEquals(new ByteArrayInputStream(downloaded), generator.newInputStream(1_000_003)))
+            .isTrue();
+    }
+
+    @Test
+    void a_huge_synthetic_file_has_its_size_and_can_be_read_at_any_position() throws Exception {
+        this.sftpServer.putSyntheticFile("/file.bin", ONE_TERABYTE, ContentGenerator.pattern(new byte[]{1, 2, 3}));
+
+        assertThat(this.sftpServer.size("/file.bin")).isEqualTo(ONE_TERABYTE);
+        assertThat(statSize("/file.bin")).isEqualTo(ONE_TERABYTE);
+        try (SeekableByteChannel channel = this.sftpServer.openChannel("/file.bin")) {
+            final ByteBuffer buffer = ByteBuffer.allocate(4);
+            channel.position(ONE_TERABYTE - 2).read(buffer);
+
+            // 2^40 - 2 = 2 (mod 3)
+            assertThat(buffer.flip().remaining()).isEqualTo(2);
+            assertThat(buffer.get()).isEqualTo((byte) 3);
+            assertThat(buffer.get()).isEqualTo((byte) 1);
+        }
+    }
+
+    @Test
+    void a_synthetic_file_has_the_same_hash_as_a_stored_file_with_the_same_content() throws Exception {
+        final ContentGenerator generator = ContentGenerator.seeded(7);
+        this.sftpServer.putSyntheticFile("/synthetic.bin", 100_000, generator);
+        try (InputStream is = generator.newInputStream(100_000)) {
+            this.sftpServer.putFile("/stored.bin", is);
+        }
+
+        assertThat(this.sftpServer.sha256("/synthetic.bin")).isEqualTo(this.sftpServer.sha256("/stored.bin"));
+    }
+
+    @Test
+    void a_synthetic_file_can_be_modified() throws Exception {
+        this.sftpServer.putSyntheticFile("/file.txt", 6, ContentGenerator.pattern("abc".getBytes(UTF_8)));
+
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.put(new ByteArrayInputStream("def".getBytes(UTF_8)), "/file.txt", ChannelSftp.APPEND);
+        channel.disconnect();
+        session.disconnect();
+
+        assertThat(this.sftpServer.getFileContent("/file.txt", UTF_8)).isEqualTo("abcabcdef");
+    }
+
+    @Test
+    void a_synthetic_file_can_be_renamed_and_deleted() throws Exception {
+        this.sftpServer.putSyntheticFile("/file.txt", 4, ContentGenerator.pattern("ab".getBytes(UTF_8)));
+
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.rename("/file.txt", "/renamed.txt");
+        channel.disconnect();
+        session.disconnect();
+
+        assertThat(this.sftpServer.getFileContent("/renamed.txt", UTF_8)).isEqualTo("abab");
+        this.sftpServer.deleteAllFilesAndDirectories();
+        assertThat(this.sftpServer.existsFile("/renamed.txt")).isFalse();
+    }
+
+    @Test
+    void the_size_cannot_be_negative() {
+        assertThatThrownBy(() -> this.sftpServer.putSyntheticFile("/file.bin", -1, ContentGenerator.seeded(0)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("The size of a file cannot be negative.");
+    }
+
+    private long statSize(final String path) throws Exception {
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        try {
+            return channel.stat(path).getSize();
+        } finally {
+            channel.disconnect();
+            session.disconnect();
+        }
+    }
+}
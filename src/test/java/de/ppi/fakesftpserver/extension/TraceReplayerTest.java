@@ -0,0 +1,112 @@
+package de.ppi.fakesftpserver.extension;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TraceReplayerTest {
+
+    private static final int SIZE = 100_000;
+
+    @RegisterExtension
+    private final FakeSftpServerExtension sftpServer = new FakeSftpServerExtension();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void a_recorded_session_is_replayed_against_a_fresh_server() throws Exception {
+        final Path trace = this.directory.resolve("client.trace");
+        final TraceRecording recording = this.sftpServer.startRecording(trace);
+        final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+        final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+        channel.mkdir("/directory");
+        channel.put(new ByteArrayInputStream(new byte[SIZE]), "/directory/file.bin");
+        channel.get("/directory/file.bin", new ByteArrayOutputStream());
+        channel.rename("/directory/file.bin", "/directory/renamed.bin");
+        channel.ls("/directory");
+        channel.disconnect();
+        session.disconnect();
+        recording.close();
+
+        assertThat(recording.getRequestCount()).isEqualTo(this.sftpServer.getStatistics().getTotalCount());
+
+        try (var freshServer = new FakeSftpServerExtension()) {
+            freshServer.beforeEach(null);
+            final ReplayReport report = TraceReplayer.forServer(freshServer)
+                .setSpeed(Double.POSITIVE_INFINITY)
+                .replay(trace);
+
+            assertThat(report.getTotalErrors()).isZero();
+            for (final SftpOperation operation : new SftpOperation[]{
+                SftpOperation.MKDIR, SftpOperation.OPEN, SftpOperation.WRITE, SftpOperation.READ,
+                SftpOperation.CLOSE, SftpOperation.RENAME, SftpOperation.OPENDIR, SftpOperation.READDIR}) {
+                assertThat(report.getRecordedCount(operation)).as(operation.name()).isPositive();
+                assertThat(report.getReplayedCount(operation)).as(operation.name())
+                    .isEqualTo(report.getRecordedCount(operation));
+                assertThat(report.getReplayedLatency(operation).getCount()).as(operation.name())
+                    .isGreaterThanOrEqualTo(report.getRecordedCount(operation));
+            }
+            assertThat(report.getSkipped()).isEqualTo(report.getRecordedCount(SftpOperation.INIT));
+            assertThat(freshServer.size("/directory/renamed.bin")).isEqualTo(SIZE);
+            assertThat(freshServer.existsFile("/directory/file.bin")).isFalse();
+            assertThat(report.toString()).contains("WRITE", "rep p99 (ms)");
+        }
+    }
+
+    @Test
+    void the_replay_keeps_the_recorded_timing_divided_by_the_speed() throws Exception {
+        final Path trace = this.directory.resolve("client.trace");
+        try (TraceRecording ignored = this.sftpServer.startRecording(trace)) {
+            final Session session = AssertionHelperUtil.connectToServer(this.sftpServer);
+            final ChannelSftp channel = AssertionHelperUtil.connectSftpChannel(session);
+            channel.mkdir("/first");
+            Thread.sleep(500);
+            channel.mkdir("/second");
+            channel.disconnect();
+            session.disconnect();
+        }
+
+        this.sftpServer.deleteAllFilesAndDirectories();
+        final ReplayReport realTime = TraceReplayer.forServer(this.sftpServer).replay(trace);
+        this.sftpServer.deleteAllFilesAndDirectories();
+        final ReplayReport accelerated = TraceReplayer.forServer(this.sftpServer).setSpeed(10).replay(trace);
+
+        assertThat(realTime.getRecordedDuration()).isGreaterThanOrEqualTo(Duration.ofMillis(500));
+        assertThat(realTime.getReplayedDuration()).isGreaterThanOrEqualTo(Duration.ofMillis(500));
+        assertThat(accelerated.getReplayedDuration()).isLessThan(Duration.ofMillis(500));
+        assertThat(realTime.getTotalErrors()).isZero();
+        assertThat(accelerated.getReplayedCount(SftpOperation.MKDIR)).isEqualTo(2);
+        assertThat(accelerated.getTotalErrors()).isZero();
+    }
+
+    @Test
+    void only_one_recording_can_run_at_a_time() throws Exception {
+        this.sftpServer.startRecording(this.directory.resolve("first.trace"));
+
+        assertThatThrownBy(() -> this.sftpServer.startRecording(this.directory.resolve("second.trace")))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Failed to start a recording because another recording is running.");
+    }
+
+    @Test
+    void a_file_that_is_not_a_trace_is_rejected() throws Exception {
+        final Path file = Files.write(this.directory.resolve("other.bin"), new byte[]{1, 2, 3, 4, 5});
+
+        assertThatThrownBy(() -> TraceReplayer.forServer(this.sftpServer).replay(file))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("is not a trace of SFTP requests");
+    }
+}